@@ -0,0 +1,118 @@
+package io.ticofab.androidgpxparser.benchmarks;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import io.ticofab.androidgpxparser.parser.ByteGpxParser;
+import io.ticofab.androidgpxparser.parser.domain.Gpx;
+import io.ticofab.androidgpxparser.parser.domain.Route;
+import io.ticofab.androidgpxparser.parser.domain.Track;
+import io.ticofab.androidgpxparser.parser.domain.TrackSegment;
+
+/**
+ * The documents the benchmarks run on, held in memory: the test assets of the parser, and documents
+ * of the {@link CorpusGenerator}: {@code synthetic-<points>}, a single track, and
+ * {@code extensions-<points>}, 4 tracks of 2 segments whose points all have extensions.
+ */
+@State(Scope.Benchmark)
+public class Corpus {
+
+    static private final String SYNTHETIC = "synthetic-";
+    static private final String EXTENSIONS = "extensions-";
+
+    @Param({"shores-of-derwentwater.xml", "garminBaseCampExport.gpx", "wadlbeisserExport.gpx", "synthetic-1000000",
+            "extensions-200000"})
+    public String document;
+
+    private byte[] mBytes;
+    private Gpx mGpx;
+    private long mPointCount;
+
+    @Setup(Level.Trial)
+    public void load() throws IOException, XmlPullParserException {
+        if (document.startsWith(SYNTHETIC)) {
+            mBytes = generate(new CorpusGenerator.Builder()
+                    .setPointsPerSegment(Integer.parseInt(document.substring(SYNTHETIC.length())))
+                    .build());
+        } else if (document.startsWith(EXTENSIONS)) {
+            mBytes = generate(new CorpusGenerator.Builder()
+                    .setTracks(4)
+                    .setSegmentsPerTrack(2)
+                    .setPointsPerSegment(Integer.parseInt(document.substring(EXTENSIONS.length())) / 8)
+                    .setExtensionDensity(1)
+                    .build());
+        } else {
+            mBytes = readAsset(document);
+        }
+        mGpx = new ByteGpxParser().parse(getBuffer());
+        mPointCount = countPoints(mGpx);
+    }
+
+    public InputStream newInputStream() {
+        return new ByteArrayInputStream(mBytes);
+    }
+
+    public ByteBuffer getBuffer() {
+        return ByteBuffer.wrap(mBytes);
+    }
+
+    /**
+     * @return the document, parsed once
+     */
+    public Gpx getGpx() {
+        return mGpx;
+    }
+
+    /**
+     * @return the number of way, route and track points of the document
+     */
+    public long getPointCount() {
+        return mPointCount;
+    }
+
+    static long countPoints(Gpx gpx) {
+        long count = gpx.getWayPoints().size();
+        for (Route route : gpx.getRoutes()) {
+            count += route.getRoutePoints().size();
+        }
+        for (Track track : gpx.getTracks()) {
+            for (TrackSegment segment : track.getTrackSegments()) {
+                count += segment.getTrackPointCount();
+            }
+        }
+        return count;
+    }
+
+    static private byte[] readAsset(String name) throws IOException {
+        InputStream in = Corpus.class.getClassLoader().getResourceAsStream(name);
+        if (in == null) {
+            throw new FileNotFoundException(name);
+        }
+        try (in) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    static private byte[] generate(CorpusGenerator generator) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        generator.generate(out);
+        return out.toByteArray();
+    }
+}
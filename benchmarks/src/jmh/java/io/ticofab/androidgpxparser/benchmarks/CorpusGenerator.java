@@ -0,0 +1,408 @@
+package io.ticofab.androidgpxparser.benchmarks;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Random;
+
+/**
+ * Generates synthetic GPX documents of any size: way points, routes, and tracks made of segments of
+ * track points, each following a random walk. Optional fields can be left out at random, points can
+ * carry Garmin TrackPointExtension and custom namespace extensions, and the document can end without
+ * its closing tags or in the middle of a point.
+ * <p>
+ * The output is streamed, so documents of several GB take no memory, and the same settings and seed
+ * always give the same bytes. From the command line:
+ * <pre>
+ * ./gradlew :benchmarks:generateCorpus --args='--tracks 10 --segments 4 --points 250000 --extensions 0.5 /tmp/large.gpx'
+ * </pre>
+ */
+public class CorpusGenerator {
+
+    /**
+     * How the document ends.
+     */
+    public enum Ending {
+        /** a well formed document */
+        COMPLETE,
+        /** everything but the gpx end tag, like a recording stopped abruptly */
+        NO_CLOSING_TAG,
+        /** cut in the middle of the last track point, like a partially copied file */
+        TRUNCATED
+    }
+
+    static private final String TPX_NAMESPACE = "http://www.garmin.com/xmlschemas/TrackPointExtension/v1";
+    static private final String CUSTOM_NAMESPACE = "urn:android-gpx-parser:benchmarks";
+    static private final long START_TIME = LocalDateTime.of(2023, 6, 1, 8, 0).toEpochSecond(ZoneOffset.UTC);
+    static private final int BUFFER_SIZE = 64 * 1024;
+
+    private final long mSeed;
+    private final int mTracks;
+    private final int mSegmentsPerTrack;
+    private final int mPointsPerSegment;
+    private final int mWayPoints;
+    private final int mRoutes;
+    private final int mPointsPerRoute;
+    private final double mExtensionDensity;
+    private final double mMissingFieldRate;
+    private final Ending mEnding;
+
+    private CorpusGenerator(Builder builder) {
+        mSeed = builder.mSeed;
+        mTracks = builder.mTracks;
+        mSegmentsPerTrack = builder.mSegmentsPerTrack;
+        mPointsPerSegment = builder.mPointsPerSegment;
+        mWayPoints = builder.mWayPoints;
+        mRoutes = builder.mRoutes;
+        mPointsPerRoute = builder.mPointsPerRoute;
+        mExtensionDensity = builder.mExtensionDensity;
+        mMissingFieldRate = builder.mMissingFieldRate;
+        mEnding = builder.mEnding;
+    }
+
+    /**
+     * Writes the document to the stream, which is flushed but not closed.
+     */
+    public void generate(OutputStream out) throws IOException {
+        new Output(out).generate();
+        out.flush();
+    }
+
+    public static void main(String[] args) throws IOException {
+        Builder builder = new Builder();
+        String file = null;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (!arg.startsWith("--")) {
+                file = arg;
+                continue;
+            }
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("Missing the value of " + arg);
+            }
+            String value = args[++i];
+            switch (arg) {
+                case "--seed":
+                    builder.setSeed(Long.parseLong(value));
+                    break;
+                case "--tracks":
+                    builder.setTracks(Integer.parseInt(value));
+                    break;
+                case "--segments":
+                    builder.setSegmentsPerTrack(Integer.parseInt(value));
+                    break;
+                case "--points":
+                    builder.setPointsPerSegment(Integer.parseInt(value));
+                    break;
+                case "--way-points":
+                    builder.setWayPoints(Integer.parseInt(value));
+                    break;
+                case "--routes":
+                    builder.setRoutes(Integer.parseInt(value));
+                    break;
+                case "--route-points":
+                    builder.setPointsPerRoute(Integer.parseInt(value));
+                    break;
+                case "--extensions":
+                    builder.setExtensionDensity(Double.parseDouble(value));
+                    break;
+                case "--missing":
+                    builder.setMissingFieldRate(Double.parseDouble(value));
+                    break;
+                case "--ending":
+                    builder.setEnding(Ending.valueOf(value.toUpperCase().replace('-', '_')));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + arg);
+            }
+        }
+        if (file == null) {
+            throw new IllegalArgumentException("Usage: CorpusGenerator [--seed n] [--tracks n] [--segments n]"
+                    + " [--points n] [--way-points n] [--routes n] [--route-points n] [--extensions density]"
+                    + " [--missing rate] [--ending complete|no-closing-tag|truncated] file");
+        }
+        long start = System.nanoTime();
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE)) {
+            builder.build().generate(out);
+        }
+        System.out.println("Generated " + file + " in " + (System.nanoTime() - start) / 1000000 + " ms");
+    }
+
+    // The state of one generation: the random walk and the ASCII output buffer.
+    private class Output {
+        private final OutputStream mOut;
+        private final Random mRandom = new Random(mSeed);
+        private final byte[] mBuffer = new byte[BUFFER_SIZE];
+        private int mCount;
+
+        private double mLatitude;
+        private double mLongitude;
+        private double mElevation;
+        private double mBearing;
+        private long mTime = START_TIME;
+
+        Output(OutputStream out) {
+            mOut = out;
+            mLatitude = -60 + 120 * mRandom.nextDouble();
+            mLongitude = -180 + 360 * mRandom.nextDouble();
+            mElevation = 2000 * mRandom.nextDouble();
+            mBearing = 2 * Math.PI * mRandom.nextDouble();
+        }
+
+        void generate() throws IOException {
+            append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+            append("<gpx xmlns=\"http://www.topografix.com/GPX/1/1\" xmlns:gpxtpx=\"").append(TPX_NAMESPACE)
+                    .append("\" xmlns:bench=\"").append(CUSTOM_NAMESPACE)
+                    .append("\" creator=\"android-gpx-parser benchmarks\" version=\"1.1\">\n");
+            append("  <metadata>\n    <name>Synthetic corpus, seed ").append(mSeed).append("</name>\n    <time>");
+            appendTime(mTime).append("</time>\n  </metadata>\n");
+
+            for (int i = 0; i < mWayPoints; i++) {
+                step();
+                append("  <wpt");
+                appendCoordinates().append(">\n");
+                appendElevationAndTime("    ");
+                if (!missing()) {
+                    append("    <name>Way point ").append(i + 1).append("</name>\n");
+                }
+                append("    <sym>Flag, Blue</sym>\n  </wpt>\n");
+            }
+
+            for (int i = 0; i < mRoutes; i++) {
+                append("  <rte>\n    <name>Route ").append(i + 1).append("</name>\n");
+                for (int j = 0; j < mPointsPerRoute; j++) {
+                    step();
+                    append("    <rtept");
+                    appendCoordinates().append(">\n");
+                    appendElevationAndTime("      ");
+                    append("    </rtept>\n");
+                }
+                append("  </rte>\n");
+            }
+
+            for (int i = 0; i < mTracks; i++) {
+                append("  <trk>\n    <name>Track ").append(i + 1).append("</name>\n");
+                for (int j = 0; j < mSegmentsPerTrack; j++) {
+                    append("    <trkseg>\n");
+                    for (int k = 0; k < mPointsPerSegment; k++) {
+                        boolean last = i == mTracks - 1 && j == mSegmentsPerTrack - 1 && k == mPointsPerSegment - 1;
+                        if (last && mEnding == Ending.TRUNCATED) {
+                            step();
+                            append("      <trkpt");
+                            appendCoordinates().append(">\n        <ele>");
+                            flush();
+                            return;
+                        }
+                        appendTrackPoint();
+                    }
+                    append("    </trkseg>\n");
+                }
+                append("  </trk>\n");
+            }
+            if (mEnding == Ending.COMPLETE) {
+                append("</gpx>\n");
+            }
+            flush();
+        }
+
+        private void appendTrackPoint() throws IOException {
+            step();
+            append("      <trkpt");
+            appendCoordinates().append(">\n");
+            appendElevationAndTime("        ");
+            if (mExtensionDensity > 0 && mRandom.nextDouble() < mExtensionDensity) {
+                append("        <extensions>\n          <gpxtpx:TrackPointExtension>\n");
+                append("            <gpxtpx:atemp>").appendFixed(Math.round(150 + 100 * mRandom.nextDouble()), 1)
+                        .append("</gpxtpx:atemp>\n");
+                append("            <gpxtpx:hr>").append(90 + mRandom.nextInt(90)).append("</gpxtpx:hr>\n");
+                append("            <gpxtpx:cad>").append(60 + mRandom.nextInt(40)).append("</gpxtpx:cad>\n");
+                append("          </gpxtpx:TrackPointExtension>\n");
+                if (mRandom.nextBoolean()) {
+                    append("          <bench:power>").append(100 + mRandom.nextInt(300)).append("</bench:power>\n");
+                }
+                append("        </extensions>\n");
+            }
+            append("      </trkpt>\n");
+        }
+
+        // Moves on by a few meters in a slowly changing direction, and a second or two later.
+        private void step() {
+            mBearing += 0.2 * (mRandom.nextDouble() - 0.5);
+            double distance = 0.00002 + 0.00008 * mRandom.nextDouble();
+            mLatitude = Math.max(-85, Math.min(85, mLatitude + distance * Math.cos(mBearing)));
+            mLongitude += distance * Math.sin(mBearing);
+            if (mLongitude > 180) {
+                mLongitude -= 360;
+            } else if (mLongitude < -180) {
+                mLongitude += 360;
+            }
+            mElevation += mRandom.nextDouble() - 0.5;
+            mTime += 1 + mRandom.nextInt(2);
+        }
+
+        private boolean missing() {
+            return mMissingFieldRate > 0 && mRandom.nextDouble() < mMissingFieldRate;
+        }
+
+        private Output appendCoordinates() throws IOException {
+            append(" lat=\"").appendFixed(Math.round(mLatitude * 1e7), 7).append("\" lon=\"")
+                    .appendFixed(Math.round(mLongitude * 1e7), 7).append("\"");
+            return this;
+        }
+
+        private void appendElevationAndTime(String indent) throws IOException {
+            if (!missing()) {
+                append(indent).append("<ele>").appendFixed(Math.round(mElevation * 10), 1).append("</ele>\n");
+            }
+            if (!missing()) {
+                append(indent).append("<time>");
+                appendTime(mTime).append("</time>\n");
+            }
+        }
+
+        private Output appendTime(long epochSecond) throws IOException {
+            LocalDateTime time = LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC);
+            appendDigits(time.getYear(), 4).append("-").appendDigits(time.getMonthValue(), 2).append("-")
+                    .appendDigits(time.getDayOfMonth(), 2).append("T").appendDigits(time.getHour(), 2).append(":")
+                    .appendDigits(time.getMinute(), 2).append(":").appendDigits(time.getSecond(), 2).append("Z");
+            return this;
+        }
+
+        // The number divided by 10^decimals, e.g. 12345 with 2 decimals gives 123.45.
+        private Output appendFixed(long value, int decimals) throws IOException {
+            if (value < 0) {
+                append("-");
+                value = -value;
+            }
+            long unit = 1;
+            for (int i = 0; i < decimals; i++) {
+                unit *= 10;
+            }
+            append(value / unit).append(".").appendDigits(value % unit, decimals);
+            return this;
+        }
+
+        private Output appendDigits(long value, int digits) throws IOException {
+            ensure(digits);
+            for (int i = digits - 1; i >= 0; i--) {
+                mBuffer[mCount + i] = (byte) ('0' + value % 10);
+                value /= 10;
+            }
+            mCount += digits;
+            return this;
+        }
+
+        private Output append(long value) throws IOException {
+            int digits = 1;
+            for (long rest = value / 10; rest > 0; rest /= 10) {
+                digits++;
+            }
+            return appendDigits(value, digits);
+        }
+
+        private Output append(String ascii) throws IOException {
+            ensure(ascii.length());
+            if (ascii.length() > mBuffer.length) {
+                mOut.write(ascii.getBytes(StandardCharsets.US_ASCII));
+                return this;
+            }
+            for (int i = 0; i < ascii.length(); i++) {
+                mBuffer[mCount++] = (byte) ascii.charAt(i);
+            }
+            return this;
+        }
+
+        private void ensure(int length) throws IOException {
+            if (mCount + length > mBuffer.length) {
+                flush();
+            }
+        }
+
+        private void flush() throws IOException {
+            mOut.write(mBuffer, 0, mCount);
+            mCount = 0;
+        }
+    }
+
+    public static class Builder {
+        private long mSeed = 1;
+        private int mTracks = 1;
+        private int mSegmentsPerTrack = 1;
+        private int mPointsPerSegment = 1000;
+        private int mWayPoints;
+        private int mRoutes;
+        private int mPointsPerRoute;
+        private double mExtensionDensity;
+        private double mMissingFieldRate;
+        private Ending mEnding = Ending.COMPLETE;
+
+        /**
+         * The seed of the random walk and of all the random choices, 1 by default.
+         */
+        public Builder setSeed(long seed) {
+            mSeed = seed;
+            return this;
+        }
+
+        public Builder setTracks(int tracks) {
+            mTracks = tracks;
+            return this;
+        }
+
+        public Builder setSegmentsPerTrack(int segmentsPerTrack) {
+            mSegmentsPerTrack = segmentsPerTrack;
+            return this;
+        }
+
+        public Builder setPointsPerSegment(int pointsPerSegment) {
+            mPointsPerSegment = pointsPerSegment;
+            return this;
+        }
+
+        public Builder setWayPoints(int wayPoints) {
+            mWayPoints = wayPoints;
+            return this;
+        }
+
+        public Builder setRoutes(int routes) {
+            mRoutes = routes;
+            return this;
+        }
+
+        public Builder setPointsPerRoute(int pointsPerRoute) {
+            mPointsPerRoute = pointsPerRoute;
+            return this;
+        }
+
+        /**
+         * The fraction of the track points with extensions, from 0 (the default) to 1. Half of them
+         * also carry an element of a custom namespace.
+         */
+        public Builder setExtensionDensity(double extensionDensity) {
+            mExtensionDensity = extensionDensity;
+            return this;
+        }
+
+        /**
+         * The probability that each optional field of a point (elevation, time, name) is left out,
+         * 0 by default.
+         */
+        public Builder setMissingFieldRate(double missingFieldRate) {
+            mMissingFieldRate = missingFieldRate;
+            return this;
+        }
+
+        public Builder setEnding(Ending ending) {
+            mEnding = ending;
+            return this;
+        }
+
+        public CorpusGenerator build() {
+            return new CorpusGenerator(this);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package io.ticofab.androidgpxparser.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import io.ticofab.androidgpxparser.parser.ByteGpxParser;
+import io.ticofab.androidgpxparser.parser.GPXParser;
+import io.ticofab.androidgpxparser.parser.XmlPullFactory;
+import io.ticofab.androidgpxparser.parser.domain.Gpx;
+
+/**
+ * Parses the documents of the {@link Corpus} into a {@link Gpx}, with the XmlPull based
+ * {@link GPXParser} and with the {@link ByteGpxParser}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ParseBenchmark {
+
+    private GPXParser mParser;
+    private ByteGpxParser mByteParser;
+
+    @Setup
+    public void setUp() throws XmlPullParserException {
+        mParser = new GPXParser(new XmlPullFactory());
+        mByteParser = new ByteGpxParser();
+    }
+
+    @Benchmark
+    public Gpx parse(Corpus corpus, PointCounter counter) throws IOException, XmlPullParserException {
+        counter.points += corpus.getPointCount();
+        return mParser.parse(corpus.newInputStream());
+    }
+
+    @Benchmark
+    public Gpx parseBytes(Corpus corpus, PointCounter counter) throws XmlPullParserException {
+        counter.points += corpus.getPointCount();
+        return mByteParser.parse(corpus.getBuffer());
+    }
+}
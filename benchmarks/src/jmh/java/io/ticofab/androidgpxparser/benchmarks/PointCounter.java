@@ -0,0 +1,23 @@
+package io.ticofab.androidgpxparser.benchmarks;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Counts the points processed by a benchmark, which JMH then reports as points per second next to the
+ * operations per second.
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class PointCounter {
+
+    public long points;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        points = 0;
+    }
+}
@@ -0,0 +1,44 @@
+package io.ticofab.androidgpxparser.benchmarks;
+
+import org.joda.time.DateTime;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.ticofab.androidgpxparser.parser.domain.Track;
+import io.ticofab.androidgpxparser.parser.domain.TrackPoint;
+import io.ticofab.androidgpxparser.parser.domain.TrackSegment;
+
+/**
+ * Walks the parsed documents of the {@link Corpus} the way an app draws a track: every
+ * {@code Track -> TrackSegment -> TrackPoint}, reading the coordinates, the elevation and the time.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class TraversalBenchmark {
+
+    @Benchmark
+    public void trackPoints(Corpus corpus, PointCounter counter, Blackhole blackhole) {
+        long points = 0;
+        for (Track track : corpus.getGpx().getTracks()) {
+            for (TrackSegment segment : track.getTrackSegments()) {
+                List<TrackPoint> trackPoints = segment.getTrackPoints();
+                for (int i = 0; i < trackPoints.size(); i++) {
+                    TrackPoint point = trackPoints.get(i);
+                    blackhole.consume(point.getLatitude());
+                    blackhole.consume(point.getLongitude());
+                    blackhole.consume(point.getElevation());
+                    DateTime time = point.getTime();
+                    blackhole.consume(time != null ? time.getMillis() : 0);
+                }
+                points += trackPoints.size();
+            }
+        }
+        counter.points += points;
+    }
+}
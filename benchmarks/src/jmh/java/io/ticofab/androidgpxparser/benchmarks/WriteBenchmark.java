@@ -0,0 +1,56 @@
+package io.ticofab.androidgpxparser.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import io.ticofab.androidgpxparser.parser.GPXParser;
+import io.ticofab.androidgpxparser.parser.XmlPullFactory;
+
+/**
+ * Writes the parsed documents of the {@link Corpus} back to XML, into a stream that only counts the
+ * bytes so that the serializer is measured rather than the copies.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class WriteBenchmark {
+
+    private GPXParser mParser;
+
+    @Setup
+    public void setUp() throws XmlPullParserException {
+        mParser = new GPXParser(new XmlPullFactory());
+    }
+
+    @Benchmark
+    public long write(Corpus corpus, PointCounter counter) throws IOException {
+        CountingOutputStream out = new CountingOutputStream();
+        mParser.write(corpus.getGpx(), out);
+        counter.points += corpus.getPointCount();
+        return out.mCount;
+    }
+
+    private static class CountingOutputStream extends OutputStream {
+        private long mCount;
+
+        @Override
+        public void write(int b) {
+            mCount++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            mCount += len;
+        }
+    }
+}
@@ -4,27 +4,61 @@ import android.content.res.AssetManager;
 
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 import androidx.test.filters.MediumTest;
+import androidx.test.filters.SdkSuppress;
 import androidx.test.platform.app.InstrumentationRegistry;
 
 import org.joda.time.DateTime;
+import org.joda.time.format.ISODateTimeFormat;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.xmlpull.v1.XmlPullParserException;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
 
 import io.ticofab.androidgpxparser.parser.domain.Author;
 import io.ticofab.androidgpxparser.parser.domain.Copyright;
 import io.ticofab.androidgpxparser.parser.domain.Email;
+import io.ticofab.androidgpxparser.parser.domain.Extension;
 import io.ticofab.androidgpxparser.parser.domain.Gpx;
 import io.ticofab.androidgpxparser.parser.domain.Link;
 import io.ticofab.androidgpxparser.parser.domain.Metadata;
+import io.ticofab.androidgpxparser.parser.domain.Point;
+import io.ticofab.androidgpxparser.parser.domain.Route;
+import io.ticofab.androidgpxparser.parser.domain.RoutePoint;
+import io.ticofab.androidgpxparser.parser.domain.Track;
+import io.ticofab.androidgpxparser.parser.domain.TrackPoint;
+import io.ticofab.androidgpxparser.parser.domain.TrackPointExtension;
+import io.ticofab.androidgpxparser.parser.domain.TrackSegment;
+import io.ticofab.androidgpxparser.parser.domain.WayPoint;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 @MediumTest
 @RunWith(AndroidJUnit4.class)
@@ -144,6 +178,1114 @@ public class GPXParserTest {
         assertNull(copyright.getLicense());
     }
 
+    @Test
+    public void testStreamingHandler() throws IOException, XmlPullParserException {
+        final int[] counts = new int[5];
+        GpxHandler handler = new GpxHandler() {
+            @Override
+            public void onWayPoint(WayPoint wayPoint) {
+                counts[0]++;
+            }
+
+            @Override
+            public void onRoutePoint(RoutePoint routePoint) {
+                counts[1]++;
+            }
+
+            @Override
+            public void onTrackPoint(TrackPoint trackPoint) {
+                counts[2]++;
+            }
+
+            @Override
+            public void onSegmentEnd(TrackSegment segment) {
+                assertTrue(segment.getTrackPoints().isEmpty());
+                counts[3]++;
+            }
+
+            @Override
+            public void onTrackEnd(Track track) {
+                assertTrue(track.getTrackSegments().isEmpty());
+                counts[4]++;
+            }
+        };
+        new GPXParser().parse(getAssets().open("garminBaseCampExport.gpx"), handler);
+
+        Gpx gpx = new GPXParser().parse(getAssets().open("garminBaseCampExport.gpx"));
+        assertEquals(gpx.getWayPoints().size(), counts[0]);
+        assertEquals(gpx.getRoutes().get(0).getRoutePoints().size(), counts[1]);
+        assertEquals(gpx.getTracks().get(0).getTrackSegments().get(0).getTrackPoints().size(), counts[2]);
+        assertEquals(1, counts[3]);
+        assertEquals(1, counts[4]);
+    }
+
+    @Test
+    @SdkSuppress(minSdkVersion = 24)
+    public void testTrackPointIterator() throws IOException, XmlPullParserException {
+        Gpx gpx = new GPXParser().parse(getAssets().open("garminBaseCampExport.gpx"));
+        List<TrackPoint> expected = gpx.getTracks().get(0).getTrackSegments().get(0).getTrackPoints();
+
+        try (GpxReader reader = new GpxReader(getAssets().open("garminBaseCampExport.gpx"))) {
+            GpxReader.TrackPointIterator iterator = reader.trackPoints();
+            int count = 0;
+            while (iterator.hasNext()) {
+                TrackPoint point = iterator.next();
+                assertEquals(0, iterator.getTrackIndex());
+                assertEquals(0, iterator.getSegmentIndex());
+                assertEquals(count, iterator.getPointIndex());
+                assertEquals(expected.get(count).getLatitude(), point.getLatitude());
+                assertEquals(expected.get(count).getTime(), point.getTime());
+                count++;
+            }
+            assertEquals(expected.size(), count);
+        }
+    }
+
+    @Test
+    @SdkSuppress(minSdkVersion = 24)
+    public void testTrackPointStreamStopsEarly() throws IOException, XmlPullParserException {
+        // this file fails when read to the end, but the first points can still be streamed
+        try (Stream<TrackPoint> points = new GpxReader(getAssets().open("garminBaseCampExport-noclosingtag.gpx")).trackPointStream()) {
+            assertEquals(3, points.limit(3).count());
+        }
+    }
+
+    @Test
+    @SdkSuppress(minSdkVersion = 24)
+    public void testTrackPointIteratorTruncated() throws IOException, XmlPullParserException {
+        // both fail once read to the end, instead of ending quietly or looping
+        for (String asset : new String[]{"garminBaseCampExport-truncated.gpx", "garminBaseCampExport-noclosingtag.gpx"}) {
+            try (Stream<TrackPoint> points = new GpxReader(getAssets().open(asset)).trackPointStream()) {
+                points.count();
+                fail(asset);
+            } catch (IllegalStateException e) {
+                assertTrue(asset, e.getCause() instanceof XmlPullParserException);
+            }
+        }
+    }
+
+    @Test
+    public void testTimeParsingMatchesJoda() {
+        String[] times = {
+                "2019-04-04T07:00:00+03:00",
+                "2016-02-29T23:59:59.999Z",
+                "1969-12-31T23:59:59.5-00:30",
+                "2012-10-20T10:00:00.123456789Z",
+                "2021-01-01T12:30:00",
+                "2021-01-01T12:30Z"
+        };
+        for (String time : times) {
+            assertEquals(time, ISODateTimeFormat.dateTimeParser().parseDateTime(time), GpxTime.parseDateTime(time));
+        }
+    }
+
+    @Test
+    public void testNumberParsingMatchesDouble() {
+        String[] numbers = {"0", "-0.0", "48.2025146484375", "-179.999999999", "1234.5", "0.1", "00012.3400",
+                "48.277669390663505", "1e5", "+1.5", " 1.5"};
+        for (String number : numbers) {
+            assertEquals(number, Double.valueOf(number), (Double) GpxNumber.parseDouble(number));
+        }
+    }
+
+    @Test
+    public void testCompactTrackSegments() throws IOException, XmlPullParserException {
+        TrackSegment expected = new GPXParser().parse(getAssets().open("shores-of-derwentwater.xml"))
+                .getTracks().get(0).getTrackSegments().get(0);
+        ParseOptions options = new ParseOptions.Builder().setCompactTrackSegments(true).build();
+        TrackSegment[] compacts = {
+                new GPXParser(options).parse(getAssets().open("shores-of-derwentwater.xml"))
+                        .getTracks().get(0).getTrackSegments().get(0),
+                new ByteGpxParser(options).parse(getAssets().open("shores-of-derwentwater.xml"))
+                        .getTracks().get(0).getTrackSegments().get(0)
+        };
+
+        for (TrackSegment compact : compacts) {
+            assertTrue(compact.isCompact());
+            assertEquals(expected.getTrackPointCount(), compact.getTrackPointCount());
+            for (int i = 0; i < compact.getTrackPointCount(); i++) {
+                assertEquals(expected.getLatitude(i), compact.getLatitude(i), 0);
+                assertEquals(expected.getLongitude(i), compact.getLongitude(i), 0);
+                assertEquals(expected.getElevation(i), compact.getElevation(i), 0.001);
+                assertEquals(expected.getTimeMillis(i), compact.getTimeMillis(i));
+
+                TrackPoint point = compact.getTrackPoints().get(i);
+                assertEquals(expected.getTrackPoints().get(i).getLatitude(), point.getLatitude());
+                assertEquals(expected.getTrackPoints().get(i).getTime(), point.getTime());
+            }
+        }
+
+        // coordinates left out by a projection are NaN, whatever the representation
+        ParseOptions.Builder projection = new ParseOptions.Builder().setPointFields(ParseOptions.PointField.TIME);
+        TrackSegment[] projected = {
+                new GPXParser(projection.build()).parse(getAssets().open("shores-of-derwentwater.xml"))
+                        .getTracks().get(0).getTrackSegments().get(0),
+                new GPXParser(projection.setCompactTrackSegments(true).build())
+                        .parse(getAssets().open("shores-of-derwentwater.xml")).getTracks().get(0).getTrackSegments().get(0)
+        };
+        for (TrackSegment segment : projected) {
+            assertTrue(Double.isNaN(segment.getLatitude(0)));
+            assertTrue(Double.isNaN(segment.getLongitude(0)));
+            assertTrue(Double.isNaN(segment.getElevation(0)));
+            assertEquals(expected.getTimeMillis(0), segment.getTimeMillis(0));
+            assertNull(segment.getTrackPoints().get(0).getLatitude());
+        }
+    }
+
+    @Test
+    public void testWriteRoundTrip() throws IOException, XmlPullParserException {
+        Gpx gpx = new GPXParser().parse(getAssets().open("garminBaseCampExport.gpx"));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new GPXParser().write(gpx, out);
+        Gpx written = new GPXParser().parse(new ByteArrayInputStream(out.toByteArray()));
+
+        assertEquals(gpx.getWayPoints().size(), written.getWayPoints().size());
+        assertEquals(gpx.getRoutes().size(), written.getRoutes().size());
+        assertEquals(gpx.getRoutes().get(0).getRouteName(), written.getRoutes().get(0).getRouteName());
+        assertEquals(gpx.getRoutes().get(0).getRoutePoints().size(), written.getRoutes().get(0).getRoutePoints().size());
+        assertEquals(gpx.getTracks().size(), written.getTracks().size());
+        Track track = gpx.getTracks().get(0);
+        Track writtenTrack = written.getTracks().get(0);
+        assertEquals(track.getTrackName(), writtenTrack.getTrackName());
+        List<TrackPoint> points = track.getTrackSegments().get(0).getTrackPoints();
+        List<TrackPoint> writtenPoints = writtenTrack.getTrackSegments().get(0).getTrackPoints();
+        assertEquals(points.size(), writtenPoints.size());
+        for (int i = 0; i < points.size(); i++) {
+            assertEquals(points.get(i).getLatitude(), writtenPoints.get(i).getLatitude());
+            assertEquals(points.get(i).getLongitude(), writtenPoints.get(i).getLongitude());
+            assertEquals(points.get(i).getElevation(), writtenPoints.get(i).getElevation());
+            assertEquals(points.get(i).getTime(), writtenPoints.get(i).getTime());
+        }
+    }
+
+    @Test
+    public void testIncrementalWriter() throws IOException, XmlPullParserException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GpxWriter writer = new GpxWriter(out);
+        writer.startGpx(new Gpx.Builder().setVersion("1.1").setCreator("test").build())
+                .startTrack(new Track.Builder().setTrackName("live").setTrackSegments(new ArrayList<>()).build())
+                .startSegment();
+        for (int i = 0; i < 100; i++) {
+            writer.writeTrackPoint((TrackPoint) new TrackPoint.Builder()
+                    .setLatitude(45.0 + i / 1000.0)
+                    .setLongitude(7.5)
+                    .setTime(new DateTime(1000L * i))
+                    .build());
+        }
+        writer.endSegment().endTrack().endGpx();
+        writer.close();
+
+        Gpx gpx = new GPXParser().parse(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals("test", gpx.getCreator());
+        assertEquals("live", gpx.getTracks().get(0).getTrackName());
+        List<TrackPoint> points = gpx.getTracks().get(0).getTrackSegments().get(0).getTrackPoints();
+        assertEquals(100, points.size());
+        assertEquals(45.099, points.get(99).getLatitude(), 0);
+        assertEquals(99000L, points.get(99).getTime().getMillis());
+    }
+
+    @Test
+    public void testWriterRequiresCoordinates() throws IOException, XmlPullParserException {
+        ParseOptions options = new ParseOptions.Builder()
+                .setPointFields(ParseOptions.PointField.TIME)
+                .build();
+        Gpx gpx = new GPXParser(options).parse(getAssets().open("garminBaseCampExport.gpx"));
+        assertNull(gpx.getTracks().get(0).getTrackSegments().get(0).getTrackPoints().get(0).getLatitude());
+        try {
+            new GPXParser().write(gpx, new ByteArrayOutputStream());
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("latitude"));
+        }
+    }
+
+    @Test
+    public void testXmlPullFactory() throws IOException, XmlPullParserException {
+        GPXParser parser = new GPXParser(new XmlPullFactory());
+        Gpx gpx = parser.parse(getAssets().open("wadlbeisserExport.gpx"));
+        assertEquals(2, gpx.getWayPoints().size());
+        assertEquals(7847, gpx.getRoutes().get(0).getRoutePoints().size());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        parser.write(gpx, out);
+        Gpx written = parser.parse(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(7847, written.getRoutes().get(0).getRoutePoints().size());
+    }
+
+    @Test
+    public void testByteParserMatchesGpxParser() throws IOException, XmlPullParserException {
+        String[] files = {"shores-of-derwentwater.xml", "wadlbeisserExport.gpx", "garminBaseCampExport.gpx",
+                "metadata-full.gpx", "metadata-minimal.gpx"};
+        for (String file : files) {
+            Gpx expected = new GPXParser().parse(getAssets().open(file));
+            Gpx actual = new ByteGpxParser().parse(getAssets().open(file));
+            assertEquals(file, write(expected), write(actual));
+            assertEquals(file, expected.getAttributes().size(), actual.getAttributes().size());
+        }
+    }
+
+    @Test(expected = XmlPullParserException.class)
+    public void testByteParserTruncated() throws IOException, XmlPullParserException {
+        new ByteGpxParser().parse(getAssets().open("garminBaseCampExport-truncated.gpx"));
+    }
+
+    @Test(expected = XmlPullParserException.class)
+    public void testByteParserNoClosingTag() throws IOException, XmlPullParserException {
+        new ByteGpxParser().parse(getAssets().open("garminBaseCampExport-noclosingtag.gpx"));
+    }
+
+    @Test
+    public void testByteParserMarkup() throws IOException, XmlPullParserException {
+        String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<!-- exported -->\n"
+                + "<gpx xmlns=\"http://www.topografix.com/GPX/1/1\" xmlns:t=\"urn:test\" version=\"1.1\" creator=\"a &amp; b\">"
+                + "<wpt lat='46.5' lon=\"-7.25\"><name>Caf\u00e9 <![CDATA[<du>]]> lac</name><sym/><ele>1.5<!-- m --></ele></wpt>"
+                + "<trk><trkseg><trkpt lat=\"1\" lon=\"2\"><time>2020-01-02T03:04:05.678+01:00</time>"
+                + "<extensions><t:speed unit=\"m/s\">3.5</t:speed><t:ext><t:hr>120</t:hr></t:ext></extensions>"
+                + "</trkpt></trkseg></trk></gpx>";
+        Gpx gpx = new ByteGpxParser().parse(new ByteArrayInputStream(xml.getBytes("UTF-8")));
+
+        assertEquals("a & b", gpx.getCreator());
+        WayPoint wayPoint = gpx.getWayPoints().get(0);
+        assertEquals("Caf\u00e9 <du> lac", wayPoint.getName());
+        assertEquals("", wayPoint.getSym());
+        assertEquals(1.5, wayPoint.getElevation(), 0);
+        assertEquals(-7.25, wayPoint.getLongitude(), 0);
+
+        TrackPoint point = gpx.getTracks().get(0).getTrackSegments().get(0).getTrackPoints().get(0);
+        assertEquals(ISODateTimeFormat.dateTimeParser().parseDateTime("2020-01-02T03:04:05.678+01:00"), point.getTime());
+        assertEquals(2, point.getExtensions().size());
+        assertEquals("speed", point.getExtensions().get(0).getName());
+        assertEquals("t", point.getExtensions().get(0).getPrefix());
+        assertEquals("urn:test", point.getExtensions().get(0).getNamespace());
+        assertEquals("3.5", point.getExtensions().get(0).getValue());
+        assertEquals("m/s", point.getExtensions().get(0).getAttributes().get(0).getValue());
+        assertEquals("120", point.getExtensions().get(1).getChildren().get(0).getValue());
+    }
+
+    @Test
+    public void testByteParserMappedFile() throws IOException, XmlPullParserException {
+        File file = File.createTempFile("wadlbeisserExport", ".gpx");
+        try {
+            InputStream in = getAssets().open("wadlbeisserExport.gpx");
+            OutputStream out = new FileOutputStream(file);
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            out.close();
+            in.close();
+
+            Gpx expected = new GPXParser().parse(getAssets().open("wadlbeisserExport.gpx"));
+            assertEquals(write(expected), write(new ByteGpxParser().parse(file)));
+            FileInputStream channelInput = new FileInputStream(file);
+            Gpx gpx = new ByteGpxParser().parse(channelInput.getChannel());
+            channelInput.close();
+            assertEquals(7847, gpx.getRoutes().get(0).getRoutePoints().size());
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testByteParserParallel() throws IOException, XmlPullParserException {
+        StringBuilder xml = new StringBuilder("<gpx xmlns=\"http://www.topografix.com/GPX/1/1\" xmlns:t=\"urn:test\" version=\"1.1\" creator=\"test\">");
+        for (int track = 0; track < 3; track++) {
+            xml.append("<trk><name>track ").append(track).append("</name>");
+            for (int segment = 0; segment < 5; segment++) {
+                xml.append("<trkseg><!-- </trkseg> -->");
+                for (int i = 0; i < 200; i++) {
+                    xml.append("<trkpt lat=\"").append(track).append('.').append(i)
+                            .append("\" lon=\"").append(segment).append("\"><extensions><t:n>").append(i)
+                            .append("</t:n></extensions></trkpt>");
+                }
+                xml.append("</trkseg>");
+            }
+            xml.append("<trkseg/></trk>");
+        }
+        xml.append("<wpt lat=\"1\" lon=\"2\"/></gpx>");
+        ByteBuffer buffer = ByteBuffer.wrap(xml.toString().getBytes("UTF-8"));
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            Gpx expected = new ByteGpxParser().parse(buffer);
+            Gpx gpx = new ByteGpxParser().parseParallel(buffer, pool);
+            assertEquals(write(expected), write(gpx));
+            assertEquals(3, gpx.getTracks().size());
+            assertEquals(6, gpx.getTracks().get(2).getTrackSegments().size());
+            Extension extension = gpx.getTracks().get(1).getTrackSegments().get(4).getTrackPoints().get(7).getExtensions().get(0);
+            assertEquals("urn:test", extension.getNamespace());
+            assertEquals("7", extension.getValue());
+
+            Gpx garmin = new ByteGpxParser().parseParallel(ByteGpxParser.readFully(getAssets().open("garminBaseCampExport.gpx")), pool);
+            assertEquals(write(new GPXParser().parse(getAssets().open("garminBaseCampExport.gpx"))), write(garmin));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test(expected = XmlPullParserException.class)
+    public void testByteParserParallelNoClosingTag() throws IOException, XmlPullParserException {
+        ByteBuffer buffer = ByteGpxParser.readFully(getAssets().open("garminBaseCampExport-noclosingtag.gpx"));
+        new ByteGpxParser().parseParallel(buffer, ForkJoinPool.commonPool());
+    }
+
+    @Test
+    @SdkSuppress(minSdkVersion = 24)
+    public void testBatchParser() throws Exception {
+        List<GpxBatchParser.Source> sources = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            String file = i % 3 == 0 ? "garminBaseCampExport-truncated.gpx" : "garminBaseCampExport.gpx";
+            sources.add(() -> getAssets().open(file));
+        }
+        // sources that cannot be opened fail without holding their slot or their pull parser
+        GpxBatchParser.Source missing = () -> getAssets().open("missing.gpx");
+        GpxBatchParser batchParser = new GpxBatchParser.Builder()
+                .setMaxInFlight(3)
+                .build();
+        try {
+            List<CompletableFuture<Gpx>> results = batchParser.submitAll(sources);
+            for (int i = 0; i < results.size(); i++) {
+                if (i % 3 == 0) {
+                    try {
+                        results.get(i).join();
+                        fail();
+                    } catch (CompletionException e) {
+                        assertTrue(e.getCause() instanceof XmlPullParserException);
+                    }
+                } else {
+                    assertEquals(10, results.get(i).join().getTracks().get(0).getTrackSegments().get(0).getTrackPoints().size());
+                }
+            }
+
+            int parsed = 0;
+            int failed = 0;
+            for (CompletableFuture<Gpx> result : batchParser.parseAll(sources)) {
+                assertTrue(result.isDone());
+                if (result.isCompletedExceptionally()) {
+                    failed++;
+                } else {
+                    parsed++;
+                }
+            }
+            assertEquals(8, parsed);
+            assertEquals(4, failed);
+
+            for (CompletableFuture<Gpx> result : batchParser.submitAll(Arrays.asList(missing, missing, missing, missing))) {
+                try {
+                    result.join();
+                    fail();
+                } catch (CompletionException e) {
+                    assertTrue(e.getCause() instanceof IOException);
+                }
+            }
+            assertEquals(10, batchParser.submit(sources.get(1)).join()
+                    .getTracks().get(0).getTrackSegments().get(0).getTrackPoints().size());
+        } finally {
+            batchParser.close();
+        }
+    }
+
+    @Test
+    public void testProjection() throws IOException, XmlPullParserException {
+        ParseOptions options = new ParseOptions.Builder()
+                .setPointFields(ParseOptions.PointField.LATITUDE, ParseOptions.PointField.LONGITUDE, ParseOptions.PointField.TIME)
+                .setSkipExtensions(true)
+                .setSkipWayPoints(true)
+                .setSkipRoutes(true)
+                .build();
+        Gpx full = new GPXParser().parse(getAssets().open("garminBaseCampExport.gpx"));
+        Gpx[] projected = {
+                new GPXParser(options).parse(getAssets().open("garminBaseCampExport.gpx")),
+                new ByteGpxParser(options).parse(getAssets().open("garminBaseCampExport.gpx"))
+        };
+        for (Gpx gpx : projected) {
+            assertEquals(0, gpx.getWayPoints().size());
+            assertEquals(0, gpx.getRoutes().size());
+            assertEquals(full.getTracks().get(0).getTrackName(), gpx.getTracks().get(0).getTrackName());
+            List<TrackPoint> expected = full.getTracks().get(0).getTrackSegments().get(0).getTrackPoints();
+            List<TrackPoint> points = gpx.getTracks().get(0).getTrackSegments().get(0).getTrackPoints();
+            assertEquals(expected.size(), points.size());
+            for (int i = 0; i < points.size(); i++) {
+                assertEquals(expected.get(i).getLatitude(), points.get(i).getLatitude());
+                assertEquals(expected.get(i).getLongitude(), points.get(i).getLongitude());
+                assertEquals(expected.get(i).getTime(), points.get(i).getTime());
+                assertNull(points.get(i).getElevation());
+                assertNull(points.get(i).getName());
+                assertTrue(points.get(i).getExtensions() == null || points.get(i).getExtensions().isEmpty());
+            }
+        }
+    }
+
+    @Test
+    public void testProjectionTruncated() throws IOException {
+        // skipped elements are read to their end, which a truncated document never reaches
+        ParseOptions[] projections = {
+                new ParseOptions.Builder().setSkipWayPoints(true).build(),
+                new ParseOptions.Builder().setSkipRoutes(true).build(),
+                new ParseOptions.Builder().setSkipExtensions(true).build(),
+                new ParseOptions.Builder().setPointFields(ParseOptions.PointField.LATITUDE).build()
+        };
+        for (ParseOptions options : projections) {
+            try {
+                new GPXParser(options).parse(getAssets().open("garminBaseCampExport-truncated.gpx"));
+                fail();
+            } catch (XmlPullParserException e) {
+                // expected
+            }
+            try {
+                new ByteGpxParser(options).parse(getAssets().open("garminBaseCampExport-truncated.gpx"));
+                fail();
+            } catch (XmlPullParserException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testParseMetadata() throws IOException, XmlPullParserException {
+        Gpx gpx = new GPXParser().parseMetadata(getAssets().open("metadata-full.gpx"));
+        Gpx full = new GPXParser().parse(getAssets().open("metadata-full.gpx"));
+        assertEquals(full.getVersion(), gpx.getVersion());
+        assertEquals(full.getCreator(), gpx.getCreator());
+        assertEquals("metadata-full", gpx.getMetadata().getName());
+        assertEquals(full.getMetadata().getTime(), gpx.getMetadata().getTime());
+        assertEquals("john.doe", gpx.getMetadata().getAuthor().getEmail().getId());
+        assertEquals(0, gpx.getTracks().size());
+
+        // stops before the broken part of the document
+        gpx = new GPXParser().parseMetadata(getAssets().open("garminBaseCampExport-noclosingtag.gpx"));
+        assertEquals("http://www.garmin.com", gpx.getMetadata().getLink().getHref());
+        assertNotNull(gpx.getMetadata().getBounds());
+    }
+
+    @Test
+    public void testSummarizer() throws IOException, XmlPullParserException {
+        for (String file : new String[]{"garminBaseCampExport.gpx", "wadlbeisserExport.gpx"}) {
+            Gpx gpx = new GPXParser().parse(getAssets().open(file));
+            List<Point> points = new ArrayList<>();
+            for (Route route : gpx.getRoutes()) {
+                points.addAll(route.getRoutePoints());
+            }
+            for (Track track : gpx.getTracks()) {
+                for (TrackSegment segment : track.getTrackSegments()) {
+                    points.addAll(segment.getTrackPoints());
+                }
+            }
+            double minLat = Double.POSITIVE_INFINITY;
+            double maxLon = Double.NEGATIVE_INFINITY;
+            DateTime start = null;
+            for (Point point : points) {
+                minLat = Math.min(minLat, point.getLatitude());
+                maxLon = Math.max(maxLon, point.getLongitude());
+                if (point.getTime() != null && (start == null || point.getTime().isBefore(start))) {
+                    start = point.getTime();
+                }
+            }
+
+            GpxSummary summary = new GpxSummarizer().summarize(getAssets().open(file));
+            GpxSummary byteSummary = new GpxSummarizer().summarize(ByteGpxParser.readFully(getAssets().open(file)));
+            for (GpxSummary s : new GpxSummary[]{summary, byteSummary}) {
+                assertEquals(file, points.size(), s.getPointCount());
+                assertEquals(minLat, s.getBounds().getMinLat(), 0);
+                assertEquals(maxLon, s.getBounds().getMaxLon(), 0);
+                assertEquals(start, s.getStartTime());
+                assertTrue(s.getDistance() > 0);
+            }
+            assertEquals(summary.getDistance(), byteSummary.getDistance(), 1e-6);
+            assertEquals(summary.getDuration(), byteSummary.getDuration());
+            assertEquals(summary.getMaxElevation(), byteSummary.getMaxElevation(), 0);
+        }
+        // one degree of latitude
+        assertEquals(111195, GpxSummarizer.distance(45, 7, 46, 7), 1);
+    }
+
+    @Test
+    public void testSummarizerTruncated() throws IOException {
+        // way points and extensions are skipped, up to the end of a truncated document
+        for (String file : new String[]{"garminBaseCampExport-truncated.gpx", "garminBaseCampExport-noclosingtag.gpx"}) {
+            try {
+                new GpxSummarizer().summarize(getAssets().open(file));
+                fail(file);
+            } catch (XmlPullParserException e) {
+                // expected
+            }
+            try {
+                new GpxSummarizer().summarize(ByteGpxParser.readFully(getAssets().open(file)));
+                fail(file);
+            } catch (XmlPullParserException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testExtensionDecoder() throws IOException, XmlPullParserException {
+        String doc = "<gpx xmlns=\"http://www.topografix.com/GPX/1/1\" version=\"1.1\" creator=\"test\""
+                + " xmlns:gpxtpx=\"" + TrackPointExtensionDecoder.NAMESPACE_V1 + "\"><trk><trkseg>"
+                + "<trkpt lat=\"46.5\" lon=\"7.5\"><extensions><gpxtpx:TrackPointExtension>"
+                + "<gpxtpx:atemp>21.5</gpxtpx:atemp><gpxtpx:hr>142</gpxtpx:hr><gpxtpx:cad>88</gpxtpx:cad>"
+                + "</gpxtpx:TrackPointExtension><speed>1</speed></extensions></trkpt>"
+                + "<trkpt lat=\"46.6\" lon=\"7.6\"><extensions><speed>2</speed></extensions></trkpt>"
+                + "</trkseg></trk></gpx>";
+        byte[] bytes = doc.getBytes("UTF-8");
+
+        // without a decoder, leaf extensions are read as generic elements
+        TrackPoint plain = new GPXParser().parse(new ByteArrayInputStream(bytes))
+                .getTracks().get(0).getTrackSegments().get(0).getTrackPoints().get(0);
+        assertEquals(2, plain.getExtensions().size());
+        assertEquals("1", plain.getExtensions().get(1).getValue());
+        assertEquals(3, plain.getExtensions().get(0).getChildren().size());
+        assertEquals(0, plain.getDecodedExtensions().size());
+
+        ParseOptions options = new ParseOptions.Builder()
+                .addExtensionDecoder(TrackPointExtensionDecoder.NAMESPACE_V1, new TrackPointExtensionDecoder())
+                .build();
+        Gpx gpx = new GPXParser(options).parse(new ByteArrayInputStream(bytes));
+        Gpx byteGpx = new ByteGpxParser(options).parse(ByteBuffer.wrap(bytes));
+        for (Gpx g : new Gpx[]{gpx, byteGpx}) {
+            List<TrackPoint> points = g.getTracks().get(0).getTrackSegments().get(0).getTrackPoints();
+            TrackPointExtension extension = points.get(0).getDecodedExtension(TrackPointExtension.class);
+            assertNotNull(extension);
+            assertEquals(21.5, extension.getAirTemperature(), 0);
+            assertEquals(142, extension.getHeartRate());
+            assertEquals(88, extension.getCadence());
+            assertTrue(Double.isNaN(extension.getDepth()));
+            // other namespaces are still generic, with interned names
+            assertEquals(1, points.get(0).getExtensions().size());
+            assertTrue(points.get(0).getExtensions().get(0).getName()
+                    == points.get(1).getExtensions().get(0).getName());
+            assertEquals("2", points.get(1).getExtensions().get(0).getValue());
+            assertNull(points.get(1).getDecodedExtension(TrackPointExtension.class));
+        }
+    }
+
+    @Test
+    public void testLazyExtensions() throws IOException, XmlPullParserException {
+        String doc = "<gpx xmlns=\"http://www.topografix.com/GPX/1/1\" version=\"1.1\" creator=\"test\""
+                + " xmlns:gpxtpx=\"" + TrackPointExtensionDecoder.NAMESPACE_V1 + "\"><trk><trkseg>"
+                + "<trkpt lat=\"46.5\" lon=\"7.5\"><extensions><gpxtpx:TrackPointExtension>"
+                + "<gpxtpx:hr>142</gpxtpx:hr></gpxtpx:TrackPointExtension><speed unit=\"m/s\">1 &amp; 2</speed>"
+                + "</extensions></trkpt>"
+                + "<trkpt lat=\"46.6\" lon=\"7.6\"><extensions/></trkpt>"
+                + "</trkseg></trk></gpx>";
+        byte[] bytes = doc.getBytes("UTF-8");
+        ParseOptions options = new ParseOptions.Builder().setLazyExtensions(true).build();
+
+        Gpx lazy = new ByteGpxParser(options).parse(ByteBuffer.wrap(bytes));
+        List<TrackPoint> points = lazy.getTracks().get(0).getTrackSegments().get(0).getTrackPoints();
+        assertNotNull(points.get(0).getRawExtensions());
+        assertTrue(points.get(0).getRawExtensions().getContent().startsWith("<gpxtpx:TrackPointExtension>"));
+        // written back without being decoded
+        String written = write(lazy);
+        assertTrue(written, written.contains("<speed unit=\"m/s\">1 &amp; 2</speed>"));
+
+        Gpx eager = new ByteGpxParser().parse(ByteBuffer.wrap(bytes));
+        Gpx rewritten = new GPXParser().parse(new ByteArrayInputStream(written.getBytes("UTF-8")));
+        for (Gpx gpx : new Gpx[]{eager, rewritten}) {
+            List<TrackPoint> expected = gpx.getTracks().get(0).getTrackSegments().get(0).getTrackPoints();
+            for (int i = 0; i < expected.size(); i++) {
+                List<Extension> extensions = points.get(i).getExtensions();
+                assertEquals(expected.get(i).getExtensions().size(), extensions.size());
+                for (int j = 0; j < extensions.size(); j++) {
+                    Extension e = expected.get(i).getExtensions().get(j);
+                    assertEquals(e.getName(), extensions.get(j).getName());
+                    assertEquals(e.getNamespace(), extensions.get(j).getNamespace());
+                    assertEquals(e.getValue(), extensions.get(j).getValue());
+                    assertEquals(e.getChildren().size(), extensions.get(j).getChildren().size());
+                    assertEquals(e.getAttributes().size(), extensions.get(j).getAttributes().size());
+                }
+            }
+        }
+        assertEquals("142", points.get(0).getExtensions().get(0).getChildren().get(0).getValue());
+    }
+
+    @Test
+    public void testBinaryCodecRoundTrip() throws IOException, XmlPullParserException {
+        GpxBinaryCodec codec = new GpxBinaryCodec();
+        for (String file : new String[]{"garminBaseCampExport.gpx", "wadlbeisserExport.gpx", "metadata-full.gpx",
+                "shores-of-derwentwater.xml"}) {
+            Gpx gpx = new GPXParser().parse(getAssets().open(file));
+            Gpx read = codec.read(new ByteArrayInputStream(toSnapshot(codec, gpx)));
+            assertEquals(file, write(gpx), write(read));
+        }
+
+        // times keep their zone
+        Gpx metadata = new GPXParser().parse(getAssets().open("metadata-full.gpx"));
+        assertEquals(metadata.getMetadata().getTime(),
+                codec.read(new ByteArrayInputStream(toSnapshot(codec, metadata))).getMetadata().getTime());
+
+        Gpx gpx = new GPXParser().parse(getAssets().open("wadlbeisserExport.gpx"));
+        List<RoutePoint> points = gpx.getRoutes().get(0).getRoutePoints();
+        List<RoutePoint> read = codec.read(new ByteArrayInputStream(toSnapshot(codec, gpx)))
+                .getRoutes().get(0).getRoutePoints();
+        for (int i = 0; i < points.size(); i++) {
+            assertEquals(points.get(i).getLatitude(), read.get(i).getLatitude());
+            assertEquals(points.get(i).getLongitude(), read.get(i).getLongitude());
+            assertEquals(points.get(i).getElevation(), read.get(i).getElevation());
+            assertEquals(points.get(i).getTime(), read.get(i).getTime());
+        }
+
+        // compact segments stay compact
+        ParseOptions options = new ParseOptions.Builder().setCompactTrackSegments(true).build();
+        Gpx compact = new GPXParser(options).parse(getAssets().open("garminBaseCampExport.gpx"));
+        Gpx readCompact = codec.read(new ByteArrayInputStream(toSnapshot(codec, compact)));
+        assertTrue(readCompact.getTracks().get(0).getTrackSegments().get(0).isCompact());
+        assertEquals(write(compact), write(readCompact));
+
+        try {
+            codec.read(new ByteArrayInputStream("<gpx/>".getBytes("UTF-8")));
+            fail();
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void testCachingParser() throws IOException, XmlPullParserException {
+        File directory = File.createTempFile("gpx-cache", "");
+        directory.delete();
+        try {
+            CachingGpxParser parser = new CachingGpxParser.Builder().setCacheDirectory(directory).build();
+            Gpx expected = new GPXParser().parse(getAssets().open("garminBaseCampExport.gpx"));
+
+            // a snapshot of an older format is dropped with the first write
+            directory.mkdirs();
+            File stale = new File(directory, "0000.v0.gpxb");
+            new FileOutputStream(stale).close();
+            // and so is a temporary file left by a dead writer
+            File orphan = new File(directory, "snapshot0000.tmp");
+            new FileOutputStream(orphan).close();
+            orphan.setLastModified(System.currentTimeMillis() - 120000);
+
+            Gpx parsed = parser.parse(getAssets().open("garminBaseCampExport.gpx"));
+            File[] snapshots = directory.listFiles();
+            assertEquals(1, snapshots.length);
+            assertTrue(snapshots[0].getName().endsWith(".v" + GpxBinaryCodec.FORMAT_VERSION + ".gpxb"));
+            Gpx cached = parser.parse(getAssets().open("garminBaseCampExport.gpx"));
+            assertEquals(write(expected), write(parsed));
+            assertEquals(write(expected), write(cached));
+
+            // a file has the same snapshot as its content
+            File source = File.createTempFile("garmin", ".gpx");
+            try {
+                FileOutputStream out = new FileOutputStream(source);
+                out.write(toByteArray(getAssets().open("garminBaseCampExport.gpx")));
+                out.close();
+                assertEquals(write(expected), write(parser.parse(source)));
+                assertEquals(1, directory.listFiles().length);
+            } finally {
+                source.delete();
+            }
+
+            // a broken snapshot is parsed again
+            new FileOutputStream(snapshots[0]).close();
+            assertEquals(write(expected), write(parser.parse(getAssets().open("garminBaseCampExport.gpx"))));
+            assertTrue(snapshots[0].length() > 0);
+
+            // other options, other snapshot
+            new CachingGpxParser.Builder()
+                    .setCacheDirectory(directory)
+                    .setParseOptions(new ParseOptions.Builder().setSkipRoutes(true).build())
+                    .build()
+                    .parse(getAssets().open("garminBaseCampExport.gpx"));
+            assertEquals(2, directory.listFiles().length);
+
+            // only the most recent snapshot fits
+            for (File file : directory.listFiles()) {
+                file.setLastModified(System.currentTimeMillis() - 60000);
+            }
+            Gpx metadata = new GPXParser().parse(getAssets().open("metadata-full.gpx"));
+            parser = new CachingGpxParser.Builder()
+                    .setCacheDirectory(directory)
+                    .setMaxBytes(toSnapshot(new GpxBinaryCodec(), metadata).length)
+                    .build();
+            parser.parse(getAssets().open("metadata-full.gpx"));
+            assertEquals(1, directory.listFiles().length);
+            assertEquals(write(metadata), write(parser.parse(getAssets().open("metadata-full.gpx"))));
+
+            parser.clear();
+            assertEquals(0, directory.listFiles().length);
+        } finally {
+            for (File file : directory.listFiles()) {
+                file.delete();
+            }
+            directory.delete();
+        }
+    }
+
+    @Test
+    @SdkSuppress(minSdkVersion = 24)
+    public void testGpxCache() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Gpx garmin = new GPXParser().parse(getAssets().open("garminBaseCampExport.gpx"));
+        Gpx metadata = new GPXParser().parse(getAssets().open("metadata-full.gpx"));
+        GpxCache<String> cache = new GpxCache.Builder<String>()
+                .setLoader(file -> {
+                    loads.incrementAndGet();
+                    started.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        throw new InterruptedIOException();
+                    }
+                    return new GPXParser().parse(getAssets().open(file));
+                })
+                .setMaxWeight(GpxCache.weigh(garmin) + GpxCache.weigh(metadata))
+                .build();
+
+        // concurrent misses share a single load
+        CompletableFuture<Gpx> first = CompletableFuture.supplyAsync(() -> get(cache, "garminBaseCampExport.gpx"));
+        started.await();
+        CompletableFuture<Gpx> second = CompletableFuture.supplyAsync(() -> get(cache, "garminBaseCampExport.gpx"));
+        release.countDown();
+        assertTrue(first.get() == second.get());
+        assertEquals(write(garmin), write(first.get()));
+        assertEquals(1, loads.get());
+        assertTrue(cache.get("garminBaseCampExport.gpx") == first.get());
+
+        GpxCache.Stats stats = cache.getStats();
+        assertEquals(2, stats.getHitCount());
+        assertEquals(1, stats.getMissCount());
+        assertEquals(1, stats.getSize());
+        assertEquals(GpxCache.weigh(garmin), stats.getWeight());
+
+        // the least recently used document makes room
+        cache.get("metadata-full.gpx");
+        cache.get("metadata-minimal.gpx");
+        stats = cache.getStats();
+        assertEquals(1, stats.getEvictionCount());
+        assertNull(cache.getIfPresent("garminBaseCampExport.gpx"));
+        assertNotNull(cache.getIfPresent("metadata-full.gpx"));
+
+        // failures are not cached
+        try {
+            cache.get("missing.gpx");
+            fail();
+        } catch (IOException e) {
+            // expected
+        }
+        assertEquals(1, cache.getStats().getLoadFailureCount());
+        assertNull(cache.getIfPresent("missing.gpx"));
+
+        cache.invalidateAll();
+        assertEquals(0, cache.getStats().getWeight());
+    }
+
+    @Test
+    public void testTailParser() throws IOException, XmlPullParserException {
+        File file = File.createTempFile("tail", ".gpx");
+        try {
+            for (String asset : new String[]{"garminBaseCampExport.gpx", "metadata-full.gpx"}) {
+                byte[] bytes = toByteArray(getAssets().open(asset));
+                new FileOutputStream(file).close();
+                GpxTreeBuilder builder = new GpxTreeBuilder(ParseOptions.DEFAULT);
+                GpxTailParser parser = new GpxTailParser(file, builder);
+                assertTrue(parser.poll());
+                assertEquals(0, parser.getPosition());
+
+                // appended in uneven chunks, cutting tags, attributes and texts anywhere
+                int chunk = asset.startsWith("metadata") ? 1 : 997;
+                boolean growing = true;
+                for (int pos = 0; pos < bytes.length; pos += chunk) {
+                    try (OutputStream out = new FileOutputStream(file, true)) {
+                        out.write(bytes, pos, Math.min(chunk, bytes.length - pos));
+                    }
+                    growing = parser.poll();
+                    assertTrue(parser.getPosition() <= pos + chunk);
+                }
+                assertTrue(!growing);
+                assertTrue(!parser.poll());
+                assertEquals(write(new GPXParser().parse(getAssets().open(asset))), write(builder.getGpx()));
+            }
+
+            // a document without its gpx end tag reports everything but the end of the document
+            byte[] bytes = toByteArray(getAssets().open("garminBaseCampExport-noclosingtag.gpx"));
+            try (OutputStream out = new FileOutputStream(file)) {
+                out.write(bytes);
+            }
+            List<TrackPoint> points = new ArrayList<>();
+            GpxTailParser parser = new GpxTailParser(file, new GpxHandler() {
+                @Override
+                public void onTrackPoint(TrackPoint trackPoint) {
+                    points.add(trackPoint);
+                }
+
+                @Override
+                public void onGpxEnd() {
+                    fail();
+                }
+            });
+            assertTrue(parser.poll());
+            assertEquals(new GPXParser().parse(getAssets().open("garminBaseCampExport.gpx"))
+                    .getTracks().get(0).getTrackSegments().get(0).getTrackPoints().size(), points.size());
+            assertTrue(parser.getPosition() <= bytes.length);
+            int count = points.size();
+            assertTrue(parser.poll());
+            assertEquals(count, points.size());
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testPushParser() throws IOException, XmlPullParserException {
+        for (String asset : new String[]{"garminBaseCampExport.gpx", "metadata-full.gpx", "wadlbeisserExport.gpx"}) {
+            byte[] bytes = toByteArray(getAssets().open(asset));
+            String expected = write(new GPXParser().parse(getAssets().open(asset)));
+            // chunks of any size, cutting tags, attributes and texts anywhere
+            for (int chunk : new int[]{1, 7, 997, bytes.length}) {
+                GpxTreeBuilder builder = new GpxTreeBuilder(ParseOptions.DEFAULT);
+                GpxPushParser parser = new GpxPushParser(builder);
+                boolean open = true;
+                for (int pos = 0; pos < bytes.length; pos += chunk) {
+                    ByteBuffer buffer = ByteBuffer.wrap(bytes, pos, Math.min(chunk, bytes.length - pos));
+                    open = parser.feed(buffer);
+                    assertTrue(!buffer.hasRemaining());
+                }
+                assertTrue(!open);
+                parser.endOfInput();
+                assertEquals(expected, write(builder.getGpx()));
+            }
+        }
+
+        // a document without its gpx end tag has been reported up to the end of its last element
+        byte[] bytes = toByteArray(getAssets().open("garminBaseCampExport-noclosingtag.gpx"));
+        AtomicInteger points = new AtomicInteger();
+        GpxPushParser parser = new GpxPushParser(new GpxHandler() {
+            @Override
+            public void onTrackPoint(TrackPoint trackPoint) {
+                points.incrementAndGet();
+            }
+        });
+        assertTrue(parser.feed(ByteBuffer.wrap(bytes)));
+        assertEquals(new GPXParser().parse(getAssets().open("garminBaseCampExport.gpx"))
+                .getTracks().get(0).getTrackSegments().get(0).getTrackPoints().size(), points.get());
+        try {
+            parser.endOfInput();
+            fail();
+        } catch (XmlPullParserException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testParseMetrics() throws IOException, XmlPullParserException {
+        List<ParseReport> reports = new ArrayList<>();
+        Map<String, Long> registry = new HashMap<>();
+        RegistryParseMetrics registryMetrics = new RegistryParseMetrics(new RegistryParseMetrics.Registry() {
+            @Override
+            public void count(String name, long amount, String... tags) {
+                registry.merge(name + Arrays.toString(tags), amount, Long::sum);
+            }
+
+            @Override
+            public void record(String name, long nanos, String... tags) {
+                registry.merge(name + Arrays.toString(tags), 1L, Long::sum);
+            }
+        });
+        ParseOptions options = new ParseOptions.Builder()
+                .setSkipRoutes(true)
+                .setParseMetrics(report -> {
+                    reports.add(report);
+                    registryMetrics.onParse(report);
+                })
+                .build();
+        Gpx gpx = new GPXParser(options).parse(getAssets().open("garminBaseCampExport.gpx"));
+        Gpx full = new GPXParser().parse(getAssets().open("garminBaseCampExport.gpx"));
+
+        assertEquals(1, reports.size());
+        ParseReport report = reports.get(0);
+        assertNull(report.getFailure());
+        assertEquals(toByteArray(getAssets().open("garminBaseCampExport.gpx")).length, report.getBytes());
+        int trackPoints = full.getTracks().get(0).getTrackSegments().get(0).getTrackPoints().size();
+        assertEquals(trackPoints, report.getElementCount("trkpt"));
+        assertEquals(full.getRoutes().size(), report.getElementCount("rte"));
+        assertEquals(full.getWayPoints().size() + trackPoints + report.getElementCount("rtept"), report.getPointCount());
+        assertTrue(report.getSkippedElementCount() >= full.getRoutes().size());
+        assertTrue(report.getPhaseCount(ParseReport.Phase.TIME) > 0);
+        assertTrue(report.getPhaseCount(ParseReport.Phase.EXTENSIONS) > 0);
+        assertTrue(report.getPhaseNanos(ParseReport.Phase.SKIP) > 0);
+        assertTrue(report.getPhaseNanos(ParseReport.Phase.SKIP) < report.getNanos());
+        assertTrue(report.getPointsPerSecond() > 0);
+        assertTrue(gpx.getRoutes().isEmpty());
+
+        assertEquals(report.getBytes(), (long) registry.get("gpx.parse.bytes[]"));
+        assertEquals(1, (long) registry.get("gpx.parse[outcome, success]"));
+        assertEquals(1, (long) registry.get("gpx.parse.phase[phase, time]"));
+
+        // failed parses are reported too
+        try {
+            new GPXParser(options).parse(getAssets().open("garminBaseCampExport-noclosingtag.gpx"));
+            fail();
+        } catch (XmlPullParserException e) {
+            assertTrue(reports.get(1).getFailure() == e);
+        }
+        assertEquals(1, (long) registry.get("gpx.parse[outcome, failure]"));
+    }
+
+    @Test
+    @SdkSuppress(minSdkVersion = 30)
+    public void testPublisher() throws IOException, XmlPullParserException {
+        List<TrackPoint> expected = new GPXParser().parse(getAssets().open("garminBaseCampExport.gpx"))
+                .getTracks().get(0).getTrackSegments().get(0).getTrackPoints();
+        AtomicBoolean closed = new AtomicBoolean();
+        InputStream in = new FilterInputStream(getAssets().open("garminBaseCampExport.gpx")) {
+            @Override
+            public void close() throws IOException {
+                closed.set(true);
+                super.close();
+            }
+        };
+        // delivered on the calling thread, so that demand can be checked between requests
+        GpxPublisher publisher = new GpxPublisher(new GPXParser(), in, Runnable::run);
+        List<TrackPoint> points = new ArrayList<>();
+        List<Throwable> errors = new ArrayList<>();
+        AtomicBoolean complete = new AtomicBoolean();
+        Flow.Subscription[] subscription = new Flow.Subscription[1];
+        publisher.subscribe(new Flow.Subscriber<TrackPoint>() {
+            @Override
+            public void onSubscribe(Flow.Subscription s) {
+                subscription[0] = s;
+            }
+
+            @Override
+            public void onNext(TrackPoint item) {
+                points.add(item);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                errors.add(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                complete.set(true);
+            }
+        });
+        assertTrue(points.isEmpty());
+        subscription[0].request(2);
+        assertEquals(2, points.size());
+        subscription[0].request(3);
+        assertEquals(5, points.size());
+        assertEquals(expected.get(4).getTime(), points.get(4).getTime());
+        assertTrue(!closed.get());
+        subscription[0].request(Long.MAX_VALUE);
+        subscription[0].request(Long.MAX_VALUE);
+        assertEquals(expected.size(), points.size());
+        assertTrue(complete.get());
+        assertTrue(closed.get());
+        assertTrue(errors.isEmpty());
+
+        // a single subscriber per document
+        publisher.subscribe(new Flow.Subscriber<TrackPoint>() {
+            @Override
+            public void onSubscribe(Flow.Subscription s) {
+            }
+
+            @Override
+            public void onNext(TrackPoint item) {
+                fail();
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                errors.add(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                fail();
+            }
+        });
+        assertTrue(errors.get(0) instanceof IllegalStateException);
+
+        // cancelling closes the stream, read errors and early ends of document are signalled
+        String[] assets = {"garminBaseCampExport-noclosingtag.gpx", "garminBaseCampExport-noclosingtag.gpx",
+                "garminBaseCampExport-truncated.gpx"};
+        for (int i = 0; i < assets.length; i++) {
+            boolean cancel = i == 0;
+            closed.set(false);
+            errors.clear();
+            points.clear();
+            InputStream truncated = new FilterInputStream(getAssets().open(assets[i])) {
+                @Override
+                public void close() throws IOException {
+                    closed.set(true);
+                    super.close();
+                }
+            };
+            new GpxPublisher(new GPXParser(), truncated, Runnable::run).subscribe(new Flow.Subscriber<TrackPoint>() {
+                private Flow.Subscription mSubscription;
+
+                @Override
+                public void onSubscribe(Flow.Subscription s) {
+                    mSubscription = s;
+                    s.request(1);
+                }
+
+                @Override
+                public void onNext(TrackPoint item) {
+                    points.add(item);
+                    if (cancel && points.size() == 3) {
+                        mSubscription.cancel();
+                    } else {
+                        mSubscription.request(1);
+                    }
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                    errors.add(throwable);
+                }
+
+                @Override
+                public void onComplete() {
+                    fail();
+                }
+            });
+            assertTrue(closed.get());
+            if (cancel) {
+                assertEquals(3, points.size());
+                assertTrue(errors.isEmpty());
+            } else {
+                if (assets[i].contains("noclosingtag")) {
+                    assertEquals(expected.size(), points.size());
+                }
+                assertEquals(1, errors.size());
+                assertTrue(errors.get(0) instanceof XmlPullParserException);
+            }
+        }
+    }
+
+    private static byte[] toByteArray(InputStream in) throws IOException {
+        ByteBuffer buffer = ByteGpxParser.readFully(in);
+        return Arrays.copyOf(buffer.array(), buffer.remaining());
+    }
+
+    private static Gpx get(GpxCache<String> cache, String key) {
+        try {
+            return cache.get(key);
+        } catch (IOException | XmlPullParserException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private static byte[] toSnapshot(GpxBinaryCodec codec, Gpx gpx) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        codec.write(gpx, out);
+        return out.toByteArray();
+    }
+
+    private static String write(Gpx gpx) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new GPXParser().write(gpx, out);
+        return out.toString("UTF-8");
+    }
+
     public AssetManager getAssets() {
         return InstrumentationRegistry.getInstrumentation().getContext().getAssets();
     }
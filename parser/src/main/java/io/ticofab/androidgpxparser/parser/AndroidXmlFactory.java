@@ -0,0 +1,22 @@
+package io.ticofab.androidgpxparser.parser;
+
+import android.util.Xml;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlSerializer;
+
+/**
+ * The parsers and serializers of the Android framework, see {@link Xml}.
+ */
+public class AndroidXmlFactory implements XmlFactory {
+
+    @Override
+    public XmlPullParser newPullParser() {
+        return Xml.newPullParser();
+    }
+
+    @Override
+    public XmlSerializer newSerializer() {
+        return Xml.newSerializer();
+    }
+}
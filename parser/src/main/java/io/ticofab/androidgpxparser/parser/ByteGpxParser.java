@@ -0,0 +1,145 @@
+package io.ticofab.androidgpxparser.parser;
+
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import io.ticofab.androidgpxparser.parser.domain.Gpx;
+
+/**
+ * An alternative to {@link GPXParser} that tokenizes the document bytes itself instead of going
+ * through an XmlPullParser. Element names are matched without creating Strings and numbers and times
+ * are decoded straight from the bytes, which makes it considerably faster on large tracks.
+ * <p>
+ * It produces the same {@link Gpx} as {@link GPXParser} and drives the same {@link GpxHandler}
+ * callbacks. The whole document is held in memory, and its encoding must be UTF-8 or another ASCII
+ * compatible charset; UTF-16 documents must go through {@link GPXParser}.
+ */
+public class ByteGpxParser {
+
+    static private final int BUFFER_SIZE = 64 * 1024;
+
+    private final ParseOptions mOptions;
+
+    public ByteGpxParser() {
+        this(ParseOptions.DEFAULT);
+    }
+
+    public ByteGpxParser(ParseOptions options) {
+        mOptions = options;
+    }
+
+    /**
+     * Reads the whole stream, closing it, and parses it.
+     */
+    public Gpx parse(InputStream in) throws XmlPullParserException, IOException {
+        return parse(readFully(in));
+    }
+
+    /**
+     * Parses the document between the position and the limit of the buffer. The buffer itself is not
+     * modified.
+     */
+    public Gpx parse(ByteBuffer buffer) throws XmlPullParserException {
+        GpxTreeBuilder builder = new GpxTreeBuilder(mOptions);
+        parse(buffer, builder);
+        return builder.getGpx();
+    }
+
+    /**
+     * Memory maps the file and parses it in place: the bytes are never copied into the heap, and
+     * repeated parses of the same file are served from the OS page cache.
+     */
+    public Gpx parse(File file) throws XmlPullParserException, IOException {
+        return parse(map(file));
+    }
+
+    /**
+     * Memory maps the whole file behind the channel and parses it in place. The channel is not closed.
+     */
+    public Gpx parse(FileChannel channel) throws XmlPullParserException, IOException {
+        return parse(map(channel));
+    }
+
+    /**
+     * Parses the document like {@link #parse(ByteBuffer)}, but reads the track segments in parallel: the
+     * document is scanned once for {@code <trkseg>} boundaries and every segment is parsed as a task of
+     * its own on the pool, with the namespace declarations in scope. Tracks and segments keep their
+     * document order. Only pays off for documents made of several large segments.
+     */
+    public Gpx parseParallel(ByteBuffer buffer, ForkJoinPool pool) throws XmlPullParserException {
+        ParallelGpxBuilder builder = new ParallelGpxBuilder(mOptions, pool);
+        try {
+            new GpxByteReader(buffer, mOptions, builder).readDocument(builder);
+        } catch (XmlPullParserException | RuntimeException e) {
+            builder.cancel();
+            throw e;
+        }
+        return builder.joinGpx();
+    }
+
+    /**
+     * Memory maps the file and parses it like {@link #parseParallel(ByteBuffer, ForkJoinPool)}.
+     */
+    public Gpx parseParallel(File file, ForkJoinPool pool) throws XmlPullParserException, IOException {
+        return parseParallel(map(file), pool);
+    }
+
+    public void parse(File file, GpxHandler handler) throws XmlPullParserException, IOException {
+        parse(map(file), handler);
+    }
+
+    public void parse(FileChannel channel, GpxHandler handler) throws XmlPullParserException, IOException {
+        parse(map(channel), handler);
+    }
+
+    public void parse(InputStream in, GpxHandler handler) throws XmlPullParserException, IOException {
+        parse(readFully(in), handler);
+    }
+
+    public void parse(ByteBuffer buffer, GpxHandler handler) throws XmlPullParserException {
+        new GpxByteReader(buffer, mOptions).readDocument(handler);
+    }
+
+    static ByteBuffer map(File file) throws IOException {
+        FileInputStream in = new FileInputStream(file);
+        try {
+            // the mapping stays valid once the channel is closed
+            return map(in.getChannel());
+        } finally {
+            in.close();
+        }
+    }
+
+    static ByteBuffer map(FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("File too large to be mapped: " + size + " bytes");
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+    }
+
+    static ByteBuffer readFully(InputStream in) throws IOException {
+        try {
+            byte[] bytes = new byte[Math.max(in.available() + 1, BUFFER_SIZE)];
+            int size = 0;
+            int read;
+            while ((read = in.read(bytes, size, bytes.length - size)) != -1) {
+                size += read;
+                if (size == bytes.length) {
+                    bytes = Arrays.copyOf(bytes, size * 2);
+                }
+            }
+            return ByteBuffer.wrap(bytes, 0, size);
+        } finally {
+            in.close();
+        }
+    }
+}
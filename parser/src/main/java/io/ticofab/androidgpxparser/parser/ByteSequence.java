@@ -0,0 +1,66 @@
+package io.ticofab.androidgpxparser.parser;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * A reusable {@link CharSequence} view over a range of encoded bytes, letting the number and time
+ * fast paths read the bytes in place. {@link #charAt(int)} is only meaningful for ASCII content;
+ * {@link #toString()} decodes the range properly.
+ */
+final class ByteSequence implements CharSequence {
+
+    private ByteBuffer mBuffer;
+    // the backing array of heap buffers, null otherwise, see GpxByteReader
+    private byte[] mArray;
+    private int mArrayOffset;
+    private int mStart;
+    private int mEnd;
+    private Charset mCharset;
+
+    ByteSequence set(ByteBuffer buffer, int start, int end, Charset charset) {
+        if (buffer != mBuffer) {
+            mBuffer = buffer;
+            mArray = buffer.hasArray() ? buffer.array() : null;
+            mArrayOffset = buffer.hasArray() ? buffer.arrayOffset() : 0;
+        }
+        mStart = start;
+        mEnd = end;
+        mCharset = charset;
+        return this;
+    }
+
+    @Override
+    public int length() {
+        return mEnd - mStart;
+    }
+
+    @Override
+    public char charAt(int index) {
+        byte b = mArray != null ? mArray[mArrayOffset + mStart + index] : mBuffer.get(mStart + index);
+        return (char) (b & 0xff);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return toString().subSequence(start, end);
+    }
+
+    @Override
+    public String toString() {
+        return decode(mBuffer, mStart, mEnd, mCharset);
+    }
+
+    static String decode(ByteBuffer buffer, int start, int end, Charset charset) {
+        if (buffer.hasArray()) {
+            return new String(buffer.array(), buffer.arrayOffset() + start, end - start, charset);
+        }
+        // direct or mapped buffer: one bulk copy
+        ByteBuffer range = buffer.duplicate();
+        range.limit(end);
+        range.position(start);
+        byte[] bytes = new byte[end - start];
+        range.get(bytes);
+        return new String(bytes, charset);
+    }
+}
@@ -0,0 +1,278 @@
+package io.ticofab.androidgpxparser.parser;
+
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+import io.ticofab.androidgpxparser.parser.domain.Gpx;
+
+/**
+ * Parses documents through an on-disk cache: the SHA-256 hash of the content is looked up in a cache
+ * directory, and a {@link GpxBinaryCodec} snapshot of the parsed {@link Gpx} is read instead of the XML
+ * when found. Otherwise the document is parsed and its snapshot stored.
+ * <p>
+ * The total size of the snapshots is kept under {@link Builder#setMaxBytes(long)} by deleting the least
+ * recently used ones. Snapshots written with another {@link GpxBinaryCodec#FORMAT_VERSION} are ignored
+ * and deleted, and so are unreadable ones. The directory may be shared by several parsers, also with
+ * different parse options, but should hold nothing else.
+ * <p>
+ * {@link ExtensionDecoder}s are not supported, as decoded extensions are not part of snapshots.
+ */
+public class CachingGpxParser {
+
+    static private final String SNAPSHOT_SUFFIX = ".gpxb";
+    static private final String VERSION_SUFFIX = ".v" + GpxBinaryCodec.FORMAT_VERSION + SNAPSHOT_SUFFIX;
+    static private final String TEMP_PREFIX = "snapshot";
+    static private final String TEMP_SUFFIX = ".tmp";
+    // temporary files older than this were left by a process that died while writing them
+    static private final long STALE_TEMP_MILLIS = 60 * 1000;
+    static private final int BUFFER_SIZE = 64 * 1024;
+
+    private final GPXParser mParser;
+    private final GpxBinaryCodec mCodec = new GpxBinaryCodec();
+    private final File mDirectory;
+    private final long mMaxBytes;
+    private final byte[] mOptionsKey;
+
+    private CachingGpxParser(Builder builder) {
+        if (builder.mDirectory == null) {
+            throw new IllegalArgumentException("A cache directory is required");
+        }
+        if (builder.mOptions.hasExtensionDecoders()) {
+            throw new IllegalArgumentException("Decoded extensions cannot be cached");
+        }
+        mParser = new GPXParser(builder.mXmlFactory != null ? builder.mXmlFactory : new AndroidXmlFactory(),
+                builder.mOptions);
+        mDirectory = builder.mDirectory;
+        mMaxBytes = builder.mMaxBytes;
+        mOptionsKey = builder.mOptions.getCacheKey().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads the whole stream, closing it, and returns the cached snapshot of its content or parses it.
+     */
+    public Gpx parse(InputStream in) throws XmlPullParserException, IOException {
+        ByteBuffer content = ByteGpxParser.readFully(in);
+        MessageDigest digest = newDigest();
+        digest.update(content.array(), content.arrayOffset() + content.position(), content.remaining());
+        File snapshot = snapshotFile(digest);
+
+        Gpx gpx = readSnapshot(snapshot);
+        if (gpx == null) {
+            gpx = mParser.parse(new ByteArrayInputStream(content.array(), content.arrayOffset() + content.position(),
+                    content.remaining()));
+            writeSnapshot(gpx, snapshot);
+        }
+        return gpx;
+    }
+
+    /**
+     * Like {@link #parse(InputStream)}, the file being hashed without holding it in memory.
+     */
+    public Gpx parse(File file) throws XmlPullParserException, IOException {
+        MessageDigest digest = newDigest();
+        try (InputStream in = new FileInputStream(file)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        File snapshot = snapshotFile(digest);
+
+        Gpx gpx = readSnapshot(snapshot);
+        if (gpx == null) {
+            // the file may have changed since it was hashed, e.g. a track still being recorded: the
+            // snapshot is stored under the hash of the content actually parsed
+            MessageDigest parsedDigest = newDigest();
+            gpx = parseHashed(file, parsedDigest);
+            writeSnapshot(gpx, snapshotFile(parsedDigest));
+        }
+        return gpx;
+    }
+
+    /**
+     * Deletes all the snapshots.
+     */
+    public synchronized void clear() {
+        File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.getName().endsWith(SNAPSHOT_SUFFIX)) {
+                file.delete();
+            }
+        }
+    }
+
+    // Parses the file, hashing its whole content on the way, also what follows the gpx end tag.
+    private Gpx parseHashed(File file, MessageDigest digest) throws XmlPullParserException, IOException {
+        try (InputStream in = new DigestInputStream(new FileInputStream(file), digest)) {
+            Gpx gpx = mParser.parse(new FilterInputStream(in) {
+                @Override
+                public void close() {
+                    // closed once the rest is hashed
+                }
+            });
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (in.read(buffer) != -1) {
+                // hashed by the stream
+            }
+            return gpx;
+        }
+    }
+
+    private MessageDigest newDigest() {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            // the same content parsed with other options gives another Gpx
+            digest.update(mOptionsKey);
+            return digest;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private File snapshotFile(MessageDigest digest) {
+        byte[] hash = digest.digest();
+        StringBuilder name = new StringBuilder(2 * hash.length + VERSION_SUFFIX.length());
+        for (byte b : hash) {
+            name.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return new File(mDirectory, name.append(VERSION_SUFFIX).toString());
+    }
+
+    // The cached Gpx, null on a miss.
+    private Gpx readSnapshot(File snapshot) {
+        if (!snapshot.isFile()) {
+            return null;
+        }
+        try {
+            Gpx gpx = mCodec.read(ByteGpxParser.map(snapshot));
+            // the modification time orders the snapshots for eviction
+            snapshot.setLastModified(System.currentTimeMillis());
+            return gpx;
+        } catch (IOException | RuntimeException e) {
+            snapshot.delete();
+            return null;
+        }
+    }
+
+    // Failing to cache does not fail the parse: the snapshot is simply missing next time.
+    private void writeSnapshot(Gpx gpx, File snapshot) {
+        File temp = null;
+        try {
+            if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+                return;
+            }
+            // written aside and renamed, so that readers never see a partial snapshot
+            temp = File.createTempFile(TEMP_PREFIX, TEMP_SUFFIX, mDirectory);
+            mCodec.write(gpx, new FileOutputStream(temp));
+            if (!temp.renameTo(snapshot)) {
+                temp.delete();
+            }
+        } catch (IOException e) {
+            if (temp != null) {
+                temp.delete();
+            }
+            return;
+        }
+        evict();
+    }
+
+    // Deletes the snapshots of other format versions and the stale temporary files, then the least
+    // recently used snapshots over the limit.
+    private synchronized void evict() {
+        File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+        long staleBefore = System.currentTimeMillis() - STALE_TEMP_MILLIS;
+        int count = 0;
+        long totalBytes = 0;
+        for (File file : files) {
+            String name = file.getName();
+            if (name.endsWith(VERSION_SUFFIX)) {
+                files[count++] = file;
+                totalBytes += file.length();
+            } else if (name.endsWith(SNAPSHOT_SUFFIX)) {
+                file.delete();
+            } else if (name.startsWith(TEMP_PREFIX) && name.endsWith(TEMP_SUFFIX)
+                    && file.lastModified() < staleBefore) {
+                file.delete();
+            }
+        }
+        if (totalBytes <= mMaxBytes) {
+            return;
+        }
+        File[] snapshots = Arrays.copyOf(files, count);
+        long[] lastUsed = new long[count];
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            lastUsed[i] = snapshots[i].lastModified();
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(lastUsed[a], lastUsed[b]));
+        for (int i = 0; i < count && totalBytes > mMaxBytes; i++) {
+            File snapshot = snapshots[order[i]];
+            long length = snapshot.length();
+            if (snapshot.delete()) {
+                totalBytes -= length;
+            }
+        }
+    }
+
+    public static class Builder {
+        private File mDirectory;
+        private long mMaxBytes = 64L * 1024 * 1024;
+        private XmlFactory mXmlFactory;
+        private ParseOptions mOptions = ParseOptions.DEFAULT;
+
+        /**
+         * The directory holding the snapshots, e.g. {@code new File(context.getCacheDir(), "gpx")}.
+         * It is created when needed.
+         */
+        public Builder setCacheDirectory(File directory) {
+            mDirectory = directory;
+            return this;
+        }
+
+        /**
+         * The maximum total size of the snapshots, 64 MB by default.
+         */
+        public Builder setMaxBytes(long maxBytes) {
+            mMaxBytes = maxBytes;
+            return this;
+        }
+
+        /**
+         * See {@link GPXParser#GPXParser(XmlFactory)}, by default the Android parser.
+         */
+        public Builder setXmlFactory(XmlFactory xmlFactory) {
+            mXmlFactory = xmlFactory;
+            return this;
+        }
+
+        public Builder setParseOptions(ParseOptions options) {
+            mOptions = options;
+            return this;
+        }
+
+        public CachingGpxParser build() {
+            return new CachingGpxParser(this);
+        }
+    }
+}
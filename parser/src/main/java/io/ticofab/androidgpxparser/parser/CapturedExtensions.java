@@ -0,0 +1,60 @@
+package io.ticofab.androidgpxparser.parser;
+
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.nio.charset.Charset;
+import java.util.List;
+
+import io.ticofab.androidgpxparser.parser.domain.Extension;
+import io.ticofab.androidgpxparser.parser.domain.RawExtensions;
+
+/**
+ * The extensions element of a point copied by {@link GpxByteReader}, start and end tags included, in
+ * the encoding of the document.
+ */
+final class CapturedExtensions implements RawExtensions {
+
+    private final byte[] mBytes;
+    private final int mContentStart;
+    private final int mContentEnd;
+    private final Charset mCharset;
+    // prefix / uri pairs, shared by the captures made in the same scope
+    private final String[] mNamespaces;
+
+    CapturedExtensions(byte[] bytes, int contentStart, int contentEnd, Charset charset, String[] namespaces) {
+        mBytes = bytes;
+        mContentStart = contentStart;
+        mContentEnd = contentEnd;
+        mCharset = charset;
+        mNamespaces = namespaces;
+    }
+
+    @Override
+    public String getContent() {
+        return new String(mBytes, mContentStart, mContentEnd - mContentStart, mCharset);
+    }
+
+    @Override
+    public int getNamespaceCount() {
+        return mNamespaces.length / 2;
+    }
+
+    @Override
+    public String getNamespacePrefix(int pos) {
+        return mNamespaces[2 * pos];
+    }
+
+    @Override
+    public String getNamespaceUri(int pos) {
+        return mNamespaces[2 * pos + 1];
+    }
+
+    @Override
+    public List<Extension> decode() {
+        try {
+            return GpxByteReader.readCapturedExtensions(mBytes, mCharset, mNamespaces);
+        } catch (XmlPullParserException e) {
+            throw new IllegalStateException("Malformed extensions", e);
+        }
+    }
+}
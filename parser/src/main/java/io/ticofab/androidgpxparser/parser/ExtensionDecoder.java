@@ -0,0 +1,24 @@
+package io.ticofab.androidgpxparser.parser;
+
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+
+/**
+ * Decodes the extensions of a namespace into typed objects, instead of generic
+ * {@link io.ticofab.androidgpxparser.parser.domain.Extension} trees. Register decoders with
+ * {@link ParseOptions.Builder#addExtensionDecoder(String, ExtensionDecoder)}; the decoded objects end
+ * up in {@link io.ticofab.androidgpxparser.parser.domain.Point#getDecodedExtensions()}.
+ * <p>
+ * Decoders are shared by all the parses made with the options and must be thread-safe.
+ */
+public interface ExtensionDecoder {
+
+    /**
+     * Called on the start tag of an element of the namespace found directly in the extensions of a
+     * point. The element must be consumed up to its end tag, e.g. with {@link ExtensionReader#skip()}.
+     *
+     * @return the decoded object, or null to drop the element
+     */
+    Object decode(ExtensionReader reader) throws XmlPullParserException, IOException;
+}
@@ -0,0 +1,60 @@
+package io.ticofab.androidgpxparser.parser;
+
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+
+/**
+ * A cursor over an extension element, handed to an {@link ExtensionDecoder}. It starts on the start tag
+ * of the element to decode, the current element; {@link #nextChild()} then moves into its children,
+ * each of which must be read, skipped or iterated to its end in turn.
+ */
+public interface ExtensionReader {
+
+    /**
+     * @return the local name of the current element
+     */
+    String getName();
+
+    /**
+     * @return the namespace of the current element
+     */
+    String getNamespace();
+
+    /**
+     * @return the value of the attribute of the current element with this local name, null if missing
+     */
+    String getAttributeValue(String name) throws XmlPullParserException;
+
+    /**
+     * Moves to the next child of the current element.
+     *
+     * @return true when positioned on the start tag of a child, which becomes the current element,
+     * false once the end tag of the current element has been consumed
+     */
+    boolean nextChild() throws XmlPullParserException, IOException;
+
+    /**
+     * Reads the text content of the current element and consumes its end tag.
+     */
+    String readText() throws XmlPullParserException, IOException;
+
+    /**
+     * Like {@link #readText()}, decoded as a double.
+     *
+     * @throws NumberFormatException if the text is not a number
+     */
+    double readDouble() throws XmlPullParserException, IOException;
+
+    /**
+     * Like {@link #readText()}, decoded as an int.
+     *
+     * @throws NumberFormatException if the text is not an integer
+     */
+    int readInt() throws XmlPullParserException, IOException;
+
+    /**
+     * Skips the current element, children included, and consumes its end tag.
+     */
+    void skip() throws XmlPullParserException, IOException;
+}
@@ -1,23 +1,17 @@
 package io.ticofab.androidgpxparser.parser;
 
-import android.util.Xml;
-
 import org.joda.time.DateTime;
-import org.joda.time.format.DateTimeFormatter;
-import org.joda.time.format.DateTimeFormatterBuilder;
-import org.joda.time.format.ISODateTimeFormat;
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
-import org.xmlpull.v1.XmlSerializer;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
-import java.util.LinkedHashMap;
+import java.util.Collections;
 import java.util.List;
-import java.util.stream.Collectors;
 
+import io.ticofab.androidgpxparser.parser.ParseOptions.PointField;
 import io.ticofab.androidgpxparser.parser.domain.Author;
 import io.ticofab.androidgpxparser.parser.domain.Bounds;
 import io.ticofab.androidgpxparser.parser.domain.Copyright;
@@ -37,87 +31,194 @@ import io.ticofab.androidgpxparser.parser.domain.XMLAttribute;
 
 public class GPXParser {
 
-    static private final String TAG_GPX = "gpx";
-    static private final String TAG_VERSION = "version";
-    static private final String TAG_CREATOR = "creator";
-    static private final String TAG_METADATA = "metadata";
-    static private final String TAG_TRACK = "trk";
-    static private final String TAG_SEGMENT = "trkseg";
-    static private final String TAG_TRACK_POINT = "trkpt";
-    static private final String TAG_LAT = "lat";
-    static private final String TAG_LON = "lon";
-    static private final String TAG_ELEVATION = "ele";
-    static private final String TAG_TIME = "time";
-    static private final String TAG_SYM = "sym";
-    static private final String TAG_WAY_POINT = "wpt";
-    static private final String TAG_ROUTE = "rte";
-    static private final String TAG_ROUTE_POINT = "rtept";
-    static private final String TAG_NAME = "name";
-    static private final String TAG_DESC = "desc";
-    static private final String TAG_CMT = "cmt";
-    static private final String TAG_SRC = "src";
-    static private final String TAG_LINK = "link";
-    static private final String TAG_NUMBER = "number";
-    static private final String TAG_TYPE = "type";
-    static private final String TAG_TEXT = "text";
-    static private final String TAG_AUTHOR = "author";
-    static private final String TAG_COPYRIGHT = "copyright";
-    static private final String TAG_KEYWORDS = "keywords";
-    static private final String TAG_BOUNDS = "bounds";
-    static private final String TAG_MIN_LAT = "minlat";
-    static private final String TAG_MIN_LON = "minlon";
-    static private final String TAG_MAX_LAT = "maxlat";
-    static private final String TAG_MAX_LON = "maxlon";
-    static private final String TAG_HREF = "href";
-    static private final String TAG_YEAR = "year";
-    static private final String TAG_LICENSE = "license";
-    static private final String TAG_EMAIL = "email";
-    static private final String TAG_ID = "id";
-    static private final String TAG_DOMAIN = "domain";
+    static final String TAG_GPX = "gpx";
+    static final String TAG_VERSION = "version";
+    static final String TAG_CREATOR = "creator";
+    static final String TAG_METADATA = "metadata";
+    static final String TAG_TRACK = "trk";
+    static final String TAG_SEGMENT = "trkseg";
+    static final String TAG_TRACK_POINT = "trkpt";
+    static final String TAG_LAT = "lat";
+    static final String TAG_LON = "lon";
+    static final String TAG_ELEVATION = "ele";
+    static final String TAG_TIME = "time";
+    static final String TAG_SYM = "sym";
+    static final String TAG_WAY_POINT = "wpt";
+    static final String TAG_ROUTE = "rte";
+    static final String TAG_ROUTE_POINT = "rtept";
+    static final String TAG_NAME = "name";
+    static final String TAG_DESC = "desc";
+    static final String TAG_CMT = "cmt";
+    static final String TAG_SRC = "src";
+    static final String TAG_LINK = "link";
+    static final String TAG_NUMBER = "number";
+    static final String TAG_TYPE = "type";
+    static final String TAG_TEXT = "text";
+    static final String TAG_AUTHOR = "author";
+    static final String TAG_COPYRIGHT = "copyright";
+    static final String TAG_KEYWORDS = "keywords";
+    static final String TAG_BOUNDS = "bounds";
+    static final String TAG_MIN_LAT = "minlat";
+    static final String TAG_MIN_LON = "minlon";
+    static final String TAG_MAX_LAT = "maxlat";
+    static final String TAG_MAX_LON = "maxlon";
+    static final String TAG_HREF = "href";
+    static final String TAG_YEAR = "year";
+    static final String TAG_LICENSE = "license";
+    static final String TAG_EMAIL = "email";
+    static final String TAG_ID = "id";
+    static final String TAG_DOMAIN = "domain";
 
     // extensions-related tags
-    static private final String TAG_EXTENSIONS = "extensions";
-    static private final String TAG_SPEED = "speed";
+    static final String TAG_EXTENSIONS = "extensions";
+    static final String TAG_SPEED = "speed";
 
     static private final String namespace = null;
 
+    private final XmlFactory mXmlFactory;
+    private final ParseOptions mOptions;
+    // parses when ParseMetrics are set, null otherwise
+    private final MeteredGpxParser mMeteredParser;
+
+    public GPXParser() {
+        this(ParseOptions.DEFAULT);
+    }
+
+    public GPXParser(ParseOptions options) {
+        this(new AndroidXmlFactory(), options);
+    }
+
+    /**
+     * @param xmlFactory creates the XML parsers and serializers, e.g. {@link XmlPullFactory} outside of Android
+     */
+    public GPXParser(XmlFactory xmlFactory) {
+        this(xmlFactory, ParseOptions.DEFAULT);
+    }
+
+    public GPXParser(XmlFactory xmlFactory, ParseOptions options) {
+        this(xmlFactory, options, options.getParseMetrics() != null);
+    }
+
+    GPXParser(XmlFactory xmlFactory, ParseOptions options, boolean metered) {
+        mXmlFactory = xmlFactory;
+        mOptions = options;
+        mMeteredParser = metered ? new MeteredGpxParser(xmlFactory, options) : null;
+    }
+
     public Gpx parse(InputStream in) throws XmlPullParserException, IOException {
+        GpxTreeBuilder treeBuilder = new GpxTreeBuilder(mOptions);
+        parse(in, treeBuilder);
+        return treeBuilder.getGpx();
+    }
+
+    /**
+     * Parses the stream without building a {@link Gpx} tree: the content is handed to the handler
+     * as it is read, one point at a time, so memory stays constant whatever the file size.
+     *
+     * @param in      the GPX document, closed when done
+     * @param handler receives the parsed elements
+     */
+    public void parse(InputStream in, GpxHandler handler) throws XmlPullParserException, IOException {
+        parse(newPullParser(), in, handler);
+    }
+
+    /**
+     * Reads the root attributes and the metadata only, stopping at the end of the metadata or at the
+     * first way point, route or track: the rest of the document is never read, which makes indexing
+     * large collections of files cheap.
+     *
+     * @param in the GPX document, closed when done
+     * @return the version, creator, attributes and metadata, without any way point, route or track
+     */
+    public Gpx parseMetadata(InputStream in) throws XmlPullParserException, IOException {
         try {
-            XmlPullParser parser = Xml.newPullParser();
-            parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, true);
-            parser.setInput(in, null);
-            parser.nextTag();
-            return readGpx(parser);
+            XmlPullParser parser = newPullParser(in);
+            parser.require(XmlPullParser.START_TAG, namespace, TAG_GPX);
+
+            Gpx.Builder gpxBuilder = new Gpx.Builder()
+                    .setVersion(parser.getAttributeValue(namespace, TAG_VERSION))
+                    .setCreator(parser.getAttributeValue(namespace, TAG_CREATOR))
+                    .setAttributes(readAttributes(parser));
+            while (loopMustContinue(parser.next())) {
+                if (parser.getEventType() != XmlPullParser.START_TAG) {
+                    continue;
+                }
+                String name = parser.getName();
+                if (name.equals(TAG_METADATA)) {
+                    gpxBuilder.setMetadata(readMetadata(parser));
+                    break;
+                } else if (name.equals(TAG_WAY_POINT) || name.equals(TAG_ROUTE) || name.equals(TAG_TRACK)) {
+                    break;
+                }
+                skip(parser);
+            }
+            return gpxBuilder.build();
         } finally {
             in.close();
         }
     }
 
-    public void write(Gpx gpx, OutputStream out) throws IOException, IllegalArgumentException, IllegalStateException {
+    /**
+     * Parses the stream with a parser from {@link #newPullParser()}, which can be reused for another
+     * document once done.
+     */
+    void parse(XmlPullParser parser, InputStream in, GpxHandler handler) throws XmlPullParserException, IOException {
+        if (mMeteredParser != null) {
+            mMeteredParser.parseMetered(parser, in, handler);
+            return;
+        }
         try {
-            XmlSerializer serializer = Xml.newSerializer();
-            serializer.setOutput(out, "UTF-8");
-            serializer.startDocument("UTF-8", false);
-            writeGpx(gpx, serializer);
-            serializer.endDocument();
+            startDocument(parser, in);
+            readGpx(parser, handler);
         } finally {
-            out.close();
+            in.close();
         }
+    }
 
+    /**
+     * @return a namespace aware parser, with no input yet
+     */
+    XmlPullParser newPullParser() throws XmlPullParserException {
+        XmlPullParser parser = mXmlFactory.newPullParser();
+        parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, true);
+        return parser;
     }
 
-    private Gpx readGpx(XmlPullParser parser) throws XmlPullParserException, IOException {
-        List<WayPoint> wayPoints = new ArrayList<>();
-        List<Track> tracks = new ArrayList<>();
-        List<Route> routes = new ArrayList<>();
+    /**
+     * @return a namespace aware parser reading from the stream, positioned on the gpx start tag
+     */
+    XmlPullParser newPullParser(InputStream in) throws XmlPullParserException, IOException {
+        XmlPullParser parser = newPullParser();
+        startDocument(parser, in);
+        return parser;
+    }
 
-        parser.require(XmlPullParser.START_TAG, namespace, TAG_GPX);
+    void startDocument(XmlPullParser parser, InputStream in) throws XmlPullParserException, IOException {
+        parser.setInput(in, null);
+        parser.nextTag();
+    }
 
-        Gpx.Builder builder = new Gpx.Builder();
-        builder.setVersion(parser.getAttributeValue(namespace, TAG_VERSION));
-        builder.setCreator(parser.getAttributeValue(namespace, TAG_CREATOR));
-        builder.setAttributes(readAttributes(parser));
+    /**
+     * Writes the whole document, see {@link GpxWriter} to write it incrementally.
+     *
+     * @param out closed when done
+     */
+    public void write(Gpx gpx, OutputStream out) throws IOException, IllegalArgumentException, IllegalStateException {
+        try {
+            new GpxWriter(mXmlFactory, out).writeGpx(gpx);
+        } finally {
+            out.close();
+        }
+    }
 
+    void readGpx(XmlPullParser parser, GpxHandler handler) throws XmlPullParserException, IOException {
+        parser.require(XmlPullParser.START_TAG, namespace, TAG_GPX);
+
+        handler.onGpxStart(new Gpx.Builder()
+                .setVersion(parser.getAttributeValue(namespace, TAG_VERSION))
+                .setCreator(parser.getAttributeValue(namespace, TAG_CREATOR))
+                .setAttributes(readAttributes(parser))
+                .build());
 
         while (loopMustContinue(parser.next())) {
             if (parser.getEventType() != XmlPullParser.START_TAG) {
@@ -127,16 +228,24 @@ public class GPXParser {
             // Starts by looking for the entry tag
             switch (name) {
                 case TAG_METADATA:
-                    builder.setMetadata(readMetadata(parser));
+                    handler.onMetadata(readMetadata(parser));
                     break;
                 case TAG_WAY_POINT:
-                    wayPoints.add(readWayPoint(parser));
+                    if (mOptions.isSkipWayPoints()) {
+                        skip(parser);
+                    } else {
+                        handler.onWayPoint(readWayPoint(parser));
+                    }
                     break;
                 case TAG_ROUTE:
-                    routes.add(readRoute(parser));
+                    if (mOptions.isSkipRoutes()) {
+                        skip(parser);
+                    } else {
+                        readRoute(parser, handler);
+                    }
                     break;
                 case TAG_TRACK:
-                    tracks.add(readTrack(parser));
+                    readTrack(parser, handler);
                     break;
                 default:
                     skip(parser);
@@ -144,20 +253,16 @@ public class GPXParser {
             }
         }
         parser.require(XmlPullParser.END_TAG, namespace, TAG_GPX);
-        return builder
-                .setWayPoints(wayPoints)
-                .setRoutes(routes)
-                .setTracks(tracks)
-                .build();
+        handler.onGpxEnd();
     }
 
     // Parses the contents of an entry. If it encounters a title, summary, or link tag, hands them off
     // to their respective "read" methods for processing. Otherwise, skips the tag.
-    private Track readTrack(XmlPullParser parser) throws XmlPullParserException, IOException {
+    private void readTrack(XmlPullParser parser, GpxHandler handler) throws XmlPullParserException, IOException {
         Track.Builder trackBuilder = new Track.Builder();
 
-        List<TrackSegment> segments = new ArrayList<>();
         parser.require(XmlPullParser.START_TAG, namespace, TAG_TRACK);
+        handler.onTrackStart();
         while (loopMustContinue(parser.next())) {
             if (parser.getEventType() != XmlPullParser.START_TAG) {
                 continue;
@@ -168,7 +273,7 @@ public class GPXParser {
                     trackBuilder.setTrackName(readName(parser));
                     break;
                 case TAG_SEGMENT:
-                    segments.add(readSegment(parser));
+                    readSegment(parser, handler);
                     break;
                 case TAG_DESC:
                     trackBuilder.setTrackDesc(readDesc(parser));
@@ -194,9 +299,9 @@ public class GPXParser {
             }
         }
         parser.require(XmlPullParser.END_TAG, namespace, TAG_TRACK);
-        return trackBuilder
-                .setTrackSegments(segments)
-                .build();
+        handler.onTrackEnd(trackBuilder
+                .setTrackSegments(Collections.emptyList())
+                .build());
     }
 
     private Link readLink(XmlPullParser parser) throws IOException, XmlPullParserException {
@@ -229,10 +334,10 @@ public class GPXParser {
     private Bounds readBounds(XmlPullParser parser) throws IOException, XmlPullParserException {
         parser.require(XmlPullParser.START_TAG, namespace, TAG_BOUNDS);
         Bounds bounds = new Bounds.Builder()
-                .setMinLat(Double.valueOf(parser.getAttributeValue(namespace, TAG_MIN_LAT)))
-                .setMinLon(Double.valueOf(parser.getAttributeValue(namespace, TAG_MIN_LON)))
-                .setMaxLat(Double.valueOf(parser.getAttributeValue(namespace, TAG_MAX_LAT)))
-                .setMaxLon(Double.valueOf(parser.getAttributeValue(namespace, TAG_MAX_LON)))
+                .setMinLat(GpxNumber.parseDouble(parser.getAttributeValue(namespace, TAG_MIN_LAT)))
+                .setMinLon(GpxNumber.parseDouble(parser.getAttributeValue(namespace, TAG_MIN_LON)))
+                .setMaxLat(GpxNumber.parseDouble(parser.getAttributeValue(namespace, TAG_MAX_LAT)))
+                .setMaxLon(GpxNumber.parseDouble(parser.getAttributeValue(namespace, TAG_MAX_LON)))
                 .build();
 
         parser.nextTag();
@@ -243,10 +348,11 @@ public class GPXParser {
     }
 
     // Processes summary tags in the feed.
-    private TrackSegment readSegment(XmlPullParser parser) throws IOException, XmlPullParserException {
-        List<TrackPoint> points = new ArrayList<>();
+    private void readSegment(XmlPullParser parser, GpxHandler handler) throws IOException, XmlPullParserException {
         List<Extension> extensions = new ArrayList<>();
+        PointValueHandler valueHandler = PointValueHandler.valueHandler(handler, false);
         parser.require(XmlPullParser.START_TAG, namespace, TAG_SEGMENT);
+        handler.onSegmentStart();
         while (loopMustContinue(parser.next())) {
             if (parser.getEventType() != XmlPullParser.START_TAG) {
                 continue;
@@ -254,10 +360,18 @@ public class GPXParser {
             String name = parser.getName();
             switch (name) {
                 case TAG_TRACK_POINT:
-                    points.add(readTrackPoint(parser));
+                    if (valueHandler != null) {
+                        readPointValues(parser, TAG_TRACK_POINT, valueHandler);
+                    } else {
+                        handler.onTrackPoint(readTrackPoint(parser));
+                    }
                     break;
                 case TAG_EXTENSIONS:
-                    extensions.addAll(readExtensions(parser));
+                    if (mOptions.isSkipExtensions()) {
+                        skip(parser);
+                    } else {
+                        extensions.addAll(readExtensions(parser));
+                    }
                     break;
                 default:
                     skip(parser);
@@ -265,16 +379,17 @@ public class GPXParser {
             }
         }
         parser.require(XmlPullParser.END_TAG, namespace, TAG_SEGMENT);
-        return new TrackSegment.Builder()
-                .setTrackPoints(points)
+        handler.onSegmentEnd(new TrackSegment.Builder()
+                .setTrackPoints(Collections.emptyList())
                 .setExtensions(extensions)
-                .build();
+                .build());
     }
 
-    private Route readRoute(XmlPullParser parser) throws IOException, XmlPullParserException {
-        List<RoutePoint> points = new ArrayList<>();
+    private void readRoute(XmlPullParser parser, GpxHandler handler) throws IOException, XmlPullParserException {
         parser.require(XmlPullParser.START_TAG, namespace, TAG_ROUTE);
+        handler.onRouteStart();
         Route.Builder routeBuilder = new Route.Builder();
+        PointValueHandler valueHandler = PointValueHandler.valueHandler(handler, true);
 
         while (loopMustContinue(parser.next())) {
             if (parser.getEventType() != XmlPullParser.START_TAG) {
@@ -283,7 +398,11 @@ public class GPXParser {
             String name = parser.getName();
             switch (name) {
                 case TAG_ROUTE_POINT:
-                    points.add(readRoutePoint(parser));
+                    if (valueHandler != null) {
+                        readPointValues(parser, TAG_ROUTE_POINT, valueHandler);
+                    } else {
+                        handler.onRoutePoint(readRoutePoint(parser));
+                    }
                     break;
                 case TAG_NAME:
                     routeBuilder.setRouteName(readName(parser));
@@ -312,9 +431,9 @@ public class GPXParser {
             }
         }
         parser.require(XmlPullParser.END_TAG, namespace, TAG_ROUTE);
-        return routeBuilder
-                .setRoutePoints(points)
-                .build();
+        handler.onRouteEnd(routeBuilder
+                .setRoutePoints(Collections.emptyList())
+                .build());
     }
 
     /**
@@ -327,8 +446,12 @@ public class GPXParser {
     private Point readPoint(Point.Builder builder, XmlPullParser parser, String tagName) throws XmlPullParserException, IOException {
         parser.require(XmlPullParser.START_TAG, namespace, tagName);
 
-        builder.setLatitude(Double.valueOf(parser.getAttributeValue(namespace, TAG_LAT)));
-        builder.setLongitude(Double.valueOf(parser.getAttributeValue(namespace, TAG_LON)));
+        if (mOptions.includesPointField(PointField.LATITUDE)) {
+            builder.setLatitude(GpxNumber.parseDouble(parser.getAttributeValue(namespace, TAG_LAT)));
+        }
+        if (mOptions.includesPointField(PointField.LONGITUDE)) {
+            builder.setLongitude(GpxNumber.parseDouble(parser.getAttributeValue(namespace, TAG_LON)));
+        }
 
         while (loopMustContinue(parser.next())) {
             if (parser.getEventType() != XmlPullParser.START_TAG) {
@@ -337,28 +460,62 @@ public class GPXParser {
             String name = parser.getName();
             switch (name) {
                 case TAG_NAME:
-                    builder.setName(readName(parser));
+                    if (mOptions.includesPointField(PointField.NAME)) {
+                        builder.setName(readName(parser));
+                    } else {
+                        skip(parser);
+                    }
                     break;
                 case TAG_DESC:
-                    builder.setDesc(readDesc(parser));
+                    if (mOptions.includesPointField(PointField.DESC)) {
+                        builder.setDesc(readDesc(parser));
+                    } else {
+                        skip(parser);
+                    }
                     break;
                 case TAG_ELEVATION:
-                    builder.setElevation(readElevation(parser));
+                    if (mOptions.includesPointField(PointField.ELEVATION)) {
+                        builder.setElevation(readElevation(parser));
+                    } else {
+                        skip(parser);
+                    }
                     break;
                 case TAG_TIME:
-                    builder.setTime(readTime(parser));
+                    if (mOptions.includesPointField(PointField.TIME)) {
+                        builder.setTime(readTime(parser));
+                    } else {
+                        skip(parser);
+                    }
                     break;
                 case TAG_TYPE:
-                    builder.setType(readType(parser));
+                    if (mOptions.includesPointField(PointField.TYPE)) {
+                        builder.setType(readType(parser));
+                    } else {
+                        skip(parser);
+                    }
                     break;
                 case TAG_EXTENSIONS:
-                    builder.setExtensions(readExtensions(parser));
+                    if (mOptions.isSkipExtensions()) {
+                        skip(parser);
+                    } else if (mOptions.hasExtensionDecoders()) {
+                        readPointExtensions(parser, builder);
+                    } else {
+                        builder.setExtensions(readExtensions(parser));
+                    }
                     break;
                 case TAG_SYM:
-                    builder.setSym(readSym(parser));
+                    if (mOptions.includesPointField(PointField.SYM)) {
+                        builder.setSym(readSym(parser));
+                    } else {
+                        skip(parser);
+                    }
                     break;
                 case TAG_CMT:
-                    builder.setCmt(readCmt(parser));
+                    if (mOptions.includesPointField(PointField.CMT)) {
+                        builder.setCmt(readCmt(parser));
+                    } else {
+                        skip(parser);
+                    }
                     break;
                 default:
                     skip(parser);
@@ -487,7 +644,34 @@ public class GPXParser {
         return (WayPoint) readPoint(new WayPoint.Builder(), parser, TAG_WAY_POINT);
     }
 
-    private TrackPoint readTrackPoint(XmlPullParser parser) throws IOException, XmlPullParserException {
+    // Like readPoint, handing the coordinates, elevation and time over as primitives instead of a point.
+    private void readPointValues(XmlPullParser parser, String tagName, PointValueHandler handler)
+            throws IOException, XmlPullParserException {
+        parser.require(XmlPullParser.START_TAG, namespace, tagName);
+        double latitude = mOptions.includesPointField(PointField.LATITUDE)
+                ? GpxNumber.parseDouble(parser.getAttributeValue(namespace, TAG_LAT)) : Double.NaN;
+        double longitude = mOptions.includesPointField(PointField.LONGITUDE)
+                ? GpxNumber.parseDouble(parser.getAttributeValue(namespace, TAG_LON)) : Double.NaN;
+        double elevation = Double.NaN;
+        long time = TrackSegment.NO_TIME;
+        while (loopMustContinue(parser.next())) {
+            if (parser.getEventType() != XmlPullParser.START_TAG) {
+                continue;
+            }
+            String name = parser.getName();
+            if (name.equals(TAG_ELEVATION) && mOptions.includesPointField(PointField.ELEVATION)) {
+                elevation = GpxNumber.parseDouble(readString(parser, TAG_ELEVATION));
+            } else if (name.equals(TAG_TIME) && mOptions.includesPointField(PointField.TIME)) {
+                time = readTimeMillis(parser);
+            } else {
+                skip(parser);
+            }
+        }
+        parser.require(XmlPullParser.END_TAG, namespace, tagName);
+        handler.onPointValues(latitude, longitude, elevation, time);
+    }
+
+    TrackPoint readTrackPoint(XmlPullParser parser) throws IOException, XmlPullParserException {
         return (TrackPoint) readPoint(new TrackPoint.Builder(), parser, TAG_TRACK_POINT);
     }
 
@@ -520,18 +704,22 @@ public class GPXParser {
 
     private Double readElevation(XmlPullParser parser) throws IOException, XmlPullParserException {
         parser.require(XmlPullParser.START_TAG, namespace, TAG_ELEVATION);
-        Double ele = Double.valueOf(readText(parser));
+        Double ele = GpxNumber.parseDouble(readText(parser));
         parser.require(XmlPullParser.END_TAG, namespace, TAG_ELEVATION);
         return ele;
     }
 
-    private DateTime readTime(XmlPullParser parser) throws IOException, XmlPullParserException {
+    DateTime readTime(XmlPullParser parser) throws IOException, XmlPullParserException {
         parser.require(XmlPullParser.START_TAG, namespace, TAG_TIME);
-        DateTime time = ISODateTimeFormat.dateTimeParser().parseDateTime(readText(parser));
+        DateTime time = GpxTime.parseDateTime(readText(parser));
         parser.require(XmlPullParser.END_TAG, namespace, TAG_TIME);
         return time;
     }
 
+    long readTimeMillis(XmlPullParser parser) throws IOException, XmlPullParserException {
+        return GpxTime.parseMillis(readString(parser, TAG_TIME));
+    }
+
     private String readSym(XmlPullParser parser) throws IOException, XmlPullParserException {
         parser.require(XmlPullParser.START_TAG, namespace, TAG_SYM);
         String value = readText(parser);
@@ -559,7 +747,7 @@ public class GPXParser {
         parser.require(XmlPullParser.START_TAG, namespace, TAG_SPEED);
         double speed;
         try {
-            speed = Double.parseDouble(readText(parser));
+            speed = GpxNumber.parseDouble(readText(parser));
         } catch (NumberFormatException e) {
             // there was an issue parsing speed, default to 0.0
             speed = 0.0;
@@ -570,20 +758,22 @@ public class GPXParser {
 
     private Integer readYear(XmlPullParser parser) throws IOException, XmlPullParserException, NumberFormatException {
         parser.require(XmlPullParser.START_TAG, namespace, TAG_YEAR);
-        String yearStr = readText(parser);
+        Integer year = parseYear(readText(parser));
+        parser.require(XmlPullParser.END_TAG, namespace, TAG_YEAR);
+        return year;
+    }
 
+    static Integer parseYear(String yearStr) throws NumberFormatException {
         // we might need to strip an optional time-zone, even though I've never seen it
         // "2019" vs "2019+05:00" or "2019-03:00"
         int timeZoneStart = yearStr.indexOf('+');
         if (timeZoneStart == -1) timeZoneStart = yearStr.indexOf('-');
         yearStr = (timeZoneStart == -1) ? yearStr : yearStr.substring(0, timeZoneStart);
 
-        Integer year = Integer.valueOf(yearStr);
-        parser.require(XmlPullParser.END_TAG, namespace, TAG_YEAR);
-        return year;
+        return Integer.valueOf(yearStr);
     }
 
-    private List<Extension> readExtensions(XmlPullParser parser) throws IOException, XmlPullParserException {
+    List<Extension> readExtensions(XmlPullParser parser) throws IOException, XmlPullParserException {
         List<Extension> extensions = new ArrayList<>();
 
         parser.require(XmlPullParser.START_TAG, namespace, TAG_EXTENSIONS);
@@ -591,22 +781,45 @@ public class GPXParser {
             if (parser.getEventType() != XmlPullParser.START_TAG) {
                 continue;
             }
-            extensions.addAll(readChildExtensions(parser));
+            extensions.add(readExtension(parser));
         }
         parser.require(XmlPullParser.END_TAG, namespace, TAG_EXTENSIONS);
 
         return extensions;
     }
 
-    private List<Extension> readChildExtensions(XmlPullParser parser) throws IOException, XmlPullParserException {
+    // Like readExtensions, with the elements of the namespaces that have a decoder decoded into typed objects.
+    void readPointExtensions(XmlPullParser parser, Point.Builder builder) throws IOException, XmlPullParserException {
         List<Extension> extensions = new ArrayList<>();
-        while (parser.getEventType() == XmlPullParser.START_TAG) {
-            extensions.add(readExtension(parser));
+        List<Object> decodedExtensions = new ArrayList<>();
+        ExtensionReader extensionReader = null;
+
+        parser.require(XmlPullParser.START_TAG, namespace, TAG_EXTENSIONS);
+        while (loopMustContinue(parser.next())) {
+            if (parser.getEventType() != XmlPullParser.START_TAG) {
+                continue;
+            }
+            ExtensionDecoder decoder = mOptions.getExtensionDecoder(parser.getNamespace());
+            if (decoder == null) {
+                extensions.add(readExtension(parser));
+                continue;
+            }
+            if (extensionReader == null) {
+                extensionReader = new PullExtensionReader(parser);
+            }
+            Object decoded = decoder.decode(extensionReader);
+            if (decoded != null) {
+                decodedExtensions.add(decoded);
+            }
         }
+        parser.require(XmlPullParser.END_TAG, namespace, TAG_EXTENSIONS);
 
-        return extensions;
+        builder.setExtensions(extensions);
+        builder.setDecodedExtensions(decodedExtensions);
     }
 
+    // Reads an element and its children, from its start tag to its end tag. The value is the text
+    // before the first child.
     private Extension readExtension(XmlPullParser parser) throws IOException, XmlPullParserException {
 
         if (parser.getEventType() != XmlPullParser.START_TAG) {
@@ -614,41 +827,49 @@ public class GPXParser {
         }
 
         Extension.Builder extensionBuilder = new Extension.Builder();
-        extensionBuilder.setName(parser.getName());
-        extensionBuilder.setPrefix(parser.getPrefix());
-        extensionBuilder.setNamespace(parser.getNamespace(parser.getPrefix()));
+        extensionBuilder.setName(GpxStrings.intern(parser.getName()));
+        extensionBuilder.setPrefix(GpxStrings.intern(parser.getPrefix()));
+        extensionBuilder.setNamespace(GpxStrings.intern(parser.getNamespace(parser.getPrefix())));
         extensionBuilder.setAttributes(readAttributes(parser));
-        extensionBuilder.setValue(readText(parser));
 
-        switch (parser.getEventType()) {
-            case XmlPullParser.END_TAG:
-                extensionBuilder.setChildren(new ArrayList<>());
-                parser.nextTag();
-                break;
-            case XmlPullParser.START_TAG:
-                extensionBuilder.setChildren(readChildExtensions(parser));
-                break;
+        String value = "";
+        List<Extension> children = null;
+        while (loopMustContinue(parser.next())) {
+            if (parser.getEventType() == XmlPullParser.START_TAG) {
+                if (children == null) {
+                    children = new ArrayList<>();
+                }
+                children.add(readExtension(parser));
+            } else if (parser.getEventType() == XmlPullParser.TEXT && children == null) {
+                value = value.isEmpty() ? parser.getText() : value + parser.getText();
+            }
         }
+        extensionBuilder.setValue(value);
+        extensionBuilder.setChildren(children != null ? children : Collections.emptyList());
 
         return extensionBuilder.build();
     }
 
     private List<XMLAttribute> readAttributes(XmlPullParser parser) {
-        List<XMLAttribute> attributes = new ArrayList<>();
-        for (int i = 0; i < parser.getAttributeCount(); i++) {
+        int count = parser.getAttributeCount();
+        if (count <= 0) {
+            return Collections.emptyList();
+        }
+        List<XMLAttribute> attributes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
             attributes.add(new XMLAttribute.Builder()
-                    .setName(parser.getAttributeName(i))
+                    .setName(GpxStrings.intern(parser.getAttributeName(i)))
                     .setValue(parser.getAttributeValue(i))
-                    .setType(parser.getAttributeType(i))
-                    .setPrefix(parser.getAttributePrefix(i))
-                    .setNamespace(parser.getAttributeNamespace(i))
+                    .setType(GpxStrings.intern(parser.getAttributeType(i)))
+                    .setPrefix(GpxStrings.intern(parser.getAttributePrefix(i)))
+                    .setNamespace(GpxStrings.intern(parser.getAttributeNamespace(i)))
                     .build()
             );
         }
         return attributes;
     }
 
-    private void skip(XmlPullParser parser) throws XmlPullParserException, IOException {
+    void skip(XmlPullParser parser) throws XmlPullParserException, IOException {
         if (parser.getEventType() != XmlPullParser.START_TAG) {
             throw new IllegalStateException();
         }
@@ -661,6 +882,8 @@ public class GPXParser {
                 case XmlPullParser.START_TAG:
                     depth++;
                     break;
+                case XmlPullParser.END_DOCUMENT:
+                    throw new XmlPullParserException("Unexpected end of document", parser, null);
             }
         }
     }
@@ -669,212 +892,66 @@ public class GPXParser {
         return next != XmlPullParser.END_TAG && next != XmlPullParser.END_DOCUMENT;
     }
 
-    private void writeGpx(Gpx gpx, XmlSerializer serializer) throws IOException, IllegalStateException, IllegalArgumentException {
-
-        // Need to set namespaces before start tag
-        serializer.setPrefix("", gpx.getNamespace());
-        writePrefixes(gpx.getAttributes(), serializer);
-        serializer.startTag(gpx.getNamespace(), TAG_GPX);
-
-        // Set attributes for GPX Tag
-        serializer.attribute(null, TAG_CREATOR, gpx.getCreator());
-        serializer.attribute(null, TAG_VERSION, gpx.getVersion());
-
-        List<String> mSkipKeys = new ArrayList<>();
-        mSkipKeys.add(TAG_CREATOR);
-        mSkipKeys.add(TAG_VERSION);
-        writeAttributes(gpx.getAttributes(), mSkipKeys, serializer);
-
-        // Set Meta data
-        writeMetadata(gpx.getMetadata(), gpx.getNamespace(), serializer);
-        // Set Waypoints
-        writeWayPoints(gpx.getWayPoints(), gpx.getNamespace(), serializer);
-
-        serializer.endTag(gpx.getNamespace(), TAG_GPX);
-    }
-
-    private void writePrefixes(List<XMLAttribute> attributes, XmlSerializer serializer) throws IOException, IllegalStateException, IllegalArgumentException {
-        for (int i = 0; i < attributes.size(); i++) {
-            XMLAttribute attribute = attributes.get(i);
-            if (!attribute.getPrefix().isEmpty()) {
-                serializer.setPrefix(attribute.getPrefix(), attribute.getNamespace());
-            }
-        }
-    }
-
-
-    private void writeAttributes(List<XMLAttribute> attributes, List<String> skipKeys, XmlSerializer serializer) throws IOException, IllegalStateException, IllegalArgumentException {
-        for (int i = 0; i < attributes.size(); i++) {
-            XMLAttribute attribute = attributes.get(i);
-            if (skipKeys != null && skipKeys.contains(attribute.getName())) {
-                continue;
-            }
-
-            serializer.attribute(attribute.getNamespace(), attribute.getName(), attribute.getValue());
-            serializer.setPrefix(attribute.getPrefix(), attribute.getNamespace());
-        }
-    }
-
-    private void writeMetadata(Metadata metadata, String namespace, XmlSerializer serializer) throws IOException, IllegalStateException, IllegalArgumentException {
-        if (metadata == null) {
-            return;
-        }
-
-        serializer.startTag(namespace, TAG_METADATA);
-        writeTagWithText(TAG_NAME, metadata.getName(), namespace, serializer);
-        writeTagWithText(TAG_DESC, metadata.getDesc(), namespace, serializer);
-        writeAuthor(metadata.getAuthor(), namespace, serializer);
-        writeCopyright(metadata.getCopyright(), namespace, serializer);
-        writeLink(metadata.getLink(), namespace, serializer);
-        writeTagWithText(TAG_KEYWORDS, metadata.getKeywords(), namespace, serializer);
-        writeTime(metadata.getTime(), namespace, serializer);
-        writeBounds(metadata.getBounds(), namespace, serializer);
-        // Extensions in metadata not yet supported
-
-        serializer.endTag(namespace, TAG_METADATA);
-    }
-
-    private void writeWayPoints(List<WayPoint> wayPoints, String namespace, XmlSerializer serializer) throws IOException, IllegalStateException, IllegalArgumentException {
-        if (wayPoints == null) {
-            return;
-        }
-        for (int i = 0; i < wayPoints.size(); i++) {
-            writeWayPoint(wayPoints.get(i), namespace, serializer);
-        }
-    }
-
-    private void writeWayPoint(WayPoint wayPoint, String namespace, XmlSerializer serializer) throws IOException, IllegalStateException, IllegalArgumentException {
-        if (wayPoint == null) {
-            return;
-        }
-
-        serializer.startTag(namespace, TAG_WAY_POINT);
-        serializer.attribute(null, TAG_LAT, wayPoint.getLatitude().toString());
-        serializer.attribute(null, TAG_LON, wayPoint.getLongitude().toString());
-
-        writeTagWithText(TAG_ELEVATION, wayPoint.getElevation(), namespace, serializer);
-        writeTime(wayPoint.getTime(), namespace, serializer);
-        writeTagWithText(TAG_NAME, wayPoint.getName(), namespace, serializer);
-        writeTagWithText(TAG_DESC, wayPoint.getDesc(), namespace, serializer);
-        writeTagWithText(TAG_TYPE, wayPoint.getType(), namespace, serializer);
-        writeTagWithText(TAG_SYM, wayPoint.getSym(), namespace, serializer);
-        writeTagWithText(TAG_CMT, wayPoint.getCmt(), namespace, serializer);
-        writeRootExtensions(wayPoint.getExtensions(), namespace, serializer);
-
-        serializer.endTag(namespace, TAG_WAY_POINT);
-    }
-
-    private void writeTagWithText(String tag, Object value, String namespace, XmlSerializer serializer) throws IOException, IllegalStateException, IllegalArgumentException {
-        if (value == null) {
-            return;
-        }
-
-        serializer.startTag(namespace, tag);
-        serializer.text(value.toString());
-        serializer.endTag(namespace, tag);
-    }
-
-    private void writeAuthor(Author author, String namespace, XmlSerializer serializer) throws IOException, IllegalStateException, IllegalArgumentException {
-        if (author == null) {
-            return;
-        }
-
-        serializer.startTag(namespace, TAG_AUTHOR);
-        writeTagWithText(TAG_NAME, author.getName(), namespace, serializer);
-        writeEmail(author.getEmail(), namespace, serializer);
-        writeLink(author.getLink(), namespace, serializer);
-        serializer.endTag(namespace, TAG_AUTHOR);
-
-    }
-
-    private void writeEmail(Email email, String namespace, XmlSerializer serializer) throws IOException, IllegalStateException, IllegalArgumentException {
-        if (email == null) {
-            return;
-        }
+    /**
+     * The {@link ExtensionReader} handed to decoders, on top of the parser.
+     */
+    private class PullExtensionReader implements ExtensionReader {
 
-        serializer.startTag(namespace, TAG_EMAIL);
-        serializer.attribute(null, TAG_ID, email.getId());
-        serializer.attribute(null, TAG_DOMAIN, email.getDomain());
-        serializer.endTag(namespace, TAG_EMAIL);
-    }
+        private final XmlPullParser mParser;
 
-    private void writeLink(Link link, String namespace, XmlSerializer serializer) throws IOException, IllegalStateException, IllegalArgumentException {
-        if (link == null) {
-            return;
+        PullExtensionReader(XmlPullParser parser) {
+            mParser = parser;
         }
 
-        serializer.startTag(namespace, TAG_LINK);
-        serializer.attribute(null, TAG_HREF, link.getHref());
-        writeTagWithText(TAG_TEXT, link.getText(), namespace, serializer);
-        writeTagWithText(TAG_TYPE, link.getType(), namespace, serializer);
-        serializer.endTag(namespace, TAG_LINK);
-    }
-
-    private void writeCopyright(Copyright copyright, String namespace, XmlSerializer serializer) throws IOException, IllegalStateException, IllegalArgumentException {
-        if (copyright == null) {
-            return;
+        @Override
+        public String getName() {
+            return mParser.getName();
         }
-        serializer.startTag(namespace, TAG_COPYRIGHT);
-        serializer.attribute(null, TAG_AUTHOR, copyright.getAuthor());
-        writeTagWithText(TAG_YEAR, copyright.getYear(), namespace, serializer);
-        writeTagWithText(TAG_LICENSE, copyright.getLicense(), namespace, serializer);
-        serializer.endTag(namespace, TAG_COPYRIGHT);
-    }
 
-    private void writeTime(DateTime dateTime, String namespace, XmlSerializer serializer) throws IOException, IllegalStateException, IllegalArgumentException {
-        if (dateTime == null) {
-            return;
+        @Override
+        public String getNamespace() {
+            return mParser.getNamespace();
         }
 
-        writeTagWithText(TAG_TIME, ISODateTimeFormat.dateTime().print(dateTime), namespace, serializer);
-    }
-
-    private void writeBounds(Bounds bounds, String namespace, XmlSerializer serializer) throws IOException, IllegalStateException, IllegalArgumentException {
-        if (bounds == null) {
-            return;
+        @Override
+        public String getAttributeValue(String name) {
+            return mParser.getAttributeValue(namespace, name);
         }
-        serializer.startTag(namespace, TAG_BOUNDS);
-        serializer.attribute(null, TAG_MIN_LAT, bounds.getMinLat().toString());
-        serializer.attribute(null, TAG_MIN_LON, bounds.getMinLon().toString());
-        serializer.attribute(null, TAG_MAX_LAT, bounds.getMaxLat().toString());
-        serializer.attribute(null, TAG_MAX_LON, bounds.getMaxLon().toString());
-        serializer.endTag(namespace, TAG_BOUNDS);
-    }
 
-    private void writeRootExtensions(List<Extension> extensions, String namespace, XmlSerializer serializer) throws IOException, IllegalStateException, IllegalArgumentException {
-        if (extensions == null || extensions.size() == 0) {
-            return;
+        @Override
+        public boolean nextChild() throws XmlPullParserException, IOException {
+            while (true) {
+                switch (mParser.next()) {
+                    case XmlPullParser.START_TAG:
+                        return true;
+                    case XmlPullParser.END_TAG:
+                        return false;
+                    case XmlPullParser.END_DOCUMENT:
+                        throw new XmlPullParserException("Unexpected end of document", mParser, null);
+                }
+            }
         }
 
-        serializer.startTag(namespace, TAG_EXTENSIONS);
-        writeExtensions(extensions, serializer);
-        serializer.endTag(namespace, TAG_EXTENSIONS);
-    }
-
-    private void writeExtensions(List<Extension> extensions, XmlSerializer serializer) throws IOException, IllegalStateException, IllegalArgumentException {
-        if (extensions == null || extensions.size() == 0) {
-            return;
+        @Override
+        public String readText() throws XmlPullParserException, IOException {
+            String text = GPXParser.this.readText(mParser);
+            mParser.require(XmlPullParser.END_TAG, null, null);
+            return text;
         }
 
-        for (int i = 0; i < extensions.size(); i++) {
-            writeExtension(extensions.get(i), serializer);
+        @Override
+        public double readDouble() throws XmlPullParserException, IOException {
+            return GpxNumber.parseDouble(readText());
         }
-    }
 
-
-    private void writeExtension(Extension extension, XmlSerializer serializer) throws IOException, IllegalStateException, IllegalArgumentException {
-        if (extension == null) {
-            return;
+        @Override
+        public int readInt() throws XmlPullParserException, IOException {
+            return GpxNumber.parseInt(readText());
         }
 
-        writePrefixes(extension.getAttributes(), serializer);
-        serializer.setPrefix(extension.getPrefix(), extension.getNamespace());
-        serializer.startTag(extension.getNamespace(), extension.getName());
-        writeAttributes(extension.getAttributes(), null, serializer);
-        if (extension.getValue() != null) {
-            serializer.text(extension.getValue());
+        @Override
+        public void skip() throws XmlPullParserException, IOException {
+            GPXParser.this.skip(mParser);
         }
-        writeExtensions(extension.getChildren(), serializer);
-        serializer.endTag(extension.getNamespace(), extension.getName());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,250 @@
+package io.ticofab.androidgpxparser.parser;
+
+import androidx.annotation.RequiresApi;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+import io.ticofab.androidgpxparser.parser.domain.Gpx;
+
+/**
+ * Parses many documents concurrently, e.g. a batch of uploaded files.
+ * <p>
+ * At most {@link Builder#setMaxInFlight(int)} documents are being parsed at any time: {@link #submit(Source)}
+ * blocks the caller once the limit is reached, which keeps the memory used by a batch bounded however
+ * many sources are queued. XmlPull parsers are pooled and reused from one document to the next.
+ * <p>
+ * Parsing runs on virtual threads when the platform has them, on a fixed pool of one thread per core
+ * otherwise, unless an executor is given. {@link #close()} shuts down the executor created by the
+ * batch parser, never one given to it.
+ * <p>
+ * On Android, {@link CompletableFuture} requires API level 24.
+ */
+@RequiresApi(24)
+public class GpxBatchParser implements Closeable {
+
+    /**
+     * A document to parse, opened only once a parsing slot is free.
+     */
+    public interface Source {
+        InputStream open() throws IOException;
+    }
+
+    private final GPXParser mParser;
+    private final ParseOptions mOptions;
+    private final Executor mExecutor;
+    private final ExecutorService mOwnedExecutor;
+    private final int mMaxInFlight;
+    private final Semaphore mInFlight;
+    private final Queue<XmlPullParser> mPullParsers = new ConcurrentLinkedQueue<>();
+
+    private GpxBatchParser(Builder builder) {
+        mParser = new GPXParser(builder.mXmlFactory != null ? builder.mXmlFactory : new AndroidXmlFactory(),
+                builder.mOptions);
+        mOptions = builder.mOptions;
+        if (builder.mExecutor != null) {
+            mExecutor = builder.mExecutor;
+            mOwnedExecutor = null;
+        } else {
+            mOwnedExecutor = newDefaultExecutor();
+            mExecutor = mOwnedExecutor;
+        }
+        mMaxInFlight = builder.mMaxInFlight > 0 ? builder.mMaxInFlight : 2 * Runtime.getRuntime().availableProcessors();
+        mInFlight = new Semaphore(mMaxInFlight);
+    }
+
+    /**
+     * Parses the source asynchronously, waiting first for a free slot if the maximum number of
+     * documents are already being parsed.
+     *
+     * @return completes with the parsed document, or exceptionally with the IOException or
+     * XmlPullParserException that made parsing fail
+     */
+    public CompletableFuture<Gpx> submit(Source source) throws InterruptedIOException {
+        try {
+            mInFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a parsing slot");
+        }
+        CompletableFuture<Gpx> result = new CompletableFuture<>();
+        try {
+            mExecutor.execute(() -> {
+                try {
+                    result.complete(parse(source));
+                } catch (Throwable t) {
+                    result.completeExceptionally(t);
+                } finally {
+                    mInFlight.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            mInFlight.release();
+            throw e;
+        }
+        return result;
+    }
+
+    /**
+     * Submits all the sources, blocking as long as the limit on documents in flight requires.
+     *
+     * @return the results, in the order of the sources
+     */
+    public List<CompletableFuture<Gpx>> submitAll(Collection<? extends Source> sources) throws InterruptedIOException {
+        List<CompletableFuture<Gpx>> results = new ArrayList<>(sources.size());
+        for (Source source : sources) {
+            results.add(submit(source));
+        }
+        return results;
+    }
+
+    /**
+     * Parses all the sources and returns the results in completion order, each of them already
+     * completed. Sources are only submitted as results are consumed, so no more than the maximum
+     * number of documents in flight are ever parsed or held waiting to be consumed. The iterator
+     * must be used from a single thread.
+     */
+    public Iterable<CompletableFuture<Gpx>> parseAll(Collection<? extends Source> sources) {
+        return () -> new CompletionIterator(sources.iterator(), sources.size());
+    }
+
+    @Override
+    public void close() {
+        if (mOwnedExecutor != null) {
+            mOwnedExecutor.shutdown();
+        }
+    }
+
+    private Gpx parse(Source source) throws XmlPullParserException, IOException {
+        XmlPullParser pullParser = mPullParsers.poll();
+        if (pullParser == null) {
+            pullParser = mParser.newPullParser();
+        }
+        // a parser that failed may be in any state, only healthy ones are reused
+        boolean healthy = true;
+        try {
+            InputStream in = source.open();
+            GpxTreeBuilder treeBuilder = new GpxTreeBuilder(mOptions);
+            healthy = false;
+            mParser.parse(pullParser, in, treeBuilder);
+            healthy = true;
+            return treeBuilder.getGpx();
+        } finally {
+            if (healthy) {
+                mPullParsers.offer(pullParser);
+            }
+        }
+    }
+
+    static private ExecutorService newDefaultExecutor() {
+        try {
+            // Java 21 and later
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        }
+    }
+
+    private class CompletionIterator implements Iterator<CompletableFuture<Gpx>> {
+
+        private final Iterator<? extends Source> mSources;
+        private final BlockingQueue<CompletableFuture<Gpx>> mCompleted = new LinkedBlockingQueue<>();
+        private int mRemaining;
+        private int mPending;
+
+        CompletionIterator(Iterator<? extends Source> sources, int count) {
+            mSources = sources;
+            mRemaining = count;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return mRemaining > 0;
+        }
+
+        @Override
+        public CompletableFuture<Gpx> next() {
+            if (mRemaining == 0) {
+                throw new NoSuchElementException();
+            }
+            try {
+                while (mPending < mMaxInFlight && mSources.hasNext()) {
+                    CompletableFuture<Gpx> result = submit(mSources.next());
+                    result.whenComplete((gpx, error) -> mCompleted.add(result));
+                    mPending++;
+                }
+                CompletableFuture<Gpx> result = mCompleted.take();
+                mPending--;
+                mRemaining--;
+                return result;
+            } catch (InterruptedIOException | InterruptedException e) {
+                Thread.currentThread().interrupt();
+                mRemaining = 0;
+                CompletableFuture<Gpx> interrupted = new CompletableFuture<>();
+                interrupted.completeExceptionally(e);
+                return interrupted;
+            }
+        }
+    }
+
+    public static class Builder {
+        private Executor mExecutor;
+        private int mMaxInFlight;
+        private XmlFactory mXmlFactory;
+        private ParseOptions mOptions = ParseOptions.DEFAULT;
+
+        /**
+         * Runs the parsing on this executor instead of a default one. It is not shut down by
+         * {@link GpxBatchParser#close()}.
+         */
+        public Builder setExecutor(Executor executor) {
+            mExecutor = executor;
+            return this;
+        }
+
+        /**
+         * The maximum number of documents parsed at the same time, by default twice the number of cores.
+         */
+        public Builder setMaxInFlight(int maxInFlight) {
+            mMaxInFlight = maxInFlight;
+            return this;
+        }
+
+        /**
+         * See {@link GPXParser#GPXParser(XmlFactory)}, by default the Android parser.
+         */
+        public Builder setXmlFactory(XmlFactory xmlFactory) {
+            mXmlFactory = xmlFactory;
+            return this;
+        }
+
+        public Builder setParseOptions(ParseOptions options) {
+            mOptions = options;
+            return this;
+        }
+
+        public GpxBatchParser build() {
+            return new GpxBatchParser(this);
+        }
+    }
+}
@@ -0,0 +1,696 @@
+package io.ticofab.androidgpxparser.parser;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.ticofab.androidgpxparser.parser.domain.Author;
+import io.ticofab.androidgpxparser.parser.domain.Bounds;
+import io.ticofab.androidgpxparser.parser.domain.Copyright;
+import io.ticofab.androidgpxparser.parser.domain.Email;
+import io.ticofab.androidgpxparser.parser.domain.Extension;
+import io.ticofab.androidgpxparser.parser.domain.Gpx;
+import io.ticofab.androidgpxparser.parser.domain.Link;
+import io.ticofab.androidgpxparser.parser.domain.Metadata;
+import io.ticofab.androidgpxparser.parser.domain.Point;
+import io.ticofab.androidgpxparser.parser.domain.Route;
+import io.ticofab.androidgpxparser.parser.domain.RoutePoint;
+import io.ticofab.androidgpxparser.parser.domain.Track;
+import io.ticofab.androidgpxparser.parser.domain.TrackPoint;
+import io.ticofab.androidgpxparser.parser.domain.TrackSegment;
+import io.ticofab.androidgpxparser.parser.domain.WayPoint;
+import io.ticofab.androidgpxparser.parser.domain.XMLAttribute;
+
+/**
+ * Writes a {@link Gpx} to a compact binary snapshot and reads it back, many times faster than parsing
+ * the XML again. Reading a snapshot gives back the same domain objects as the parse it was written
+ * from: every value is kept exactly, including the time zones of times.
+ * <p>
+ * Layout: the magic bytes {@code GPXB} and the {@link #FORMAT_VERSION}, then the document in element
+ * order. Coordinates, elevations and times are stored as variable-length deltas from the previous
+ * point: coordinates and elevations as fixed-point nanounits, falling back to the raw bits of the
+ * double for values with more than 9 decimals. Strings are stored once, later occurrences refer to
+ * the first one.
+ * <p>
+ * Extensions decoded by an {@link ExtensionDecoder} are not part of the snapshot, extensions captured
+ * as raw XML are stored decoded. The format changes with {@link #FORMAT_VERSION}, snapshots of another
+ * version are rejected.
+ */
+public class GpxBinaryCodec {
+
+    /**
+     * The version of the layout, increased whenever it changes.
+     */
+    public static final int FORMAT_VERSION = 1;
+
+    static private final byte[] MAGIC = {'G', 'P', 'X', 'B'};
+
+    static private final double SCALE = 1e9;
+    // beyond this, the fixed-point value would not fit in a long
+    static private final double MAX_FIXED = 9e9;
+
+    // point flags
+    static private final int LATITUDE = 1;
+    static private final int LATITUDE_RAW = 1 << 1;
+    static private final int LONGITUDE = 1 << 2;
+    static private final int LONGITUDE_RAW = 1 << 3;
+    static private final int ELEVATION = 1 << 4;
+    static private final int ELEVATION_RAW = 1 << 5;
+    static private final int TIME = 1 << 6;
+    static private final int TIME_ZONE = 1 << 7;
+    static private final int TEXTS = 1 << 8;
+    static private final int EXTENSIONS = 1 << 9;
+
+    // time kinds outside of points
+    static private final int NO_TIME = 0;
+    static private final int DEFAULT_ZONE = 1;
+    static private final int OTHER_ZONE = 2;
+
+    /**
+     * @param out receives the snapshot, closed when done
+     */
+    public void write(Gpx gpx, OutputStream out) throws IOException {
+        try (DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out))) {
+            data.write(MAGIC);
+            new Encoder(data).writeGpx(gpx);
+        }
+    }
+
+    /**
+     * Reads the whole stream, closing it, and decodes it.
+     *
+     * @throws IOException also if the stream is not a snapshot or was written with another
+     *                     {@link #FORMAT_VERSION}
+     */
+    public Gpx read(InputStream in) throws IOException {
+        return read(ByteGpxParser.readFully(in));
+    }
+
+    /**
+     * Decodes the snapshot between the position and the limit of the buffer, e.g. a memory mapped
+     * file. The position of the buffer is not modified.
+     *
+     * @throws IOException if the buffer does not hold a snapshot, a complete one, or one written with
+     *                     another {@link #FORMAT_VERSION}
+     */
+    public Gpx read(ByteBuffer buffer) throws IOException {
+        ByteBuffer data = buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+        try {
+            for (byte b : MAGIC) {
+                if (data.get() != b) {
+                    throw new IOException("Not a GPX snapshot");
+                }
+            }
+            return new Decoder(data).readGpx();
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated GPX snapshot", e);
+        }
+    }
+
+    // The fixed-point value, or null if it would not give back exactly the same double.
+    static private Long toFixed(double value) {
+        if (!(Math.abs(value) <= MAX_FIXED)) {
+            return null;
+        }
+        long fixed = Math.round(value * SCALE);
+        return Double.doubleToRawLongBits(fixed / SCALE) == Double.doubleToRawLongBits(value) ? fixed : null;
+    }
+
+    private static class Encoder {
+
+        private final DataOutputStream mOut;
+        private final Map<String, Integer> mStrings = new HashMap<>();
+
+        // the previous point values, deltas are written from them
+        private long mLatitude;
+        private long mLongitude;
+        private long mElevation;
+        private long mTime;
+
+        Encoder(DataOutputStream out) {
+            mOut = out;
+        }
+
+        void writeGpx(Gpx gpx) throws IOException {
+            writeVarint(FORMAT_VERSION);
+            writeString(gpx.getVersion());
+            writeString(gpx.getCreator());
+            writeAttributes(gpx.getAttributes());
+            writeMetadata(gpx.getMetadata());
+
+            writeVarint(gpx.getWayPoints().size());
+            for (WayPoint wayPoint : gpx.getWayPoints()) {
+                writePoint(wayPoint);
+            }
+
+            writeVarint(gpx.getRoutes().size());
+            for (Route route : gpx.getRoutes()) {
+                writeString(route.getRouteName());
+                writeString(route.getRouteDesc());
+                writeString(route.getRouteCmt());
+                writeString(route.getRouteSrc());
+                writeInteger(route.getRouteNumber());
+                writeLink(route.getRouteLink());
+                writeString(route.getRouteType());
+                writeVarint(route.getRoutePoints().size());
+                for (RoutePoint routePoint : route.getRoutePoints()) {
+                    writePoint(routePoint);
+                }
+            }
+
+            writeVarint(gpx.getTracks().size());
+            for (Track track : gpx.getTracks()) {
+                writeString(track.getTrackName());
+                writeString(track.getTrackDesc());
+                writeString(track.getTrackCmt());
+                writeString(track.getTrackSrc());
+                writeInteger(track.getTrackNumber());
+                writeLink(track.getTrackLink());
+                writeString(track.getTrackType());
+                writeVarint(track.getTrackSegments().size());
+                for (TrackSegment segment : track.getTrackSegments()) {
+                    writeSegment(segment);
+                }
+            }
+        }
+
+        private void writeMetadata(Metadata metadata) throws IOException {
+            mOut.writeBoolean(metadata != null);
+            if (metadata == null) {
+                return;
+            }
+            writeString(metadata.getName());
+            writeString(metadata.getDesc());
+
+            Author author = metadata.getAuthor();
+            mOut.writeBoolean(author != null);
+            if (author != null) {
+                writeString(author.getName());
+                Email email = author.getEmail();
+                mOut.writeBoolean(email != null);
+                if (email != null) {
+                    writeString(email.getId());
+                    writeString(email.getDomain());
+                }
+                writeLink(author.getLink());
+            }
+
+            Copyright copyright = metadata.getCopyright();
+            mOut.writeBoolean(copyright != null);
+            if (copyright != null) {
+                writeString(copyright.getAuthor());
+                writeInteger(copyright.getYear());
+                writeString(copyright.getLicense());
+            }
+
+            writeLink(metadata.getLink());
+            writeTime(metadata.getTime());
+            writeString(metadata.getKeywords());
+
+            Bounds bounds = metadata.getBounds();
+            mOut.writeBoolean(bounds != null);
+            if (bounds != null) {
+                writeNullableDouble(bounds.getMinLat());
+                writeNullableDouble(bounds.getMinLon());
+                writeNullableDouble(bounds.getMaxLat());
+                writeNullableDouble(bounds.getMaxLon());
+            }
+        }
+
+        private void writeSegment(TrackSegment segment) throws IOException {
+            mOut.writeBoolean(segment.isCompact());
+            int count = segment.getTrackPointCount();
+            writeVarint(count);
+            if (segment.isCompact()) {
+                // missing values are NaN in compact segments, null in points
+                for (int i = 0; i < count; i++) {
+                    long time = segment.getTimeMillis(i);
+                    writeValues(orNull(segment.getLatitude(i)), orNull(segment.getLongitude(i)),
+                            orNull(segment.getElevation(i)), time != TrackSegment.NO_TIME ? new DateTime(time) : null, 0);
+                }
+            } else {
+                for (TrackPoint trackPoint : segment.getTrackPoints()) {
+                    writePoint(trackPoint);
+                }
+            }
+            writeExtensions(segment.getExtensions());
+        }
+
+        private void writePoint(Point point) throws IOException {
+            boolean texts = point.getName() != null || point.getDesc() != null || point.getType() != null
+                    || point.getSym() != null || point.getCmt() != null;
+            List<Extension> extensions = point.getExtensions();
+            writeValues(point.getLatitude(), point.getLongitude(), point.getElevation(), point.getTime(),
+                    (texts ? TEXTS : 0) | (extensions.isEmpty() ? 0 : EXTENSIONS));
+            if (texts) {
+                writeString(point.getName());
+                writeString(point.getDesc());
+                writeString(point.getType());
+                writeString(point.getSym());
+                writeString(point.getCmt());
+            }
+            if (!extensions.isEmpty()) {
+                writeExtensions(extensions);
+            }
+        }
+
+        // The flags, then the deltas of the values.
+        private void writeValues(Double latitude, Double longitude, Double elevation, DateTime time, int flags)
+                throws IOException {
+            Long fixedLatitude = latitude != null ? toFixed(latitude) : null;
+            Long fixedLongitude = longitude != null ? toFixed(longitude) : null;
+            Long fixedElevation = elevation != null ? toFixed(elevation) : null;
+            boolean otherZone = time != null && !time.getZone().equals(DateTimeZone.getDefault());
+
+            flags |= latitude == null ? 0 : fixedLatitude != null ? LATITUDE : LATITUDE | LATITUDE_RAW;
+            flags |= longitude == null ? 0 : fixedLongitude != null ? LONGITUDE : LONGITUDE | LONGITUDE_RAW;
+            flags |= elevation == null ? 0 : fixedElevation != null ? ELEVATION : ELEVATION | ELEVATION_RAW;
+            flags |= time == null ? 0 : otherZone ? TIME | TIME_ZONE : TIME;
+            writeVarint(flags);
+
+            if (fixedLatitude != null) {
+                writeSignedVarint(fixedLatitude - mLatitude);
+                mLatitude = fixedLatitude;
+            } else if (latitude != null) {
+                mOut.writeLong(Double.doubleToRawLongBits(latitude));
+            }
+            if (fixedLongitude != null) {
+                writeSignedVarint(fixedLongitude - mLongitude);
+                mLongitude = fixedLongitude;
+            } else if (longitude != null) {
+                mOut.writeLong(Double.doubleToRawLongBits(longitude));
+            }
+            if (fixedElevation != null) {
+                writeSignedVarint(fixedElevation - mElevation);
+                mElevation = fixedElevation;
+            } else if (elevation != null) {
+                mOut.writeLong(Double.doubleToRawLongBits(elevation));
+            }
+            if (time != null) {
+                writeSignedVarint(time.getMillis() - mTime);
+                mTime = time.getMillis();
+                if (otherZone) {
+                    writeString(time.getZone().getID());
+                }
+            }
+        }
+
+        static private Double orNull(double value) {
+            return Double.isNaN(value) ? null : value;
+        }
+
+        private void writeTime(DateTime time) throws IOException {
+            if (time == null) {
+                writeVarint(NO_TIME);
+                return;
+            }
+            boolean otherZone = !time.getZone().equals(DateTimeZone.getDefault());
+            writeVarint(otherZone ? OTHER_ZONE : DEFAULT_ZONE);
+            mOut.writeLong(time.getMillis());
+            if (otherZone) {
+                writeString(time.getZone().getID());
+            }
+        }
+
+        private void writeExtensions(List<Extension> extensions) throws IOException {
+            writeVarint(extensions.size());
+            for (Extension extension : extensions) {
+                writeString(extension.getName());
+                writeString(extension.getPrefix());
+                writeString(extension.getNamespace());
+                writeString(extension.getValue());
+                writeAttributes(extension.getAttributes());
+                writeExtensions(extension.getChildren());
+            }
+        }
+
+        private void writeAttributes(List<XMLAttribute> attributes) throws IOException {
+            writeVarint(attributes.size());
+            for (XMLAttribute attribute : attributes) {
+                writeString(attribute.getName());
+                writeString(attribute.getValue());
+                writeString(attribute.getType());
+                writeString(attribute.getPrefix());
+                writeString(attribute.getNamespace());
+            }
+        }
+
+        private void writeLink(Link link) throws IOException {
+            mOut.writeBoolean(link != null);
+            if (link != null) {
+                writeString(link.getHref());
+                writeString(link.getText());
+                writeString(link.getType());
+            }
+        }
+
+        private void writeInteger(Integer value) throws IOException {
+            mOut.writeBoolean(value != null);
+            if (value != null) {
+                writeSignedVarint(value);
+            }
+        }
+
+        private void writeNullableDouble(Double value) throws IOException {
+            mOut.writeBoolean(value != null);
+            if (value != null) {
+                mOut.writeLong(Double.doubleToRawLongBits(value));
+            }
+        }
+
+        // 0 for null, 1 followed by the UTF-8 bytes for a new string, 2 + index for a string already written
+        private void writeString(String value) throws IOException {
+            if (value == null) {
+                writeVarint(0);
+                return;
+            }
+            Integer index = mStrings.get(value);
+            if (index != null) {
+                writeVarint(2 + index);
+                return;
+            }
+            mStrings.put(value, mStrings.size());
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarint(1);
+            writeVarint(bytes.length);
+            mOut.write(bytes);
+        }
+
+        private void writeSignedVarint(long value) throws IOException {
+            writeVarint((value << 1) ^ (value >> 63));
+        }
+
+        private void writeVarint(long value) throws IOException {
+            while ((value & ~0x7FL) != 0) {
+                mOut.writeByte((int) (value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            mOut.writeByte((int) value);
+        }
+    }
+
+    private static class Decoder {
+
+        private final ByteBuffer mIn;
+        private final List<String> mStrings = new ArrayList<>();
+
+        private long mLatitude;
+        private long mLongitude;
+        private long mElevation;
+        private long mTime;
+
+        Decoder(ByteBuffer in) {
+            mIn = in;
+        }
+
+        Gpx readGpx() throws IOException {
+            int version = readCount();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported GPX snapshot version " + version);
+            }
+            Gpx.Builder gpxBuilder = new Gpx.Builder()
+                    .setVersion(readString())
+                    .setCreator(readString())
+                    .setAttributes(readAttributes())
+                    .setMetadata(readMetadata());
+
+            int wayPointCount = readCount();
+            List<WayPoint> wayPoints = new ArrayList<>(wayPointCount);
+            for (int i = 0; i < wayPointCount; i++) {
+                wayPoints.add((WayPoint) readPoint(new WayPoint.Builder()));
+            }
+
+            int routeCount = readCount();
+            List<Route> routes = new ArrayList<>(routeCount);
+            for (int i = 0; i < routeCount; i++) {
+                Route.Builder routeBuilder = new Route.Builder()
+                        .setRouteName(readString())
+                        .setRouteDesc(readString())
+                        .setRouteCmt(readString())
+                        .setRouteSrc(readString())
+                        .setRouteNumber(readInteger())
+                        .setRouteLink(readLink())
+                        .setRouteType(readString());
+                int pointCount = readCount();
+                List<RoutePoint> routePoints = new ArrayList<>(pointCount);
+                for (int j = 0; j < pointCount; j++) {
+                    routePoints.add((RoutePoint) readPoint(new RoutePoint.Builder()));
+                }
+                routes.add(routeBuilder.setRoutePoints(routePoints).build());
+            }
+
+            int trackCount = readCount();
+            List<Track> tracks = new ArrayList<>(trackCount);
+            for (int i = 0; i < trackCount; i++) {
+                Track.Builder trackBuilder = new Track.Builder()
+                        .setTrackName(readString())
+                        .setTrackDesc(readString())
+                        .setTrackCmt(readString())
+                        .setTrackSrc(readString())
+                        .setTrackNumber(readInteger())
+                        .setTrackLink(readLink())
+                        .setTrackType(readString());
+                int segmentCount = readCount();
+                List<TrackSegment> segments = new ArrayList<>(segmentCount);
+                for (int j = 0; j < segmentCount; j++) {
+                    segments.add(readSegment());
+                }
+                tracks.add(trackBuilder.setTrackSegments(segments).build());
+            }
+
+            return gpxBuilder
+                    .setWayPoints(wayPoints)
+                    .setRoutes(routes)
+                    .setTracks(tracks)
+                    .build();
+        }
+
+        private Metadata readMetadata() throws IOException {
+            if (mIn.get() == 0) {
+                return null;
+            }
+            Metadata.Builder metadataBuilder = new Metadata.Builder()
+                    .setName(readString())
+                    .setDesc(readString());
+
+            if (mIn.get() != 0) {
+                Author.Builder authorBuilder = new Author.Builder().setName(readString());
+                if (mIn.get() != 0) {
+                    authorBuilder.setEmail(new Email.Builder()
+                            .setId(readString())
+                            .setDomain(readString())
+                            .build());
+                }
+                metadataBuilder.setAuthor(authorBuilder.setLink(readLink()).build());
+            }
+
+            if (mIn.get() != 0) {
+                metadataBuilder.setCopyright(new Copyright.Builder()
+                        .setAuthor(readString())
+                        .setYear(readInteger())
+                        .setLicense(readString())
+                        .build());
+            }
+
+            metadataBuilder
+                    .setLink(readLink())
+                    .setTime(readTime())
+                    .setKeywords(readString());
+
+            if (mIn.get() != 0) {
+                metadataBuilder.setBounds(new Bounds.Builder()
+                        .setMinLat(readNullableDouble())
+                        .setMinLon(readNullableDouble())
+                        .setMaxLat(readNullableDouble())
+                        .setMaxLon(readNullableDouble())
+                        .build());
+            }
+            return metadataBuilder.build();
+        }
+
+        private TrackSegment readSegment() throws IOException {
+            boolean compact = mIn.get() != 0;
+            int count = readCount();
+            if (compact) {
+                TrackSegment.CompactBuilder builder = new TrackSegment.CompactBuilder();
+                for (int i = 0; i < count; i++) {
+                    TrackPoint.Builder values = new TrackPoint.Builder();
+                    readValues(values);
+                    builder.addTrackPoint(values.build());
+                }
+                return builder.setExtensions(readExtensions()).build();
+            }
+            List<TrackPoint> trackPoints = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                trackPoints.add((TrackPoint) readPoint(new TrackPoint.Builder()));
+            }
+            return new TrackSegment.Builder()
+                    .setTrackPoints(trackPoints)
+                    .setExtensions(readExtensions())
+                    .build();
+        }
+
+        private Point readPoint(Point.Builder builder) throws IOException {
+            int flags = readValues(builder);
+            if ((flags & TEXTS) != 0) {
+                builder.setName(readString());
+                builder.setDesc(readString());
+                builder.setType(readString());
+                builder.setSym(readString());
+                builder.setCmt(readString());
+            }
+            if ((flags & EXTENSIONS) != 0) {
+                builder.setExtensions(readExtensions());
+            }
+            return builder.build();
+        }
+
+        private int readValues(Point.Builder builder) throws IOException {
+            int flags = readCount();
+            if ((flags & LATITUDE_RAW) != 0) {
+                builder.setLatitude(Double.longBitsToDouble(mIn.getLong()));
+            } else if ((flags & LATITUDE) != 0) {
+                mLatitude += readSignedVarint();
+                builder.setLatitude(mLatitude / SCALE);
+            }
+            if ((flags & LONGITUDE_RAW) != 0) {
+                builder.setLongitude(Double.longBitsToDouble(mIn.getLong()));
+            } else if ((flags & LONGITUDE) != 0) {
+                mLongitude += readSignedVarint();
+                builder.setLongitude(mLongitude / SCALE);
+            }
+            if ((flags & ELEVATION_RAW) != 0) {
+                builder.setElevation(Double.longBitsToDouble(mIn.getLong()));
+            } else if ((flags & ELEVATION) != 0) {
+                mElevation += readSignedVarint();
+                builder.setElevation(mElevation / SCALE);
+            }
+            if ((flags & TIME) != 0) {
+                mTime += readSignedVarint();
+                builder.setTime((flags & TIME_ZONE) != 0
+                        ? new DateTime(mTime, DateTimeZone.forID(readString()))
+                        : new DateTime(mTime));
+            }
+            return flags;
+        }
+
+        private DateTime readTime() throws IOException {
+            int kind = readCount();
+            if (kind == NO_TIME) {
+                return null;
+            }
+            long millis = mIn.getLong();
+            return kind == OTHER_ZONE ? new DateTime(millis, DateTimeZone.forID(readString())) : new DateTime(millis);
+        }
+
+        private List<Extension> readExtensions() throws IOException {
+            int count = readCount();
+            List<Extension> extensions = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                extensions.add(new Extension.Builder()
+                        .setName(readString())
+                        .setPrefix(readString())
+                        .setNamespace(readString())
+                        .setValue(readString())
+                        .setAttributes(readAttributes())
+                        .setChildren(readExtensions())
+                        .build());
+            }
+            return extensions;
+        }
+
+        private List<XMLAttribute> readAttributes() throws IOException {
+            int count = readCount();
+            List<XMLAttribute> attributes = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                attributes.add(new XMLAttribute.Builder()
+                        .setName(readString())
+                        .setValue(readString())
+                        .setType(readString())
+                        .setPrefix(readString())
+                        .setNamespace(readString())
+                        .build());
+            }
+            return attributes;
+        }
+
+        private Link readLink() throws IOException {
+            if (mIn.get() == 0) {
+                return null;
+            }
+            return new Link.Builder()
+                    .setLinkHref(readString())
+                    .setLinkText(readString())
+                    .setLinkType(readString())
+                    .build();
+        }
+
+        private Integer readInteger() throws IOException {
+            return mIn.get() != 0 ? (int) readSignedVarint() : null;
+        }
+
+        private Double readNullableDouble() throws IOException {
+            return mIn.get() != 0 ? Double.longBitsToDouble(mIn.getLong()) : null;
+        }
+
+        private String readString() throws IOException {
+            int code = readCount();
+            if (code == 0) {
+                return null;
+            }
+            if (code >= 2) {
+                if (code - 2 >= mStrings.size()) {
+                    throw new IOException("Invalid string reference " + code);
+                }
+                return mStrings.get(code - 2);
+            }
+            int length = readCount();
+            if (length > mIn.remaining()) {
+                throw new IOException("Truncated GPX snapshot");
+            }
+            byte[] bytes = new byte[length];
+            mIn.get(bytes);
+            String value = new String(bytes, StandardCharsets.UTF_8);
+            mStrings.add(value);
+            return value;
+        }
+
+        private int readCount() throws IOException {
+            long value = readVarint();
+            if (value < 0 || value > Integer.MAX_VALUE) {
+                throw new IOException("Invalid count " + value);
+            }
+            return (int) value;
+        }
+
+        private long readSignedVarint() throws IOException {
+            long value = readVarint();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        private long readVarint() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = mIn.get() & 0xFF;
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Malformed varint");
+        }
+    }
+}
@@ -0,0 +1,1477 @@
+package io.ticofab.androidgpxparser.parser;
+
+import org.joda.time.DateTime;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import io.ticofab.androidgpxparser.parser.ParseOptions.PointField;
+import io.ticofab.androidgpxparser.parser.domain.Author;
+import io.ticofab.androidgpxparser.parser.domain.Bounds;
+import io.ticofab.androidgpxparser.parser.domain.Copyright;
+import io.ticofab.androidgpxparser.parser.domain.Email;
+import io.ticofab.androidgpxparser.parser.domain.Extension;
+import io.ticofab.androidgpxparser.parser.domain.Gpx;
+import io.ticofab.androidgpxparser.parser.domain.Link;
+import io.ticofab.androidgpxparser.parser.domain.Metadata;
+import io.ticofab.androidgpxparser.parser.domain.Point;
+import io.ticofab.androidgpxparser.parser.domain.Route;
+import io.ticofab.androidgpxparser.parser.domain.RoutePoint;
+import io.ticofab.androidgpxparser.parser.domain.Track;
+import io.ticofab.androidgpxparser.parser.domain.TrackPoint;
+import io.ticofab.androidgpxparser.parser.domain.TrackSegment;
+import io.ticofab.androidgpxparser.parser.domain.WayPoint;
+import io.ticofab.androidgpxparser.parser.domain.XMLAttribute;
+
+/**
+ * The engine behind {@link ByteGpxParser}: a tokenizer working directly on the encoded bytes of a
+ * single document.
+ * <p>
+ * Element names are matched by comparing bytes against the GPX vocabulary, and coordinates, elevations
+ * and times are decoded in place through {@link ByteSequence}, so no String is created for them. The
+ * structure and the semantics mirror the read methods of {@link GPXParser}: elements are matched on
+ * their local name, unknown elements are skipped and extensions become generic {@link Extension} trees.
+ * <p>
+ * The encoding must be ASCII compatible, UTF-8 by default. Not thread-safe, one reader per document.
+ */
+final class GpxByteReader {
+
+    static private final byte[] GPX = ascii(GPXParser.TAG_GPX);
+    static private final byte[] VERSION = ascii(GPXParser.TAG_VERSION);
+    static private final byte[] CREATOR = ascii(GPXParser.TAG_CREATOR);
+    static private final byte[] METADATA = ascii(GPXParser.TAG_METADATA);
+    static private final byte[] TRACK = ascii(GPXParser.TAG_TRACK);
+    static private final byte[] SEGMENT = ascii(GPXParser.TAG_SEGMENT);
+    static private final byte[] TRACK_POINT = ascii(GPXParser.TAG_TRACK_POINT);
+    static private final byte[] LAT = ascii(GPXParser.TAG_LAT);
+    static private final byte[] LON = ascii(GPXParser.TAG_LON);
+    static private final byte[] ELEVATION = ascii(GPXParser.TAG_ELEVATION);
+    static private final byte[] TIME = ascii(GPXParser.TAG_TIME);
+    static private final byte[] SYM = ascii(GPXParser.TAG_SYM);
+    static private final byte[] WAY_POINT = ascii(GPXParser.TAG_WAY_POINT);
+    static private final byte[] ROUTE = ascii(GPXParser.TAG_ROUTE);
+    static private final byte[] ROUTE_POINT = ascii(GPXParser.TAG_ROUTE_POINT);
+    static private final byte[] NAME = ascii(GPXParser.TAG_NAME);
+    static private final byte[] DESC = ascii(GPXParser.TAG_DESC);
+    static private final byte[] CMT = ascii(GPXParser.TAG_CMT);
+    static private final byte[] SRC = ascii(GPXParser.TAG_SRC);
+    static private final byte[] LINK = ascii(GPXParser.TAG_LINK);
+    static private final byte[] NUMBER = ascii(GPXParser.TAG_NUMBER);
+    static private final byte[] TYPE = ascii(GPXParser.TAG_TYPE);
+    static private final byte[] TEXT = ascii(GPXParser.TAG_TEXT);
+    static private final byte[] AUTHOR = ascii(GPXParser.TAG_AUTHOR);
+    static private final byte[] COPYRIGHT = ascii(GPXParser.TAG_COPYRIGHT);
+    static private final byte[] KEYWORDS = ascii(GPXParser.TAG_KEYWORDS);
+    static private final byte[] BOUNDS = ascii(GPXParser.TAG_BOUNDS);
+    static private final byte[] MIN_LAT = ascii(GPXParser.TAG_MIN_LAT);
+    static private final byte[] MIN_LON = ascii(GPXParser.TAG_MIN_LON);
+    static private final byte[] MAX_LAT = ascii(GPXParser.TAG_MAX_LAT);
+    static private final byte[] MAX_LON = ascii(GPXParser.TAG_MAX_LON);
+    static private final byte[] HREF = ascii(GPXParser.TAG_HREF);
+    static private final byte[] YEAR = ascii(GPXParser.TAG_YEAR);
+    static private final byte[] LICENSE = ascii(GPXParser.TAG_LICENSE);
+    static private final byte[] EMAIL = ascii(GPXParser.TAG_EMAIL);
+    static private final byte[] ID = ascii(GPXParser.TAG_ID);
+    static private final byte[] DOMAIN = ascii(GPXParser.TAG_DOMAIN);
+    static private final byte[] EXTENSIONS = ascii(GPXParser.TAG_EXTENSIONS);
+
+    static private final byte[] XMLNS = ascii("xmlns");
+    static private final byte[] XML_DECLARATION = ascii("<?xml");
+    static private final byte[] ENCODING = ascii("encoding");
+    static private final byte[] COMMENT_START = ascii("<!--");
+    static private final byte[] COMMENT_END = ascii("-->");
+    static private final byte[] CDATA_START = ascii("<![CDATA[");
+    static private final byte[] CDATA_END = ascii("]]>");
+    static private final byte[] PROCESSING_INSTRUCTION_END = ascii("?>");
+
+    static private final String XML_NAMESPACE = "http://www.w3.org/XML/1998/namespace";
+    static private final String ATTRIBUTE_TYPE = "CDATA";
+
+    /**
+     * Receives the track segments when the reader splits the document, see
+     * {@link ByteGpxParser#parseParallel(ByteBuffer, java.util.concurrent.ForkJoinPool)}.
+     */
+    interface SegmentSplitter {
+
+        /**
+         * @param segmentReader a reader on the segment alone, for {@link #readSplitSegment(GpxHandler)}
+         */
+        void onSegment(GpxByteReader segmentReader);
+    }
+
+    /**
+     * Where the reading of a growing document stopped, see {@link #readAvailable(TailState, GpxHandler)}:
+     * the containers open after the last complete element, with their start tags, and the fields of
+     * the open track, segment or route read so far.
+     */
+    static final class TailState {
+        static final int NONE = 0;
+        static final int GPX = 1;
+        static final int TRACK = 2;
+        static final int SEGMENT = 3;
+        static final int ROUTE = 4;
+        static final int ENDED = 5;
+
+        private int mContainer = NONE;
+        private final byte[][] mOpenTags = new byte[3][];
+        private Charset mCharset = StandardCharsets.UTF_8;
+        private Track.Builder mTrack;
+        private List<Extension> mSegmentExtensions;
+        private Route.Builder mRoute;
+
+        boolean isEnded() {
+            return mContainer == ENDED;
+        }
+
+        /**
+         * @return the start tags of the open containers, outermost first, to be read again on resumption
+         */
+        byte[] openTags() {
+            int length = 0;
+            for (int i = 0; i < depth(); i++) {
+                length += mOpenTags[i].length;
+            }
+            byte[] tags = new byte[length];
+            int pos = 0;
+            for (int i = 0; i < depth(); i++) {
+                System.arraycopy(mOpenTags[i], 0, tags, pos, mOpenTags[i].length);
+                pos += mOpenTags[i].length;
+            }
+            return tags;
+        }
+
+        private int depth() {
+            switch (mContainer) {
+                case GPX:
+                    return 1;
+                case TRACK:
+                case ROUTE:
+                    return 2;
+                case SEGMENT:
+                    return 3;
+                default:
+                    return 0;
+            }
+        }
+
+        private void open(int container, byte[] tag) {
+            mContainer = container;
+            mOpenTags[depth() - 1] = tag;
+        }
+
+        private void close() {
+            mOpenTags[depth() - 1] = null;
+            mContainer = mContainer == SEGMENT ? TRACK : mContainer == GPX ? ENDED : GPX;
+        }
+    }
+
+    private final ByteBuffer mBuffer;
+    // the backing array of heap buffers, read directly: ByteBuffer.get checks every index. Null for
+    // direct and mapped buffers.
+    private final byte[] mArray;
+    private final int mArrayOffset;
+    private final int mLimit;
+    private final ParseOptions mOptions;
+    private final SegmentSplitter mSplitter;
+    // the handlers of the point values, null to read point objects
+    private PointValueHandler mTrackValueHandler;
+    private PointValueHandler mRouteValueHandler;
+    private int mPos;
+    private Charset mCharset = StandardCharsets.UTF_8;
+
+    // the start tag just read: tag, qualified name, local name and attributes ranges
+    private int mTagStart;
+    private int mNameStart;
+    private int mLocalStart;
+    private int mNameEnd;
+    private int mAttributeCount;
+    private int[] mAttributes = new int[4 * 8];
+    // the start tag was self-closing, its end is consumed by the next call to nextChild()
+    private boolean mPendingEmpty;
+    // the last error was the end of the bytes, see readAvailable()
+    private boolean mEndOfInput;
+
+    // the names and namespace declaration counts of the open elements
+    private int mDepth;
+    private int[] mOpenNames = new int[2 * 16];
+    private int[] mNamespaceCounts = new int[16];
+
+    // in scope namespace declarations, as prefix / uri pairs
+    private String[] mNamespaces = new String[2 * 8];
+    private int mNamespaceCount;
+
+    // the declarations of the last captured extensions, shared with the next ones in the same scope
+    private String[] mCapturedNamespaces = new String[0];
+
+    // names decoded so far, by hash of their bytes, see name()
+    private final String[] mNames = new String[256];
+
+    private final ByteSequence mAttributeChars = new ByteSequence();
+    private final ByteSequence mTextChars = new ByteSequence();
+
+    GpxByteReader(ByteBuffer buffer, ParseOptions options) {
+        this(buffer, options, null);
+    }
+
+    GpxByteReader(ByteBuffer buffer, ParseOptions options, SegmentSplitter splitter) {
+        mBuffer = buffer;
+        mArray = buffer.hasArray() ? buffer.array() : null;
+        mArrayOffset = buffer.hasArray() ? buffer.arrayOffset() : 0;
+        mPos = buffer.position();
+        mLimit = buffer.limit();
+        mOptions = options;
+        mSplitter = splitter;
+    }
+
+    // a reader on one track segment, with the namespace declarations in scope where it was found
+    private GpxByteReader(ByteBuffer buffer, int start, int end, ParseOptions options, Charset charset,
+                          String[] namespaces, int namespaceCount) {
+        mBuffer = buffer;
+        mArray = buffer.hasArray() ? buffer.array() : null;
+        mArrayOffset = buffer.hasArray() ? buffer.arrayOffset() : 0;
+        mPos = start;
+        mLimit = end;
+        mOptions = options;
+        mSplitter = null;
+        mCharset = charset;
+        mNamespaces = namespaces;
+        mNamespaceCount = namespaceCount;
+    }
+
+    void readDocument(GpxHandler handler) throws XmlPullParserException {
+        setValueHandlers(handler);
+        readProlog();
+        if (!isName(GPX)) {
+            throw error("Expected the gpx start tag");
+        }
+        readGpx(handler);
+    }
+
+    /**
+     * Reads a track segment handed over to a {@link SegmentSplitter}, from its start tag to its end tag.
+     */
+    void readSplitSegment(GpxHandler handler) throws XmlPullParserException {
+        setValueHandlers(handler);
+        readStartTag();
+        readSegment(handler);
+    }
+
+    /**
+     * Reads the part of a growing document that is complete, resuming where the previous call stopped,
+     * see {@link GpxTailParser}. The buffer starts with the start tags of the containers open in the
+     * state, followed by the bytes appended since.
+     *
+     * @return the position after the last complete element, where the next call must resume
+     */
+    int readAvailable(TailState state, GpxHandler handler) throws XmlPullParserException {
+        setValueHandlers(handler);
+        mCharset = state.mCharset;
+        for (int i = 0; i < state.depth(); i++) {
+            readStartTag();
+        }
+        int checkpoint = mPos;
+        try {
+            // every step either completes, handler calls included, or stops at the end of the bytes
+            while (state.mContainer != TailState.ENDED) {
+                readTailStep(state, handler);
+                checkpoint = mPos;
+            }
+        } catch (XmlPullParserException e) {
+            if (!mEndOfInput) {
+                throw e;
+            }
+        }
+        return checkpoint;
+    }
+
+    private void setValueHandlers(GpxHandler handler) {
+        mTrackValueHandler = PointValueHandler.valueHandler(handler, false);
+        mRouteValueHandler = PointValueHandler.valueHandler(handler, true);
+    }
+
+    private void readTailStep(TailState state, GpxHandler handler) throws XmlPullParserException {
+        if (state.mContainer == TailState.NONE) {
+            readProlog();
+            if (!isName(GPX)) {
+                throw error("Expected the gpx start tag");
+            }
+            state.mCharset = mCharset;
+            state.open(TailState.GPX, copy(mTagStart, mPos));
+            handler.onGpxStart(readGpxStart());
+            return;
+        }
+        if (!nextChild()) {
+            switch (state.mContainer) {
+                case TailState.GPX:
+                    handler.onGpxEnd();
+                    break;
+                case TailState.TRACK:
+                    handler.onTrackEnd(endTrack(state.mTrack));
+                    break;
+                case TailState.SEGMENT:
+                    handler.onSegmentEnd(endSegment(state.mSegmentExtensions));
+                    break;
+                case TailState.ROUTE:
+                    handler.onRouteEnd(endRoute(state.mRoute));
+                    break;
+            }
+            state.close();
+            return;
+        }
+        switch (state.mContainer) {
+            case TailState.GPX:
+                if (isName(ROUTE) && !mOptions.isSkipRoutes()) {
+                    state.open(TailState.ROUTE, copy(mTagStart, mPos));
+                    state.mRoute = new Route.Builder();
+                    handler.onRouteStart();
+                } else if (isName(TRACK)) {
+                    state.open(TailState.TRACK, copy(mTagStart, mPos));
+                    state.mTrack = new Track.Builder();
+                    handler.onTrackStart();
+                } else {
+                    readGpxChild(handler);
+                }
+                break;
+            case TailState.TRACK:
+                if (isName(SEGMENT)) {
+                    state.open(TailState.SEGMENT, copy(mTagStart, mPos));
+                    state.mSegmentExtensions = new ArrayList<>();
+                    handler.onSegmentStart();
+                } else if (!readTrackField(state.mTrack)) {
+                    skip();
+                }
+                break;
+            case TailState.SEGMENT:
+                readSegmentChild(handler, state.mSegmentExtensions);
+                break;
+            case TailState.ROUTE:
+                readRouteChild(handler, state.mRoute);
+                break;
+        }
+    }
+
+    // GPX structure, see the corresponding methods in GPXParser
+
+    private void readGpx(GpxHandler handler) throws XmlPullParserException {
+        handler.onGpxStart(readGpxStart());
+        while (nextChild()) {
+            if (isName(ROUTE) && !mOptions.isSkipRoutes()) {
+                readRoute(handler);
+            } else if (isName(TRACK)) {
+                readTrack(handler);
+            } else {
+                readGpxChild(handler);
+            }
+        }
+        handler.onGpxEnd();
+    }
+
+    private Gpx readGpxStart() throws XmlPullParserException {
+        return new Gpx.Builder()
+                .setVersion(attributeString(VERSION))
+                .setCreator(attributeString(CREATOR))
+                .setAttributes(readAttributes())
+                .build();
+    }
+
+    // The children of gpx other than routes and tracks.
+    private void readGpxChild(GpxHandler handler) throws XmlPullParserException {
+        if (isName(METADATA)) {
+            handler.onMetadata(readMetadata());
+        } else if (isName(WAY_POINT) && !mOptions.isSkipWayPoints()) {
+            handler.onWayPoint((WayPoint) readPoint(new WayPoint.Builder()));
+        } else {
+            skip();
+        }
+    }
+
+    private void readTrack(GpxHandler handler) throws XmlPullParserException {
+        Track.Builder trackBuilder = new Track.Builder();
+        handler.onTrackStart();
+        while (nextChild()) {
+            if (isName(SEGMENT)) {
+                if (mSplitter != null) {
+                    splitSegment();
+                } else {
+                    readSegment(handler);
+                }
+            } else if (!readTrackField(trackBuilder)) {
+                skip();
+            }
+        }
+        handler.onTrackEnd(endTrack(trackBuilder));
+    }
+
+    // Reads the current element into the builder if it is a field of the track, returns false otherwise.
+    private boolean readTrackField(Track.Builder trackBuilder) throws XmlPullParserException {
+        if (isName(NAME)) {
+            trackBuilder.setTrackName(readString());
+        } else if (isName(DESC)) {
+            trackBuilder.setTrackDesc(readString());
+        } else if (isName(CMT)) {
+            trackBuilder.setTrackCmt(readString());
+        } else if (isName(SRC)) {
+            trackBuilder.setTrackSrc(readString());
+        } else if (isName(LINK)) {
+            trackBuilder.setTrackLink(readLink());
+        } else if (isName(NUMBER)) {
+            trackBuilder.setTrackNumber(Integer.valueOf(readString()));
+        } else if (isName(TYPE)) {
+            trackBuilder.setTrackType(readString());
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    static private Track endTrack(Track.Builder trackBuilder) {
+        return trackBuilder
+                .setTrackSegments(Collections.emptyList())
+                .build();
+    }
+
+    private void readSegment(GpxHandler handler) throws XmlPullParserException {
+        List<Extension> extensions = new ArrayList<>();
+        handler.onSegmentStart();
+        while (nextChild()) {
+            readSegmentChild(handler, extensions);
+        }
+        handler.onSegmentEnd(endSegment(extensions));
+    }
+
+    private void readSegmentChild(GpxHandler handler, List<Extension> extensions) throws XmlPullParserException {
+        if (isName(TRACK_POINT) && mTrackValueHandler != null) {
+            readPointValues(mTrackValueHandler);
+        } else if (isName(TRACK_POINT)) {
+            handler.onTrackPoint((TrackPoint) readPoint(new TrackPoint.Builder()));
+        } else if (isName(EXTENSIONS) && !mOptions.isSkipExtensions()) {
+            extensions.addAll(readExtensions());
+        } else {
+            skip();
+        }
+    }
+
+    static private TrackSegment endSegment(List<Extension> extensions) {
+        return new TrackSegment.Builder()
+                .setTrackPoints(Collections.emptyList())
+                .setExtensions(extensions)
+                .build();
+    }
+
+    // Hands the segment over to the splitter, only looking for its end tag.
+    private void splitSegment() throws XmlPullParserException {
+        int start = mTagStart;
+        if (mPendingEmpty) {
+            nextChild();
+        } else {
+            skipToEndTag();
+        }
+        mSplitter.onSegment(new GpxByteReader(mBuffer, start, mPos, mOptions, mCharset,
+                mNamespaces.clone(), mNamespaceCount));
+    }
+
+    private void readRoute(GpxHandler handler) throws XmlPullParserException {
+        Route.Builder routeBuilder = new Route.Builder();
+        handler.onRouteStart();
+        while (nextChild()) {
+            readRouteChild(handler, routeBuilder);
+        }
+        handler.onRouteEnd(endRoute(routeBuilder));
+    }
+
+    private void readRouteChild(GpxHandler handler, Route.Builder routeBuilder) throws XmlPullParserException {
+        if (isName(ROUTE_POINT) && mRouteValueHandler != null) {
+            readPointValues(mRouteValueHandler);
+        } else if (isName(ROUTE_POINT)) {
+            handler.onRoutePoint((RoutePoint) readPoint(new RoutePoint.Builder()));
+        } else if (isName(NAME)) {
+            routeBuilder.setRouteName(readString());
+        } else if (isName(DESC)) {
+            routeBuilder.setRouteDesc(readString());
+        } else if (isName(CMT)) {
+            routeBuilder.setRouteCmt(readString());
+        } else if (isName(SRC)) {
+            routeBuilder.setRouteSrc(readString());
+        } else if (isName(LINK)) {
+            routeBuilder.setRouteLink(readLink());
+        } else if (isName(NUMBER)) {
+            routeBuilder.setRouteNumber(Integer.valueOf(readString()));
+        } else if (isName(TYPE)) {
+            routeBuilder.setRouteType(readString());
+        } else {
+            skip();
+        }
+    }
+
+    static private Route endRoute(Route.Builder routeBuilder) {
+        return routeBuilder
+                .setRoutePoints(Collections.emptyList())
+                .build();
+    }
+
+    private Point readPoint(Point.Builder builder) throws XmlPullParserException {
+        if (mOptions.includesPointField(PointField.LATITUDE)) {
+            builder.setLatitude(readDouble(attributeValue(LAT)));
+        }
+        if (mOptions.includesPointField(PointField.LONGITUDE)) {
+            builder.setLongitude(readDouble(attributeValue(LON)));
+        }
+        // elements left out by the options fall through to skip()
+        while (nextChild()) {
+            if (isName(ELEVATION) && mOptions.includesPointField(PointField.ELEVATION)) {
+                builder.setElevation(readDouble(readText()));
+            } else if (isName(TIME) && mOptions.includesPointField(PointField.TIME)) {
+                builder.setTime(readTime());
+            } else if (isName(NAME) && mOptions.includesPointField(PointField.NAME)) {
+                builder.setName(readString());
+            } else if (isName(DESC) && mOptions.includesPointField(PointField.DESC)) {
+                builder.setDesc(readString());
+            } else if (isName(TYPE) && mOptions.includesPointField(PointField.TYPE)) {
+                builder.setType(readString());
+            } else if (isName(EXTENSIONS) && !mOptions.isSkipExtensions()) {
+                if (mOptions.hasExtensionDecoders()) {
+                    readPointExtensions(builder);
+                } else if (mOptions.isLazyExtensions()) {
+                    builder.setRawExtensions(captureExtensions());
+                } else {
+                    builder.setExtensions(readExtensions());
+                }
+            } else if (isName(SYM) && mOptions.includesPointField(PointField.SYM)) {
+                builder.setSym(readString());
+            } else if (isName(CMT) && mOptions.includesPointField(PointField.CMT)) {
+                builder.setCmt(readString());
+            } else {
+                skip();
+            }
+        }
+        return builder.build();
+    }
+
+    private void readPointValues(PointValueHandler handler) throws XmlPullParserException {
+        double latitude = mOptions.includesPointField(PointField.LATITUDE)
+                ? readPrimitiveDouble(attributeValue(LAT)) : Double.NaN;
+        double longitude = mOptions.includesPointField(PointField.LONGITUDE)
+                ? readPrimitiveDouble(attributeValue(LON)) : Double.NaN;
+        double elevation = Double.NaN;
+        long time = TrackSegment.NO_TIME;
+        while (nextChild()) {
+            if (isName(ELEVATION) && mOptions.includesPointField(PointField.ELEVATION)) {
+                elevation = readPrimitiveDouble(readText());
+            } else if (isName(TIME) && mOptions.includesPointField(PointField.TIME)) {
+                CharSequence text = readText();
+                time = GpxTime.parseFast(text, 0, text.length());
+                if (time == GpxTime.NOT_PARSED) {
+                    time = GpxTime.parseMillis(text.toString());
+                }
+            } else {
+                skip();
+            }
+        }
+        handler.onPointValues(latitude, longitude, elevation, time);
+    }
+
+    private Metadata readMetadata() throws XmlPullParserException {
+        Metadata.Builder metadataBuilder = new Metadata.Builder();
+        while (nextChild()) {
+            if (isName(NAME)) {
+                metadataBuilder.setName(readString());
+            } else if (isName(DESC)) {
+                metadataBuilder.setDesc(readString());
+            } else if (isName(AUTHOR)) {
+                metadataBuilder.setAuthor(readAuthor());
+            } else if (isName(COPYRIGHT)) {
+                metadataBuilder.setCopyright(readCopyright());
+            } else if (isName(LINK)) {
+                metadataBuilder.setLink(readLink());
+            } else if (isName(TIME)) {
+                metadataBuilder.setTime(readTime());
+            } else if (isName(KEYWORDS)) {
+                metadataBuilder.setKeywords(readString());
+            } else if (isName(BOUNDS)) {
+                metadataBuilder.setBounds(readBounds());
+            } else {
+                skip();
+            }
+        }
+        return metadataBuilder.build();
+    }
+
+    private Author readAuthor() throws XmlPullParserException {
+        Author.Builder authorBuilder = new Author.Builder();
+        while (nextChild()) {
+            if (isName(NAME)) {
+                authorBuilder.setName(readString());
+            } else if (isName(EMAIL)) {
+                authorBuilder.setEmail(readEmail());
+            } else if (isName(LINK)) {
+                authorBuilder.setLink(readLink());
+            } else {
+                skip();
+            }
+        }
+        return authorBuilder.build();
+    }
+
+    private Email readEmail() throws XmlPullParserException {
+        Email email = new Email.Builder()
+                .setId(attributeString(ID))
+                .setDomain(attributeString(DOMAIN))
+                .build();
+        skip();
+        return email;
+    }
+
+    private Copyright readCopyright() throws XmlPullParserException {
+        Copyright.Builder copyrightBuilder = new Copyright.Builder();
+        copyrightBuilder.setAuthor(attributeString(AUTHOR));
+        while (nextChild()) {
+            if (isName(YEAR)) {
+                copyrightBuilder.setYear(GPXParser.parseYear(readString()));
+            } else if (isName(LICENSE)) {
+                copyrightBuilder.setLicense(readString());
+            } else {
+                skip();
+            }
+        }
+        return copyrightBuilder.build();
+    }
+
+    private Link readLink() throws XmlPullParserException {
+        Link.Builder linkBuilder = new Link.Builder();
+        linkBuilder.setLinkHref(attributeString(HREF));
+        while (nextChild()) {
+            if (isName(TEXT)) {
+                linkBuilder.setLinkText(readString());
+            } else if (isName(TYPE)) {
+                linkBuilder.setLinkType(readString());
+            } else {
+                skip();
+            }
+        }
+        return linkBuilder.build();
+    }
+
+    private Bounds readBounds() throws XmlPullParserException {
+        Bounds bounds = new Bounds.Builder()
+                .setMinLat(readDouble(attributeValue(MIN_LAT)))
+                .setMinLon(readDouble(attributeValue(MIN_LON)))
+                .setMaxLat(readDouble(attributeValue(MAX_LAT)))
+                .setMaxLon(readDouble(attributeValue(MAX_LON)))
+                .build();
+        skip();
+        return bounds;
+    }
+
+    private List<Extension> readExtensions() throws XmlPullParserException {
+        List<Extension> extensions = new ArrayList<>();
+        while (nextChild()) {
+            extensions.add(readExtension());
+        }
+        return extensions;
+    }
+
+    // Copies the extensions element as it is, only looking for its end tag.
+    private CapturedExtensions captureExtensions() throws XmlPullParserException {
+        int start = mTagStart;
+        int contentStart = mPos;
+        String[] namespaces = capturedNamespaces();
+        int contentEnd;
+        if (mPendingEmpty) {
+            nextChild();
+            contentEnd = contentStart;
+        } else {
+            skipToEndTag();
+            contentEnd = mPos;
+            while (byteAt(contentEnd - 1) != '<') {
+                contentEnd--;
+            }
+            contentEnd--;
+        }
+        byte[] bytes = copy(start, mPos);
+        return new CapturedExtensions(bytes, contentStart - start, contentEnd - start, mCharset, namespaces);
+    }
+
+    private String[] capturedNamespaces() {
+        String[] namespaces = mCapturedNamespaces;
+        boolean same = namespaces.length == 2 * mNamespaceCount;
+        for (int i = 0; same && i < namespaces.length; i++) {
+            same = namespaces[i].equals(mNamespaces[i]);
+        }
+        if (!same) {
+            namespaces = Arrays.copyOf(mNamespaces, 2 * mNamespaceCount);
+            mCapturedNamespaces = namespaces;
+        }
+        return namespaces;
+    }
+
+    /**
+     * Reads extensions copied by a reader, with the namespace declarations in scope where they were found.
+     */
+    static List<Extension> readCapturedExtensions(byte[] bytes, Charset charset, String[] namespaces)
+            throws XmlPullParserException {
+        GpxByteReader reader = new GpxByteReader(ByteBuffer.wrap(bytes), 0, bytes.length, ParseOptions.DEFAULT,
+                charset, Arrays.copyOf(namespaces, namespaces.length + 2 * 4), namespaces.length / 2);
+        if (!reader.nextChild()) {
+            throw reader.error("Expected the extensions start tag");
+        }
+        return reader.readExtensions();
+    }
+
+    // Like readExtensions, with the elements of the namespaces that have a decoder decoded into typed objects.
+    private void readPointExtensions(Point.Builder builder) throws XmlPullParserException {
+        List<Extension> extensions = new ArrayList<>();
+        List<Object> decodedExtensions = new ArrayList<>();
+        ExtensionReader extensionReader = null;
+        while (nextChild()) {
+            ExtensionDecoder decoder = mOptions.getExtensionDecoder(resolveNamespace(prefix()));
+            if (decoder == null) {
+                extensions.add(readExtension());
+                continue;
+            }
+            if (extensionReader == null) {
+                extensionReader = new ByteExtensionReader();
+            }
+            Object decoded;
+            try {
+                decoded = decoder.decode(extensionReader);
+            } catch (IOException e) {
+                throw new XmlPullParserException(e.getMessage(), null, e);
+            }
+            if (decoded != null) {
+                decodedExtensions.add(decoded);
+            }
+        }
+        builder.setExtensions(extensions);
+        builder.setDecodedExtensions(decodedExtensions);
+    }
+
+    // Generic element: like GPXParser.readExtension, the value is the text before the first child.
+    private Extension readExtension() throws XmlPullParserException {
+        String prefix = prefix();
+        Extension.Builder extensionBuilder = new Extension.Builder()
+                .setName(localName())
+                .setPrefix(prefix)
+                .setNamespace(resolveNamespace(prefix))
+                .setAttributes(readAttributes())
+                .setValue(mPendingEmpty ? "" : readLeadingText());
+
+        List<Extension> children = null;
+        while (nextChild()) {
+            if (children == null) {
+                children = new ArrayList<>();
+            }
+            children.add(readExtension());
+        }
+        return extensionBuilder
+                .setChildren(children != null ? children : Collections.emptyList())
+                .build();
+    }
+
+    // values
+
+    private String readString() throws XmlPullParserException {
+        return readText().toString();
+    }
+
+    private Double readDouble(CharSequence value) {
+        return readPrimitiveDouble(value);
+    }
+
+    private double readPrimitiveDouble(CharSequence value) {
+        if (value != null) {
+            double fast = GpxNumber.parseFast(value, 0, value.length());
+            if (!Double.isNaN(fast)) {
+                return fast;
+            }
+        }
+        return GpxNumber.parseDouble(value != null ? value.toString() : null);
+    }
+
+    private DateTime readTime() throws XmlPullParserException {
+        CharSequence text = readText();
+        long millis = GpxTime.parseFast(text, 0, text.length());
+        return millis != GpxTime.NOT_PARSED ? new DateTime(millis) : GpxTime.parseDateTime(text.toString());
+    }
+
+    /**
+     * Reads the text content of the current element and consumes its end tag. Plain content is
+     * returned as a view on the bytes, valid until the next read.
+     */
+    private CharSequence readText() throws XmlPullParserException {
+        if (mPendingEmpty) {
+            nextChild();
+            return "";
+        }
+        int start = mPos;
+        int pos = start;
+        boolean plain = true;
+        while (pos < mLimit) {
+            byte b = byteAt(pos);
+            if (b == '<') {
+                break;
+            }
+            if (b == '&' || b == '\r') {
+                plain = false;
+            }
+            pos++;
+        }
+        if (plain && pos + 1 < mLimit && byteAt(pos + 1) == '/') {
+            readEndTag(pos);
+            return mTextChars.set(mBuffer, start, pos, mCharset);
+        }
+
+        // entities, comments or CDATA sections
+        String text = readLeadingText();
+        if (nextChild()) {
+            throw error("Unexpected start tag in a text element");
+        }
+        return text;
+    }
+
+    // Reads the text up to the next start or end tag, skipping comments and processing instructions.
+    private String readLeadingText() throws XmlPullParserException {
+        StringBuilder text = new StringBuilder();
+        int pos = mPos;
+        while (true) {
+            int lt = indexOf((byte) '<', pos);
+            if (lt < 0 || lt + 1 >= mLimit) {
+                throw eof();
+            }
+            appendText(text, pos, lt);
+            mPos = lt;
+            byte next = byteAt(lt + 1);
+            if (startsWith(lt, CDATA_START)) {
+                int end = indexOf(CDATA_END, lt + CDATA_START.length);
+                if (end < 0) {
+                    throw eof();
+                }
+                text.append(decode(lt + CDATA_START.length, end));
+                pos = end + CDATA_END.length;
+            } else if (next == '!' || next == '?') {
+                skipMarkup();
+                pos = mPos;
+            } else {
+                return text.toString();
+            }
+        }
+    }
+
+    // tokenizer
+
+    // Skips the byte order mark, XML declaration, comments and doctype, then reads the root start tag.
+    private void readProlog() throws XmlPullParserException {
+        if (mLimit - mPos >= 3 && byteAt(mPos) == (byte) 0xEF && byteAt(mPos + 1) == (byte) 0xBB
+                && byteAt(mPos + 2) == (byte) 0xBF) {
+            mPos += 3;
+        } else if (mLimit - mPos >= 2 && (byteAt(mPos) == (byte) 0xFE || byteAt(mPos) == (byte) 0xFF)) {
+            throw error("UTF-16 documents are not supported");
+        }
+        while (true) {
+            int lt = indexOf((byte) '<', mPos);
+            if (lt < 0 || lt + 1 >= mLimit) {
+                throw eof();
+            }
+            mPos = lt;
+            if (startsWith(lt, XML_DECLARATION)) {
+                readXmlDeclaration();
+            } else if (byteAt(lt + 1) == '!' || byteAt(lt + 1) == '?') {
+                skipMarkup();
+            } else {
+                readStartTag();
+                return;
+            }
+        }
+    }
+
+    private void readXmlDeclaration() throws XmlPullParserException {
+        int end = indexOf(PROCESSING_INSTRUCTION_END, mPos);
+        if (end < 0) {
+            throw eof();
+        }
+        int encoding = indexOf(ENCODING, mPos);
+        if (encoding >= 0 && encoding < end) {
+            int quote = encoding + ENCODING.length;
+            while (quote < end && byteAt(quote) != '"' && byteAt(quote) != '\'') {
+                quote++;
+            }
+            int close = quote < end ? indexOf(byteAt(quote), quote + 1) : -1;
+            if (close < 0 || close > end) {
+                throw error("Malformed XML declaration");
+            }
+            String name = decode(quote + 1, close);
+            try {
+                mCharset = Charset.forName(name);
+            } catch (IllegalArgumentException e) {
+                throw error("Unsupported encoding " + name);
+            }
+            if (!Arrays.equals("<gpx/>".getBytes(mCharset), ascii("<gpx/>"))) {
+                throw error("Unsupported encoding " + name);
+            }
+        }
+        mPos = end + PROCESSING_INSTRUCTION_END.length;
+    }
+
+    // Skips a comment, CDATA section, doctype or processing instruction starting at mPos.
+    private void skipMarkup() throws XmlPullParserException {
+        int end;
+        if (startsWith(mPos, COMMENT_START)) {
+            end = indexOf(COMMENT_END, mPos + COMMENT_START.length);
+            mPos = end + COMMENT_END.length;
+        } else if (startsWith(mPos, CDATA_START)) {
+            end = indexOf(CDATA_END, mPos + CDATA_START.length);
+            mPos = end + CDATA_END.length;
+        } else if (byteAt(mPos + 1) == '?') {
+            end = indexOf(PROCESSING_INSTRUCTION_END, mPos + 2);
+            mPos = end + PROCESSING_INSTRUCTION_END.length;
+        } else {
+            // doctype, possibly with an internal subset in brackets
+            int brackets = 0;
+            end = -1;
+            for (int pos = mPos + 2; pos < mLimit; pos++) {
+                byte b = byteAt(pos);
+                if (b == '[') {
+                    brackets++;
+                } else if (b == ']') {
+                    brackets--;
+                } else if (b == '>' && brackets == 0) {
+                    end = pos;
+                    break;
+                }
+            }
+            mPos = end + 1;
+        }
+        if (end < 0) {
+            throw eof();
+        }
+    }
+
+    /**
+     * Moves to the next child of the current element. Returns true when positioned on the start tag of
+     * a child, which must then be read or skipped entirely, false once the end tag of the current
+     * element has been consumed. Text, comments and processing instructions in between are ignored.
+     */
+    private boolean nextChild() throws XmlPullParserException {
+        if (mPendingEmpty) {
+            mPendingEmpty = false;
+            popElement();
+            return false;
+        }
+        while (true) {
+            int lt = indexOf((byte) '<', mPos);
+            if (lt < 0 || lt + 1 >= mLimit) {
+                throw eof();
+            }
+            mPos = lt;
+            byte next = byteAt(lt + 1);
+            if (next == '/') {
+                readEndTag(lt);
+                return false;
+            } else if (next == '!' || next == '?') {
+                skipMarkup();
+            } else {
+                readStartTag();
+                return true;
+            }
+        }
+    }
+
+    private void skip() throws XmlPullParserException {
+        while (nextChild()) {
+            skip();
+        }
+    }
+
+    // Consumes everything up to and including the end tag of the current element, without tokenizing it.
+    private void skipToEndTag() throws XmlPullParserException {
+        int nameStart = mOpenNames[2 * (mDepth - 1)];
+        int nameLength = mOpenNames[2 * (mDepth - 1) + 1] - nameStart;
+        int pos = mPos;
+        while (true) {
+            int lt = indexOf((byte) '<', pos);
+            if (lt < 0 || lt + nameLength + 2 >= mLimit) {
+                throw eof();
+            }
+            mPos = lt;
+            byte next = byteAt(lt + 1);
+            if (next == '!') {
+                skipMarkup();
+                pos = mPos;
+            } else if (next == '/' && isEndOfName(lt + 2 + nameLength) && regionMatches(lt + 2, nameStart, nameLength)) {
+                readEndTag(lt);
+                return;
+            } else {
+                pos = lt + 1;
+            }
+        }
+    }
+
+    private void readStartTag() throws XmlPullParserException {
+        mTagStart = mPos;
+        int pos = mPos + 1;
+        mNameStart = pos;
+        mLocalStart = pos;
+        while (true) {
+            if (pos >= mLimit) {
+                throw eof();
+            }
+            byte b = byteAt(pos);
+            if (b == ':') {
+                mLocalStart = pos + 1;
+            } else if (isWhitespace(b) || b == '>' || b == '/') {
+                break;
+            }
+            pos++;
+        }
+        mNameEnd = pos;
+        if (mNameEnd == mNameStart) {
+            throw error("Missing element name");
+        }
+        pushElement();
+
+        mAttributeCount = 0;
+        while (true) {
+            pos = skipWhitespace(pos);
+            if (pos + 1 >= mLimit) {
+                throw eof();
+            }
+            byte b = byteAt(pos);
+            if (b == '>') {
+                mPendingEmpty = false;
+                mPos = pos + 1;
+                return;
+            }
+            if (b == '/') {
+                if (byteAt(pos + 1) != '>') {
+                    throw error("Expected '>' after '/'");
+                }
+                mPendingEmpty = true;
+                mPos = pos + 2;
+                return;
+            }
+
+            int nameStart = pos;
+            while (pos < mLimit && !isWhitespace(b = byteAt(pos)) && b != '=') {
+                pos++;
+            }
+            int nameEnd = pos;
+            pos = skipWhitespace(pos);
+            if (pos >= mLimit) {
+                throw eof();
+            }
+            if (byteAt(pos) != '=') {
+                throw error("Expected '=' after the attribute name");
+            }
+            pos = skipWhitespace(pos + 1);
+            if (pos >= mLimit) {
+                throw eof();
+            }
+            byte quote = byteAt(pos);
+            if (quote != '"' && quote != '\'') {
+                throw error("Expected a quoted attribute value");
+            }
+            int valueStart = pos + 1;
+            int valueEnd = indexOf(quote, valueStart);
+            if (valueEnd < 0) {
+                throw eof();
+            }
+            pos = valueEnd + 1;
+
+            if (regionEquals(nameStart, nameEnd, XMLNS)) {
+                declareNamespace("", GpxStrings.intern(attributeString(valueStart, valueEnd)));
+            } else if (nameEnd - nameStart > XMLNS.length && startsWith(nameStart, XMLNS)
+                    && byteAt(nameStart + XMLNS.length) == ':') {
+                declareNamespace(name(nameStart + XMLNS.length + 1, nameEnd),
+                        GpxStrings.intern(attributeString(valueStart, valueEnd)));
+            } else {
+                if (mAttributes.length == mAttributeCount * 4) {
+                    mAttributes = Arrays.copyOf(mAttributes, mAttributes.length * 2);
+                }
+                int i = mAttributeCount * 4;
+                mAttributes[i] = nameStart;
+                mAttributes[i + 1] = nameEnd;
+                mAttributes[i + 2] = valueStart;
+                mAttributes[i + 3] = valueEnd;
+                mAttributeCount++;
+            }
+        }
+    }
+
+    private void readEndTag(int lt) throws XmlPullParserException {
+        int nameStart = lt + 2;
+        int gt = indexOf((byte) '>', nameStart);
+        if (gt < 0) {
+            throw eof();
+        }
+        int nameEnd = nameStart;
+        while (nameEnd < gt && !isWhitespace(byteAt(nameEnd))) {
+            nameEnd++;
+        }
+        if (mDepth == 0) {
+            throw error("Unexpected end tag");
+        }
+        int openStart = mOpenNames[2 * (mDepth - 1)];
+        int openEnd = mOpenNames[2 * (mDepth - 1) + 1];
+        if (nameEnd - nameStart != openEnd - openStart) {
+            throw error("Expected the end tag of " + decode(openStart, openEnd));
+        }
+        for (int i = 0; i < nameEnd - nameStart; i++) {
+            if (byteAt(nameStart + i) != byteAt(openStart + i)) {
+                throw error("Expected the end tag of " + decode(openStart, openEnd));
+            }
+        }
+        mPos = gt + 1;
+        popElement();
+    }
+
+    private void pushElement() {
+        if (mDepth == mNamespaceCounts.length) {
+            mNamespaceCounts = Arrays.copyOf(mNamespaceCounts, mDepth * 2);
+            mOpenNames = Arrays.copyOf(mOpenNames, mDepth * 4);
+        }
+        mOpenNames[2 * mDepth] = mNameStart;
+        mOpenNames[2 * mDepth + 1] = mNameEnd;
+        mNamespaceCounts[mDepth] = mNamespaceCount;
+        mDepth++;
+    }
+
+    private void popElement() {
+        mDepth--;
+        mNamespaceCount = mNamespaceCounts[mDepth];
+    }
+
+    // names, attributes and namespaces of the current start tag
+
+    private boolean isName(byte[] name) {
+        return regionEquals(mLocalStart, mNameEnd, name);
+    }
+
+    private String localName() {
+        return name(mLocalStart, mNameEnd);
+    }
+
+    private String prefix() {
+        return mLocalStart > mNameStart ? name(mNameStart, mLocalStart - 1) : null;
+    }
+
+    // Decodes a name, returning the same String as for the previous occurrence of the same bytes.
+    private String name(int start, int end) {
+        int hash = end - start;
+        for (int pos = start; pos < end; pos++) {
+            hash = 31 * hash + byteAt(pos);
+        }
+        int slot = (hash ^ (hash >>> 8)) & (mNames.length - 1);
+        String name = mNames[slot];
+        if (name == null || !nameEquals(start, end, name)) {
+            name = GpxStrings.intern(decode(start, end));
+            mNames[slot] = name;
+        }
+        return name;
+    }
+
+    // Non-ASCII bytes never equal a char, such names are decoded every time.
+    private boolean nameEquals(int start, int end, String name) {
+        if (name.length() != end - start) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (byteAt(start + i) != name.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void declareNamespace(String prefix, String uri) {
+        if (mNamespaces.length == mNamespaceCount * 2) {
+            mNamespaces = Arrays.copyOf(mNamespaces, mNamespaces.length * 2);
+        }
+        mNamespaces[2 * mNamespaceCount] = prefix;
+        mNamespaces[2 * mNamespaceCount + 1] = uri;
+        mNamespaceCount++;
+    }
+
+    // The namespace bound to the prefix, the default namespace for a null prefix.
+    private String resolveNamespace(String prefix) {
+        String key = prefix != null ? prefix : "";
+        if (key.equals("xml")) {
+            return XML_NAMESPACE;
+        }
+        for (int i = mNamespaceCount - 1; i >= 0; i--) {
+            if (mNamespaces[2 * i].equals(key)) {
+                return mNamespaces[2 * i + 1];
+            }
+        }
+        return null;
+    }
+
+    // The value of the attribute with the given local name in any namespace, a view when possible.
+    private CharSequence attributeValue(byte[] localName) throws XmlPullParserException {
+        for (int i = 0; i < mAttributeCount * 4; i += 4) {
+            int nameStart = mAttributes[i];
+            int nameEnd = mAttributes[i + 1];
+            int localStart = nameStart;
+            for (int pos = nameStart; pos < nameEnd; pos++) {
+                if (byteAt(pos) == ':') {
+                    localStart = pos + 1;
+                }
+            }
+            if (regionEquals(localStart, nameEnd, localName)) {
+                int valueStart = mAttributes[i + 2];
+                int valueEnd = mAttributes[i + 3];
+                for (int pos = valueStart; pos < valueEnd; pos++) {
+                    byte b = byteAt(pos);
+                    if (b == '&' || b == '\r' || b == '\n' || b == '\t') {
+                        return attributeString(valueStart, valueEnd);
+                    }
+                }
+                return mAttributeChars.set(mBuffer, valueStart, valueEnd, mCharset);
+            }
+        }
+        return null;
+    }
+
+    private String attributeString(byte[] localName) throws XmlPullParserException {
+        CharSequence value = attributeValue(localName);
+        return value != null ? value.toString() : null;
+    }
+
+    private List<XMLAttribute> readAttributes() throws XmlPullParserException {
+        if (mAttributeCount == 0) {
+            return Collections.emptyList();
+        }
+        List<XMLAttribute> attributes = new ArrayList<>(mAttributeCount);
+        for (int i = 0; i < mAttributeCount * 4; i += 4) {
+            int nameStart = mAttributes[i];
+            int nameEnd = mAttributes[i + 1];
+            int colon = -1;
+            for (int pos = nameStart; pos < nameEnd; pos++) {
+                if (byteAt(pos) == ':') {
+                    colon = pos;
+                }
+            }
+            String prefix = colon >= 0 ? name(nameStart, colon) : null;
+            attributes.add(new XMLAttribute.Builder()
+                    .setName(name(colon >= 0 ? colon + 1 : nameStart, nameEnd))
+                    .setValue(attributeString(mAttributes[i + 2], mAttributes[i + 3]))
+                    .setType(ATTRIBUTE_TYPE)
+                    .setPrefix(prefix)
+                    .setNamespace(prefix != null ? resolveNamespace(prefix) : "")
+                    .build());
+        }
+        return attributes;
+    }
+
+    // Decodes an attribute value: white space normalized to spaces, entities replaced.
+    private String attributeString(int start, int end) throws XmlPullParserException {
+        String value = decode(start, end);
+        if (value.indexOf('\r') >= 0) {
+            value = value.replace("\r\n", "\n").replace('\r', '\n');
+        }
+        return unescape(value.replace('\n', ' ').replace('\t', ' '));
+    }
+
+    private void appendText(StringBuilder text, int start, int end) throws XmlPullParserException {
+        if (start == end) {
+            return;
+        }
+        String value = decode(start, end);
+        if (value.indexOf('\r') >= 0) {
+            value = value.replace("\r\n", "\n").replace('\r', '\n');
+        }
+        text.append(unescape(value));
+    }
+
+    private String unescape(String value) throws XmlPullParserException {
+        int amp = value.indexOf('&');
+        if (amp < 0) {
+            return value;
+        }
+        StringBuilder result = new StringBuilder(value.length());
+        int pos = 0;
+        while (amp >= 0) {
+            int semicolon = value.indexOf(';', amp);
+            if (semicolon < 0) {
+                throw error("Unterminated entity reference");
+            }
+            result.append(value, pos, amp);
+            String entity = value.substring(amp + 1, semicolon);
+            switch (entity) {
+                case "lt":
+                    result.append('<');
+                    break;
+                case "gt":
+                    result.append('>');
+                    break;
+                case "amp":
+                    result.append('&');
+                    break;
+                case "quot":
+                    result.append('"');
+                    break;
+                case "apos":
+                    result.append('\'');
+                    break;
+                default:
+                    try {
+                        if (entity.startsWith("#x")) {
+                            result.appendCodePoint(Integer.parseInt(entity.substring(2), 16));
+                        } else if (entity.startsWith("#")) {
+                            result.appendCodePoint(Integer.parseInt(entity.substring(1)));
+                        } else {
+                            throw error("Unknown entity &" + entity + ";");
+                        }
+                    } catch (IllegalArgumentException e) {
+                        throw error("Invalid character reference &" + entity + ";");
+                    }
+                    break;
+            }
+            pos = semicolon + 1;
+            amp = value.indexOf('&', pos);
+        }
+        return result.append(value, pos, value.length()).toString();
+    }
+
+    /**
+     * The {@link ExtensionReader} handed to decoders, on top of the tokenizer. Texts are decoded in
+     * place for numbers.
+     */
+    private class ByteExtensionReader implements ExtensionReader {
+
+        @Override
+        public String getName() {
+            return localName();
+        }
+
+        @Override
+        public String getNamespace() {
+            return resolveNamespace(prefix());
+        }
+
+        @Override
+        public String getAttributeValue(String name) throws XmlPullParserException {
+            return attributeString(ascii(name));
+        }
+
+        @Override
+        public boolean nextChild() throws XmlPullParserException {
+            return GpxByteReader.this.nextChild();
+        }
+
+        @Override
+        public String readText() throws XmlPullParserException {
+            return GpxByteReader.this.readText().toString();
+        }
+
+        @Override
+        public double readDouble() throws XmlPullParserException {
+            return readPrimitiveDouble(GpxByteReader.this.readText());
+        }
+
+        @Override
+        public int readInt() throws XmlPullParserException {
+            return GpxNumber.parseInt(GpxByteReader.this.readText());
+        }
+
+        @Override
+        public void skip() throws XmlPullParserException {
+            GpxByteReader.this.skip();
+        }
+    }
+
+    // bytes
+
+    private byte byteAt(int pos) {
+        return mArray != null ? mArray[mArrayOffset + pos] : mBuffer.get(pos);
+    }
+
+    private String decode(int start, int end) {
+        return ByteSequence.decode(mBuffer, start, end, mCharset);
+    }
+
+    private int indexOf(byte b, int from) {
+        for (int pos = from; pos < mLimit; pos++) {
+            if (byteAt(pos) == b) {
+                return pos;
+            }
+        }
+        return -1;
+    }
+
+    private int indexOf(byte[] pattern, int from) {
+        for (int pos = indexOf(pattern[0], from); pos >= 0; pos = indexOf(pattern[0], pos + 1)) {
+            if (startsWith(pos, pattern)) {
+                return pos;
+            }
+        }
+        return -1;
+    }
+
+    private boolean startsWith(int pos, byte[] pattern) {
+        if (pos + pattern.length > mLimit) {
+            return false;
+        }
+        for (int i = 0; i < pattern.length; i++) {
+            if (byteAt(pos + i) != pattern[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean regionMatches(int pos, int otherPos, int length) {
+        for (int i = 0; i < length; i++) {
+            if (byteAt(pos + i) != byteAt(otherPos + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isEndOfName(int pos) {
+        byte b = byteAt(pos);
+        return b == '>' || isWhitespace(b);
+    }
+
+    private boolean regionEquals(int start, int end, byte[] bytes) {
+        return end - start == bytes.length && startsWith(start, bytes);
+    }
+
+    private int skipWhitespace(int pos) {
+        while (pos < mLimit && isWhitespace(byteAt(pos))) {
+            pos++;
+        }
+        return pos;
+    }
+
+    static private boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\t' || b == '\r';
+    }
+
+    static private byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private byte[] copy(int start, int end) {
+        byte[] bytes = new byte[end - start];
+        ByteBuffer range = mBuffer.duplicate();
+        range.position(start);
+        range.get(bytes);
+        return bytes;
+    }
+
+    private XmlPullParserException eof() {
+        mEndOfInput = true;
+        return error("Unexpected end of document");
+    }
+
+    private XmlPullParserException error(String message) {
+        return new XmlPullParserException(message + " (at byte " + mPos + ")");
+    }
+}
@@ -0,0 +1,333 @@
+package io.ticofab.androidgpxparser.parser;
+
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import io.ticofab.androidgpxparser.parser.domain.Gpx;
+import io.ticofab.androidgpxparser.parser.domain.Route;
+import io.ticofab.androidgpxparser.parser.domain.Track;
+import io.ticofab.androidgpxparser.parser.domain.TrackSegment;
+
+/**
+ * A thread-safe in-memory cache of parsed documents, e.g. the routes a server renders over and over.
+ * <p>
+ * Each document weighs its number of points, and the least recently used documents are evicted once
+ * the total weight exceeds {@link Builder#setMaxWeight(long)}. Documents heavier than the limit on
+ * their own are returned but not cached, so that a single huge file never flushes the cache. Values
+ * are held through soft references, which the garbage collector clears when memory runs low.
+ * <p>
+ * Concurrent {@link #get(Object)} calls for a key that is not cached share a single load.
+ *
+ * @param <K> the keys, e.g. {@link java.io.File}s, with consistent equals and hashCode
+ */
+public class GpxCache<K> {
+
+    /**
+     * Loads the document of a key on a miss, e.g. by parsing the file it names.
+     */
+    public interface Loader<K> {
+        Gpx load(K key) throws XmlPullParserException, IOException;
+    }
+
+    private final Loader<K> mLoader;
+    private final long mMaxWeight;
+
+    // all the state below is guarded by the lock of mEntries
+    private final LinkedHashMap<K, Entry<K>> mEntries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<K, Loading> mLoading = new HashMap<>();
+    private final ReferenceQueue<Gpx> mCleared = new ReferenceQueue<>();
+    private long mWeight;
+    private long mHitCount;
+    private long mMissCount;
+    private long mLoadFailureCount;
+    private long mEvictionCount;
+    private long mCollectedCount;
+
+    private GpxCache(Builder<K> builder) {
+        if (builder.mLoader == null) {
+            throw new IllegalArgumentException("A loader is required");
+        }
+        mLoader = builder.mLoader;
+        mMaxWeight = builder.mMaxWeight;
+    }
+
+    /**
+     * @return the cached document of the key, loaded first on a miss. Callers asking for a key being
+     * loaded wait for that load, and get its result or its exception.
+     */
+    public Gpx get(K key) throws XmlPullParserException, IOException {
+        Loading loading;
+        boolean loader = false;
+        synchronized (mEntries) {
+            purgeCleared();
+            Entry<K> entry = mEntries.get(key);
+            Gpx gpx = entry != null ? entry.get() : null;
+            if (gpx != null) {
+                mHitCount++;
+                return gpx;
+            }
+            loading = mLoading.get(key);
+            if (loading == null) {
+                mMissCount++;
+                loading = new Loading();
+                mLoading.put(key, loading);
+                loader = true;
+            } else {
+                // the load in flight will serve this call too
+                mHitCount++;
+            }
+        }
+        return loader ? load(key, loading) : loading.await();
+    }
+
+    /**
+     * @return the cached document of the key, null if not cached. Never loads.
+     */
+    public Gpx getIfPresent(K key) {
+        synchronized (mEntries) {
+            purgeCleared();
+            Entry<K> entry = mEntries.get(key);
+            return entry != null ? entry.get() : null;
+        }
+    }
+
+    /**
+     * Removes the document of the key, e.g. after its file changed. A load in flight is not affected.
+     */
+    public void invalidate(K key) {
+        synchronized (mEntries) {
+            Entry<K> entry = mEntries.remove(key);
+            if (entry != null) {
+                mWeight -= entry.mWeight;
+            }
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (mEntries) {
+            mEntries.clear();
+            mWeight = 0;
+        }
+    }
+
+    public Stats getStats() {
+        synchronized (mEntries) {
+            purgeCleared();
+            return new Stats(mHitCount, mMissCount, mLoadFailureCount, mEvictionCount, mCollectedCount,
+                    mEntries.size(), mWeight);
+        }
+    }
+
+    private Gpx load(K key, Loading loading) throws XmlPullParserException, IOException {
+        Gpx gpx;
+        try {
+            gpx = mLoader.load(key);
+        } catch (XmlPullParserException | IOException | RuntimeException | Error e) {
+            synchronized (mEntries) {
+                mLoadFailureCount++;
+                mLoading.remove(key);
+            }
+            loading.complete(null, e);
+            throw e;
+        }
+        synchronized (mEntries) {
+            mLoading.remove(key);
+            long weight = weigh(gpx);
+            if (weight <= mMaxWeight) {
+                Entry<K> previous = mEntries.put(key, new Entry<>(key, gpx, weight, mCleared));
+                if (previous != null) {
+                    mWeight -= previous.mWeight;
+                }
+                mWeight += weight;
+                evict();
+            }
+        }
+        loading.complete(gpx, null);
+        return gpx;
+    }
+
+    // Drops the least recently used entries until the weight fits.
+    private void evict() {
+        Iterator<Entry<K>> entries = mEntries.values().iterator();
+        while (mWeight > mMaxWeight && entries.hasNext()) {
+            Entry<K> entry = entries.next();
+            entries.remove();
+            mWeight -= entry.mWeight;
+            mEvictionCount++;
+        }
+    }
+
+    // Drops the entries whose document was collected.
+    private void purgeCleared() {
+        Reference<? extends Gpx> reference;
+        while ((reference = mCleared.poll()) != null) {
+            @SuppressWarnings("unchecked")
+            Entry<K> entry = (Entry<K>) reference;
+            // the key may have been loaded again since
+            if (mEntries.get(entry.mKey) == entry) {
+                mEntries.remove(entry.mKey);
+                mWeight -= entry.mWeight;
+                mCollectedCount++;
+            }
+        }
+    }
+
+    /**
+     * @return the number of points of the document, plus one so that empty documents count too
+     */
+    static long weigh(Gpx gpx) {
+        long weight = 1 + gpx.getWayPoints().size();
+        for (Route route : gpx.getRoutes()) {
+            weight += route.getRoutePoints().size();
+        }
+        for (Track track : gpx.getTracks()) {
+            for (TrackSegment segment : track.getTrackSegments()) {
+                weight += segment.getTrackPointCount();
+            }
+        }
+        return weight;
+    }
+
+    private static class Entry<K> extends SoftReference<Gpx> {
+        private final K mKey;
+        private final long mWeight;
+
+        Entry(K key, Gpx gpx, long weight, ReferenceQueue<Gpx> queue) {
+            super(gpx, queue);
+            mKey = key;
+            mWeight = weight;
+        }
+    }
+
+    // A load in flight, which the other callers asking for the same key wait for.
+    private static class Loading {
+        private final CountDownLatch mDone = new CountDownLatch(1);
+        // written before the count down, read after the await
+        private Gpx mGpx;
+        private Throwable mFailure;
+
+        void complete(Gpx gpx, Throwable failure) {
+            mGpx = gpx;
+            mFailure = failure;
+            mDone.countDown();
+        }
+
+        Gpx await() throws XmlPullParserException, IOException {
+            try {
+                mDone.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for a load");
+            }
+            if (mFailure == null) {
+                return mGpx;
+            } else if (mFailure instanceof XmlPullParserException) {
+                throw (XmlPullParserException) mFailure;
+            } else if (mFailure instanceof IOException) {
+                throw (IOException) mFailure;
+            } else if (mFailure instanceof RuntimeException) {
+                throw (RuntimeException) mFailure;
+            }
+            throw (Error) mFailure;
+        }
+    }
+
+    /**
+     * A snapshot of the counters of a cache, since it was created.
+     */
+    public static class Stats {
+        private final long mHitCount;
+        private final long mMissCount;
+        private final long mLoadFailureCount;
+        private final long mEvictionCount;
+        private final long mCollectedCount;
+        private final int mSize;
+        private final long mWeight;
+
+        Stats(long hitCount, long missCount, long loadFailureCount, long evictionCount, long collectedCount,
+              int size, long weight) {
+            mHitCount = hitCount;
+            mMissCount = missCount;
+            mLoadFailureCount = loadFailureCount;
+            mEvictionCount = evictionCount;
+            mCollectedCount = collectedCount;
+            mSize = size;
+            mWeight = weight;
+        }
+
+        /**
+         * @return the calls served from the cache or from a load already in flight
+         */
+        public long getHitCount() {
+            return mHitCount;
+        }
+
+        /**
+         * @return the calls that started a load
+         */
+        public long getMissCount() {
+            return mMissCount;
+        }
+
+        public long getLoadFailureCount() {
+            return mLoadFailureCount;
+        }
+
+        /**
+         * @return the documents evicted to keep the weight under the limit
+         */
+        public long getEvictionCount() {
+            return mEvictionCount;
+        }
+
+        /**
+         * @return the documents cleared by the garbage collector
+         */
+        public long getCollectedCount() {
+            return mCollectedCount;
+        }
+
+        public int getSize() {
+            return mSize;
+        }
+
+        /**
+         * @return the total weight of the cached documents, in points
+         */
+        public long getWeight() {
+            return mWeight;
+        }
+    }
+
+    public static class Builder<K> {
+        private Loader<K> mLoader;
+        private long mMaxWeight = 1000 * 1000;
+
+        public Builder<K> setLoader(Loader<K> loader) {
+            mLoader = loader;
+            return this;
+        }
+
+        /**
+         * The maximum total number of points of the cached documents, a million by default.
+         */
+        public Builder<K> setMaxWeight(long maxWeight) {
+            mMaxWeight = maxWeight;
+            return this;
+        }
+
+        public GpxCache<K> build() {
+            return new GpxCache<>(this);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package io.ticofab.androidgpxparser.parser;
+
+import io.ticofab.androidgpxparser.parser.domain.Gpx;
+import io.ticofab.androidgpxparser.parser.domain.Metadata;
+import io.ticofab.androidgpxparser.parser.domain.Route;
+import io.ticofab.androidgpxparser.parser.domain.RoutePoint;
+import io.ticofab.androidgpxparser.parser.domain.Track;
+import io.ticofab.androidgpxparser.parser.domain.TrackPoint;
+import io.ticofab.androidgpxparser.parser.domain.TrackSegment;
+import io.ticofab.androidgpxparser.parser.domain.WayPoint;
+
+/**
+ * Receives the content of a GPX document while it is being parsed, see
+ * {@link GPXParser#parse(java.io.InputStream, GpxHandler)}.
+ * <p>
+ * Points are handed over one at a time as soon as they have been read and the parser does not
+ * keep any reference to them, so memory usage does not grow with the size of the file.
+ * Containers (gpx, rte, trk, trkseg) are reported as start / end pairs; the objects passed to
+ * the end callbacks carry the container's own fields but no children.
+ * <p>
+ * All methods do nothing by default, override the ones you are interested in.
+ */
+public interface GpxHandler {
+
+    /**
+     * @param gpx the gpx element: version, creator and attributes only
+     */
+    default void onGpxStart(Gpx gpx) {
+    }
+
+    default void onMetadata(Metadata metadata) {
+    }
+
+    default void onWayPoint(WayPoint wayPoint) {
+    }
+
+    default void onRouteStart() {
+    }
+
+    default void onRoutePoint(RoutePoint routePoint) {
+    }
+
+    /**
+     * @param route the route fields (name, desc, ...), without route points
+     */
+    default void onRouteEnd(Route route) {
+    }
+
+    default void onTrackStart() {
+    }
+
+    default void onSegmentStart() {
+    }
+
+    default void onTrackPoint(TrackPoint trackPoint) {
+    }
+
+    /**
+     * @param segment the segment extensions, without track points
+     */
+    default void onSegmentEnd(TrackSegment segment) {
+    }
+
+    /**
+     * @param track the track fields (name, desc, ...), without track segments
+     */
+    default void onTrackEnd(Track track) {
+    }
+
+    default void onGpxEnd() {
+    }
+}
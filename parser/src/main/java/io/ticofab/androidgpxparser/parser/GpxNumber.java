@@ -0,0 +1,99 @@
+package io.ticofab.androidgpxparser.parser;
+
+/**
+ * Parses the decimal numbers found in GPX coordinates and elevations.
+ * <p>
+ * Plain decimals ({@code -?\d+(\.\d+)?}) with at most 15 significant digits are decoded without
+ * going through {@link Double#parseDouble(String)}: the digits fit exactly in a long, so dividing
+ * them by an exact power of ten gives the correctly rounded double, i.e. the very same value.
+ * Everything else (more digits, exponents, leading '+', white space...) is handed to
+ * {@link Double#parseDouble(String)}, including its exceptions.
+ */
+final class GpxNumber {
+
+    static private final int MAX_DIGITS = 15;
+
+    static private final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15
+    };
+
+    private GpxNumber() {
+    }
+
+    static double parseDouble(String s) {
+        if (s != null) {
+            double value = parseFast(s, 0, s.length());
+            if (!Double.isNaN(value)) {
+                return value;
+            }
+        }
+        return Double.parseDouble(s);
+    }
+
+    /**
+     * @return the value of the characters between start and end, or NaN if they are not a plain
+     * decimal the fast path can decode exactly
+     */
+    static double parseFast(CharSequence s, int start, int end) {
+        int pos = start;
+        boolean negative = pos < end && s.charAt(pos) == '-';
+        if (negative) {
+            pos++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = 0;
+        boolean dot = false;
+        for (; pos < end; pos++) {
+            char c = s.charAt(pos);
+            if (c >= '0' && c <= '9') {
+                // leading zeros do not count as significant digits
+                if (mantissa != 0 || c != '0') {
+                    digits++;
+                }
+                mantissa = mantissa * 10 + (c - '0');
+                if (dot) {
+                    fractionDigits++;
+                }
+            } else if (c == '.' && !dot) {
+                dot = true;
+            } else {
+                return Double.NaN;
+            }
+            if (digits > MAX_DIGITS || fractionDigits > MAX_DIGITS) {
+                return Double.NaN;
+            }
+        }
+
+        // at least one digit on each side of the dot, if any
+        int integerDigits = pos - start - (negative ? 1 : 0) - (dot ? 1 : 0) - fractionDigits;
+        if (integerDigits == 0 || (dot && fractionDigits == 0)) {
+            return Double.NaN;
+        }
+
+        double value = (double) mantissa / POWERS_OF_TEN[fractionDigits];
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parses an integer like {@link Integer#parseInt(String)}, without creating a String for plain
+     * values of up to 9 digits.
+     */
+    static int parseInt(CharSequence s) {
+        int length = s.length();
+        int start = length > 0 && s.charAt(0) == '-' ? 1 : 0;
+        if (start == length || length - start > 9) {
+            return Integer.parseInt(s.toString());
+        }
+        int value = 0;
+        for (int pos = start; pos < length; pos++) {
+            char c = s.charAt(pos);
+            if (c < '0' || c > '9') {
+                return Integer.parseInt(s.toString());
+            }
+            value = value * 10 + (c - '0');
+        }
+        return start == 1 ? -value : value;
+    }
+}
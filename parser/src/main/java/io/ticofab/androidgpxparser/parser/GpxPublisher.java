@@ -0,0 +1,214 @@
+package io.ticofab.androidgpxparser.parser;
+
+import androidx.annotation.RequiresApi;
+
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.ticofab.androidgpxparser.parser.domain.TrackPoint;
+
+/**
+ * Publishes the track points of a GPX document to a {@link Flow.Subscriber}, reading them lazily
+ * through a {@link GpxReader}: the document is only read as far as the subscriber has requested, plus
+ * one point to detect the end, so a slow subscriber throttles the parsing instead of letting points
+ * pile up in memory.
+ * <p>
+ * The points are read and delivered on the executor, one task at a time. The stream is closed once
+ * the document has been read, on errors, and when the subscription is cancelled; in the latter case
+ * by the task reading it, after the point being read if any.
+ * <p>
+ * A document can only be published once: it allows a single subscriber, and any other one is
+ * signalled an {@link IllegalStateException}. On Android, {@link Flow} requires API level 30.
+ */
+@RequiresApi(30)
+public class GpxPublisher implements Flow.Publisher<TrackPoint> {
+
+    private final GPXParser mGpxParser;
+    private final InputStream mInputStream;
+    private final Executor mExecutor;
+    private final AtomicBoolean mSubscribed = new AtomicBoolean();
+
+    /**
+     * Reads the points on the common ForkJoinPool.
+     */
+    public GpxPublisher(InputStream in) {
+        this(new GPXParser(), in, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param executor where the points are read and delivered; since reading blocks, an executor
+     *                 meant for I/O is preferable to the common ForkJoinPool
+     */
+    public GpxPublisher(GPXParser gpxParser, InputStream in, Executor executor) {
+        mGpxParser = gpxParser;
+        mInputStream = in;
+        mExecutor = executor;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super TrackPoint> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("subscriber");
+        }
+        if (!mSubscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("The document has already been published"));
+            return;
+        }
+        GpxSubscription subscription = new GpxSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+    }
+
+    private class GpxSubscription implements Flow.Subscription, Runnable {
+        private final Flow.Subscriber<? super TrackPoint> mSubscriber;
+        private final AtomicLong mRequested = new AtomicLong();
+        // the number of signals (requests, cancellation) not handled yet by run()
+        private final AtomicInteger mPending = new AtomicInteger();
+        private volatile boolean mCancelled;
+        private volatile Throwable mInvalidRequest;
+
+        // only accessed by run()
+        private GpxReader mReader;
+        private GpxReader.TrackPointIterator mIterator;
+        private boolean mDone;
+
+        GpxSubscription(Flow.Subscriber<? super TrackPoint> subscriber) {
+            mSubscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                mInvalidRequest = new IllegalArgumentException("Non-positive request: " + n);
+            } else {
+                long requested;
+                do {
+                    requested = mRequested.get();
+                } while (!mRequested.compareAndSet(requested, requested + n < 0 ? Long.MAX_VALUE : requested + n));
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            mCancelled = true;
+            schedule();
+        }
+
+        private void schedule() {
+            if (mPending.getAndIncrement() == 0) {
+                try {
+                    mExecutor.execute(this);
+                } catch (RejectedExecutionException e) {
+                    // this thread now owns the subscription, as run() would
+                    terminate(e);
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            int pending = mPending.get();
+            while (true) {
+                if (!mDone) {
+                    drain();
+                }
+                pending = mPending.addAndGet(-pending);
+                if (pending == 0) {
+                    return;
+                }
+            }
+        }
+
+        private void drain() {
+            if (mCancelled) {
+                terminate(null);
+                return;
+            }
+            if (mInvalidRequest != null) {
+                terminate(mInvalidRequest);
+                return;
+            }
+            long requested = mRequested.get();
+            long emitted = 0;
+            boolean complete = false;
+            try {
+                if (mIterator == null) {
+                    mReader = new GpxReader(mGpxParser, mInputStream);
+                    mIterator = mReader.trackPoints();
+                }
+                while (!mCancelled) {
+                    if (!mIterator.hasNext()) {
+                        complete = true;
+                        break;
+                    }
+                    if (emitted == requested) {
+                        break;
+                    }
+                    mSubscriber.onNext(mIterator.next());
+                    emitted++;
+                }
+            } catch (UncheckedIOException e) {
+                terminate(e.getCause());
+                return;
+            } catch (IllegalStateException e) {
+                terminate(e.getCause() instanceof XmlPullParserException ? e.getCause() : e);
+                return;
+            } catch (XmlPullParserException | IOException | RuntimeException e) {
+                terminate(e);
+                return;
+            }
+            if (complete) {
+                mDone = true;
+                close();
+                mSubscriber.onComplete();
+            } else if (mCancelled) {
+                terminate(null);
+            } else if (requested != Long.MAX_VALUE) {
+                mRequested.addAndGet(-emitted);
+            }
+        }
+
+        /**
+         * Closes the stream and signals the failure, if any: nothing is signalled after a cancellation.
+         */
+        private void terminate(Throwable failure) {
+            mDone = true;
+            close();
+            if (failure != null && !mCancelled) {
+                mCancelled = true;
+                mSubscriber.onError(failure);
+            }
+        }
+
+        private void close() {
+            try {
+                if (mReader != null) {
+                    mReader.close();
+                } else {
+                    mInputStream.close();
+                }
+            } catch (IOException e) {
+                // nothing left to read
+            }
+        }
+    }
+}
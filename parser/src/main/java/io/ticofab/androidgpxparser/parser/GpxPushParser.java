@@ -0,0 +1,106 @@
+package io.ticofab.androidgpxparser.parser;
+
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A non-blocking parser that is handed the bytes of a document as they arrive, e.g. the chunks of an
+ * upload read by an asynchronous HTTP server: every {@link #feed(ByteBuffer)} parses the elements the
+ * chunk completes and hands them over to the {@link GpxHandler}, and {@link #endOfInput()} checks
+ * that the document is complete. No thread waits for the bytes in between.
+ * <p>
+ * Only the bytes of the element being received are kept between chunks, together with the start tags
+ * of the open containers (gpx, trk, trkseg, rte), so memory does not grow with the document, see
+ * {@link GpxTailParser}. The encoding must be ASCII compatible, see {@link ByteGpxParser}.
+ * <p>
+ * Not thread-safe: the chunks of a document must be fed one after the other, not necessarily from the
+ * same thread. After an exception, from the parser or the handler, the state of the parser is undefined.
+ */
+public class GpxPushParser {
+
+    static private final int INITIAL_BUFFER_SIZE = 8 * 1024;
+
+    private final ParseOptions mOptions;
+    private final GpxHandler mHandler;
+    private final GpxByteReader.TailState mState = new GpxByteReader.TailState();
+
+    // the start tags of the open containers, followed by the bytes not parsed yet
+    private byte[] mPending = new byte[INITIAL_BUFFER_SIZE];
+    private int mLength;
+    private boolean mEndOfInput;
+
+    public GpxPushParser(GpxHandler handler) {
+        this(ParseOptions.DEFAULT, handler);
+    }
+
+    public GpxPushParser(ParseOptions options, GpxHandler handler) {
+        mOptions = options;
+        mHandler = handler;
+    }
+
+    /**
+     * Parses the elements completed by the chunk, consuming it. Bytes after the end tag of gpx are
+     * ignored.
+     *
+     * @return false once the end tag of gpx has been read, true while more bytes are expected
+     */
+    public boolean feed(ByteBuffer chunk) throws XmlPullParserException {
+        if (mEndOfInput) {
+            throw new IllegalStateException("endOfInput() has already been called");
+        }
+        if (mState.isEnded()) {
+            chunk.position(chunk.limit());
+            return false;
+        }
+        int start = mLength;
+        int length = chunk.remaining();
+        if (mLength + length > mPending.length) {
+            mPending = Arrays.copyOf(mPending, Math.max(mPending.length * 2, mLength + length));
+        }
+        chunk.get(mPending, mLength, length);
+        mLength += length;
+
+        // no element can be completed by a chunk without the end of a tag
+        for (int i = start; i < mLength; i++) {
+            if (mPending[i] == '>') {
+                parse();
+                break;
+            }
+        }
+        return !mState.isEnded();
+    }
+
+    /**
+     * Signals that all the bytes have been fed.
+     *
+     * @throws XmlPullParserException if the document ended before the end tag of gpx
+     */
+    public void endOfInput() throws XmlPullParserException {
+        mEndOfInput = true;
+        if (!mState.isEnded()) {
+            throw new XmlPullParserException("Unexpected end of document, " + mLength
+                    + " bytes of open elements left unparsed");
+        }
+    }
+
+    private void parse() throws XmlPullParserException {
+        int end = new GpxByteReader(ByteBuffer.wrap(mPending, 0, mLength), mOptions)
+                .readAvailable(mState, mHandler);
+        if (mState.isEnded()) {
+            mPending = null;
+            mLength = 0;
+            return;
+        }
+        // keep the open containers and the incomplete element for the next chunk
+        byte[] openTags = mState.openTags();
+        int remaining = mLength - end;
+        if (openTags.length + remaining > mPending.length) {
+            mPending = Arrays.copyOf(mPending, Math.max(mPending.length * 2, openTags.length + remaining));
+        }
+        System.arraycopy(mPending, end, mPending, openTags.length, remaining);
+        System.arraycopy(openTags, 0, mPending, 0, openTags.length);
+        mLength = openTags.length + remaining;
+    }
+}
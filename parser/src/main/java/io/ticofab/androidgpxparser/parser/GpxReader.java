@@ -0,0 +1,186 @@
+package io.ticofab.androidgpxparser.parser;
+
+import androidx.annotation.RequiresApi;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import io.ticofab.androidgpxparser.parser.domain.TrackPoint;
+
+/**
+ * Lazily reads the track points of a GPX document: the underlying parser only advances when the
+ * next point is requested, so consumers can stop early without reading the rest of the file.
+ * <p>
+ * Everything that is not a track point (metadata, way points, routes, track names...) is skipped.
+ * Close the reader, or the stream returned by {@link #trackPointStream()}, when done.
+ * <p>
+ * On Android, {@link Stream} and {@link UncheckedIOException}, which the iterator throws on read
+ * errors, require API level 24.
+ */
+@RequiresApi(24)
+public class GpxReader implements Closeable {
+
+    private final GPXParser mGpxParser;
+    private final XmlPullParser mParser;
+    private final InputStream mInputStream;
+
+    private TrackPointIterator mIterator;
+
+    public GpxReader(InputStream in) throws XmlPullParserException, IOException {
+        this(new GPXParser(), in);
+    }
+
+    GpxReader(GPXParser gpxParser, InputStream in) throws XmlPullParserException, IOException {
+        mGpxParser = gpxParser;
+        mInputStream = in;
+        try {
+            mParser = gpxParser.newPullParser(in);
+            mParser.require(XmlPullParser.START_TAG, null, GPXParser.TAG_GPX);
+        } catch (XmlPullParserException | IOException | RuntimeException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return an iterator over all the track points of the document, in document order. It can only
+     * be obtained once, since it consumes the underlying stream.
+     */
+    public TrackPointIterator trackPoints() {
+        if (mIterator != null) {
+            throw new IllegalStateException("The track points of this reader have already been requested");
+        }
+        mIterator = new TrackPointIterator();
+        return mIterator;
+    }
+
+    /**
+     * @return the track points as an ordered, sequential stream. Closing the stream closes this reader.
+     */
+    public Stream<TrackPoint> trackPointStream() {
+        Spliterator<TrackPoint> spliterator = Spliterators.spliteratorUnknownSize(trackPoints(),
+                Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false).onClose(() -> {
+            try {
+                close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    @Override
+    public void close() throws IOException {
+        mInputStream.close();
+    }
+
+    /**
+     * Iterates over the track points. Besides the point itself, the indices of its track, segment and
+     * position within the segment are available after each call to {@link #next()}.
+     * <p>
+     * An {@link UncheckedIOException} is thrown on read errors, an {@link IllegalStateException} on
+     * malformed documents, including documents that end before the end tag of gpx.
+     */
+    public class TrackPointIterator implements Iterator<TrackPoint> {
+        private int mTrackIndex = -1;
+        private int mSegmentIndex = -1;
+        private int mPointIndex = -1;
+
+        private TrackPoint mNext;
+        private boolean mFinished;
+
+        private TrackPointIterator() {
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (mNext == null && !mFinished) {
+                try {
+                    mNext = readNext();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                } catch (XmlPullParserException e) {
+                    throw new IllegalStateException(e);
+                }
+                mFinished = mNext == null;
+            }
+            return mNext != null;
+        }
+
+        @Override
+        public TrackPoint next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            TrackPoint point = mNext;
+            mNext = null;
+            return point;
+        }
+
+        /**
+         * @return the index of the track (trk) containing the last returned point
+         */
+        public int getTrackIndex() {
+            return mTrackIndex;
+        }
+
+        /**
+         * @return the index, within its track, of the segment (trkseg) containing the last returned point
+         */
+        public int getSegmentIndex() {
+            return mSegmentIndex;
+        }
+
+        /**
+         * @return the index of the last returned point within its segment
+         */
+        public int getPointIndex() {
+            return mPointIndex;
+        }
+
+        // Advances the parser until the next trkpt has been read, descending only into trk and trkseg.
+        // Returns null at the end tag of gpx.
+        private TrackPoint readNext() throws XmlPullParserException, IOException {
+            while (true) {
+                int event = mParser.next();
+                if (event == XmlPullParser.END_DOCUMENT) {
+                    throw new XmlPullParserException("Unexpected end of document", mParser, null);
+                }
+                if (event == XmlPullParser.END_TAG && mParser.getDepth() == 1) {
+                    mParser.require(XmlPullParser.END_TAG, null, GPXParser.TAG_GPX);
+                    return null;
+                }
+                if (event != XmlPullParser.START_TAG) {
+                    continue;
+                }
+                switch (mParser.getName()) {
+                    case GPXParser.TAG_TRACK:
+                        mTrackIndex++;
+                        mSegmentIndex = -1;
+                        break;
+                    case GPXParser.TAG_SEGMENT:
+                        mSegmentIndex++;
+                        mPointIndex = -1;
+                        break;
+                    case GPXParser.TAG_TRACK_POINT:
+                        mPointIndex++;
+                        return mGpxParser.readTrackPoint(mParser);
+                    default:
+                        mGpxParser.skip(mParser);
+                        break;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package io.ticofab.androidgpxparser.parser;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns the names, prefixes and namespaces of extension elements and attributes, so that the few
+ * distinct values found in a document are each held once, however many points repeat them.
+ * <p>
+ * Unlike {@link String#intern()}, the table is bounded: past {@link #MAX_SIZE} entries new strings are
+ * returned as they are.
+ */
+final class GpxStrings {
+
+    static private final int MAX_SIZE = 4096;
+
+    static private final ConcurrentHashMap<String, String> STRINGS = new ConcurrentHashMap<>();
+
+    private GpxStrings() {
+    }
+
+    static String intern(String s) {
+        if (s == null) {
+            return null;
+        }
+        String interned = STRINGS.get(s);
+        if (interned != null) {
+            return interned;
+        }
+        if (STRINGS.size() >= MAX_SIZE) {
+            return s;
+        }
+        interned = STRINGS.putIfAbsent(s, s);
+        return interned != null ? interned : s;
+    }
+}
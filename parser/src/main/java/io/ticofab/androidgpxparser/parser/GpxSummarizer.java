@@ -0,0 +1,166 @@
+package io.ticofab.androidgpxparser.parser;
+
+import org.joda.time.DateTime;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import io.ticofab.androidgpxparser.parser.ParseOptions.PointField;
+import io.ticofab.androidgpxparser.parser.domain.RoutePoint;
+import io.ticofab.androidgpxparser.parser.domain.TrackPoint;
+import io.ticofab.androidgpxparser.parser.domain.TrackSegment;
+
+/**
+ * Computes a {@link GpxSummary} in a single streaming pass, without building the {@link
+ * io.ticofab.androidgpxparser.parser.domain.Gpx} tree: only primitive accumulators are kept, and
+ * everything but the coordinates, elevations and times of track and route points is skipped.
+ * <p>
+ * The {@link ByteBuffer} and {@link File} variants go through the {@link ByteGpxParser} engine, which
+ * hands the point values over as primitives and creates no object at all per point.
+ */
+public class GpxSummarizer {
+
+    static private final ParseOptions OPTIONS = new ParseOptions.Builder()
+            .setPointFields(PointField.LATITUDE, PointField.LONGITUDE, PointField.ELEVATION, PointField.TIME)
+            .setSkipExtensions(true)
+            .setSkipWayPoints(true)
+            .build();
+
+    // mean earth radius, in meters
+    static private final double EARTH_RADIUS = 6371008.8;
+
+    private final GPXParser mParser;
+    private final ByteGpxParser mByteParser = new ByteGpxParser(OPTIONS);
+
+    public GpxSummarizer() {
+        this(new AndroidXmlFactory());
+    }
+
+    /**
+     * @param xmlFactory see {@link GPXParser#GPXParser(XmlFactory)}
+     */
+    public GpxSummarizer(XmlFactory xmlFactory) {
+        mParser = new GPXParser(xmlFactory, OPTIONS);
+    }
+
+    /**
+     * @param in the GPX document, closed when done
+     */
+    public GpxSummary summarize(InputStream in) throws XmlPullParserException, IOException {
+        Accumulator accumulator = new Accumulator();
+        mParser.parse(in, accumulator);
+        return accumulator.getSummary();
+    }
+
+    public GpxSummary summarize(ByteBuffer buffer) throws XmlPullParserException {
+        Accumulator accumulator = new Accumulator();
+        mByteParser.parse(buffer, accumulator);
+        return accumulator.getSummary();
+    }
+
+    /**
+     * Memory maps the file, see {@link ByteGpxParser#parse(File)}.
+     */
+    public GpxSummary summarize(File file) throws XmlPullParserException, IOException {
+        return summarize(ByteGpxParser.map(file));
+    }
+
+    private static class Accumulator implements PointValueHandler {
+
+        private int mPointCount;
+        private double mDistance;
+        private double mMinElevation = Double.POSITIVE_INFINITY;
+        private double mMaxElevation = Double.NEGATIVE_INFINITY;
+        private double mMinLat = Double.POSITIVE_INFINITY;
+        private double mMinLon = Double.POSITIVE_INFINITY;
+        private double mMaxLat = Double.NEGATIVE_INFINITY;
+        private double mMaxLon = Double.NEGATIVE_INFINITY;
+        private long mStartTime = Long.MAX_VALUE;
+        private long mEndTime = Long.MIN_VALUE;
+
+        // the previous point of the current segment or route, NaN at its start
+        private double mPreviousLat = Double.NaN;
+        private double mPreviousLon = Double.NaN;
+
+        @Override
+        public void onRouteStart() {
+            mPreviousLat = Double.NaN;
+        }
+
+        @Override
+        public void onSegmentStart() {
+            mPreviousLat = Double.NaN;
+        }
+
+        @Override
+        public void onRoutePoint(RoutePoint routePoint) {
+            onPoint(routePoint.getLatitude(), routePoint.getLongitude(), routePoint.getElevation(), routePoint.getTime());
+        }
+
+        @Override
+        public void onTrackPoint(TrackPoint trackPoint) {
+            onPoint(trackPoint.getLatitude(), trackPoint.getLongitude(), trackPoint.getElevation(), trackPoint.getTime());
+        }
+
+        private void onPoint(Double latitude, Double longitude, Double elevation, DateTime time) {
+            onPointValues(latitude != null ? latitude : Double.NaN,
+                    longitude != null ? longitude : Double.NaN,
+                    elevation != null ? elevation : Double.NaN,
+                    time != null ? time.getMillis() : TrackSegment.NO_TIME);
+        }
+
+        @Override
+        public boolean isTrackPointValues() {
+            return true;
+        }
+
+        @Override
+        public boolean isRoutePointValues() {
+            return true;
+        }
+
+        @Override
+        public void onPointValues(double latitude, double longitude, double elevation, long time) {
+            mPointCount++;
+            if (!Double.isNaN(latitude) && !Double.isNaN(longitude)) {
+                mMinLat = Math.min(mMinLat, latitude);
+                mMaxLat = Math.max(mMaxLat, latitude);
+                mMinLon = Math.min(mMinLon, longitude);
+                mMaxLon = Math.max(mMaxLon, longitude);
+                if (!Double.isNaN(mPreviousLat)) {
+                    mDistance += distance(mPreviousLat, mPreviousLon, latitude, longitude);
+                }
+                mPreviousLat = latitude;
+                mPreviousLon = longitude;
+            }
+            if (!Double.isNaN(elevation)) {
+                mMinElevation = Math.min(mMinElevation, elevation);
+                mMaxElevation = Math.max(mMaxElevation, elevation);
+            }
+            if (time != TrackSegment.NO_TIME) {
+                mStartTime = Math.min(mStartTime, time);
+                mEndTime = Math.max(mEndTime, time);
+            }
+        }
+
+        GpxSummary getSummary() {
+            boolean hasElevation = mMinElevation <= mMaxElevation;
+            return new GpxSummary(mPointCount, mDistance,
+                    hasElevation ? mMinElevation : Double.NaN, hasElevation ? mMaxElevation : Double.NaN,
+                    mMinLat, mMinLon, mMaxLat, mMaxLon, mStartTime, mEndTime);
+        }
+    }
+
+    /**
+     * @return the great-circle distance in meters between the two points, with the haversine formula
+     */
+    static double distance(double lat1, double lon1, double lat2, double lon2) {
+        double sinLat = Math.sin(Math.toRadians(lat2 - lat1) / 2);
+        double sinLon = Math.sin(Math.toRadians(lon2 - lon1) / 2);
+        double a = sinLat * sinLat + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * sinLon * sinLon;
+        return 2 * EARTH_RADIUS * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+}
@@ -0,0 +1,98 @@
+package io.ticofab.androidgpxparser.parser;
+
+import org.joda.time.DateTime;
+
+import io.ticofab.androidgpxparser.parser.domain.Bounds;
+
+/**
+ * Statistics over the track points and route points of a document, computed by {@link GpxSummarizer}.
+ * Way points are not part of the summary.
+ */
+public class GpxSummary {
+
+    private final int mPointCount;
+    private final double mDistance;
+    private final double mMinElevation;
+    private final double mMaxElevation;
+    private final double mMinLat;
+    private final double mMinLon;
+    private final double mMaxLat;
+    private final double mMaxLon;
+    private final long mStartTime;
+    private final long mEndTime;
+
+    GpxSummary(int pointCount, double distance, double minElevation, double maxElevation,
+               double minLat, double minLon, double maxLat, double maxLon, long startTime, long endTime) {
+        mPointCount = pointCount;
+        mDistance = distance;
+        mMinElevation = minElevation;
+        mMaxElevation = maxElevation;
+        mMinLat = minLat;
+        mMinLon = minLon;
+        mMaxLat = maxLat;
+        mMaxLon = maxLon;
+        mStartTime = startTime;
+        mEndTime = endTime;
+    }
+
+    public int getPointCount() {
+        return mPointCount;
+    }
+
+    /**
+     * @return the length in meters of all the track segments and routes, on a spherical earth
+     */
+    public double getDistance() {
+        return mDistance;
+    }
+
+    /**
+     * @return the time in milliseconds between the earliest and the latest point, 0 without times
+     */
+    public long getDuration() {
+        return mStartTime != Long.MAX_VALUE ? mEndTime - mStartTime : 0;
+    }
+
+    /**
+     * @return the time of the earliest point, null if no point has a time
+     */
+    public DateTime getStartTime() {
+        return mStartTime != Long.MAX_VALUE ? new DateTime(mStartTime) : null;
+    }
+
+    /**
+     * @return the time of the latest point, null if no point has a time
+     */
+    public DateTime getEndTime() {
+        return mStartTime != Long.MAX_VALUE ? new DateTime(mEndTime) : null;
+    }
+
+    /**
+     * @return the lowest elevation in meters, NaN if no point has an elevation
+     */
+    public double getMinElevation() {
+        return mMinElevation;
+    }
+
+    /**
+     * @return the highest elevation in meters, NaN if no point has an elevation
+     */
+    public double getMaxElevation() {
+        return mMaxElevation;
+    }
+
+    /**
+     * @return the bounding box of the points, null if there are none
+     */
+    public Bounds getBounds() {
+        if (mMinLat > mMaxLat) {
+            return null;
+        }
+        return new Bounds.Builder()
+                .setMinLat(mMinLat)
+                .setMinLon(mMinLon)
+                .setMaxLat(mMaxLat)
+                .setMaxLon(mMaxLon)
+                .build();
+    }
+}
@@ -0,0 +1,80 @@
+package io.ticofab.androidgpxparser.parser;
+
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Follows a GPX file that is being written, e.g. by a tracker appending {@code <trkpt>} elements as it
+ * records: every {@link #poll()} parses the bytes appended since the previous one and hands the new
+ * elements over to the {@link GpxHandler}, so following a long recording costs a single pass over it.
+ * <p>
+ * Only complete elements are reported. An element still being written is read again on the next poll,
+ * and the containers left open (gpx, trk, trkseg, rte) are resumed with their namespace declarations.
+ * The end callbacks of a container come once its end tag has been appended, possibly never.
+ * <p>
+ * The file must only grow, and its encoding must be ASCII compatible, see {@link ByteGpxParser}.
+ * After an exception, from the parser or the handler, the state of the parser is undefined.
+ */
+public class GpxTailParser {
+
+    private final File mFile;
+    private final ParseOptions mOptions;
+    private final GpxHandler mHandler;
+    private final GpxByteReader.TailState mState = new GpxByteReader.TailState();
+    private long mPosition;
+
+    public GpxTailParser(File file, GpxHandler handler) {
+        this(file, ParseOptions.DEFAULT, handler);
+    }
+
+    public GpxTailParser(File file, ParseOptions options, GpxHandler handler) {
+        mFile = file;
+        mOptions = options;
+        mHandler = handler;
+    }
+
+    /**
+     * Parses the complete elements appended since the previous poll.
+     *
+     * @return false once the end tag of gpx has been read, true while the document may still grow
+     */
+    public synchronized boolean poll() throws XmlPullParserException, IOException {
+        if (mState.isEnded()) {
+            return false;
+        }
+        try (FileInputStream in = new FileInputStream(mFile)) {
+            FileChannel channel = in.getChannel();
+            long size = channel.size();
+            if (size < mPosition) {
+                throw new IOException("The file shrank below the parsed position " + mPosition);
+            }
+            byte[] openTags = mState.openTags();
+            if (size - mPosition > Integer.MAX_VALUE - openTags.length) {
+                throw new IOException("Too many bytes appended at once: " + (size - mPosition));
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(openTags.length + (int) (size - mPosition));
+            buffer.put(openTags);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, mPosition + buffer.position() - openTags.length) < 0) {
+                    break;
+                }
+            }
+            buffer.flip();
+            int end = new GpxByteReader(buffer, mOptions).readAvailable(mState, mHandler);
+            mPosition += end - openTags.length;
+        }
+        return !mState.isEnded();
+    }
+
+    /**
+     * @return the number of bytes of the file parsed so far, up to the end of the last complete element
+     */
+    public synchronized long getPosition() {
+        return mPosition;
+    }
+}
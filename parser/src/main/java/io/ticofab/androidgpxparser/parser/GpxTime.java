@@ -0,0 +1,146 @@
+package io.ticofab.androidgpxparser.parser;
+
+import org.joda.time.DateTime;
+import org.joda.time.format.DateTimeFormatter;
+import org.joda.time.format.ISODateTimeFormat;
+
+/**
+ * Parses the content of GPX time elements.
+ * <p>
+ * Nearly all GPX files use the {@code yyyy-MM-ddTHH:mm:ss[.SSS](Z|+HH:mm)} layout, which is decoded
+ * here directly into epoch millis. Anything else goes through Joda's general ISO-8601 parser.
+ * Fraction digits beyond the millisecond are truncated, as Joda does.
+ */
+final class GpxTime {
+
+    static final long NOT_PARSED = Long.MIN_VALUE;
+
+    // formatters are immutable and thread-safe, share a single one
+    static private final DateTimeFormatter DATE_TIME_PARSER = ISODateTimeFormat.dateTimeParser();
+
+    static private final int MILLIS_PER_SECOND = 1000;
+    static private final int MILLIS_PER_MINUTE = 60 * MILLIS_PER_SECOND;
+    static private final int MILLIS_PER_HOUR = 60 * MILLIS_PER_MINUTE;
+    static private final long MILLIS_PER_DAY = 24L * MILLIS_PER_HOUR;
+
+    private GpxTime() {
+    }
+
+    static DateTime parseDateTime(String text) {
+        long millis = parseFast(text, 0, text.length());
+        return millis != NOT_PARSED ? new DateTime(millis) : DATE_TIME_PARSER.parseDateTime(text);
+    }
+
+    static long parseMillis(String text) {
+        long millis = parseFast(text, 0, text.length());
+        return millis != NOT_PARSED ? millis : DATE_TIME_PARSER.parseMillis(text);
+    }
+
+    /**
+     * @return the epoch millis of the characters between start and end, or {@link #NOT_PARSED} if they
+     * are not in the common layout, in which case the general parser should be used
+     */
+    static long parseFast(CharSequence s, int start, int end) {
+        // the shortest layout is yyyy-MM-ddTHH:mm:ssZ
+        if (end - start < 20
+                || s.charAt(start + 4) != '-' || s.charAt(start + 7) != '-' || s.charAt(start + 10) != 'T'
+                || s.charAt(start + 13) != ':' || s.charAt(start + 16) != ':') {
+            return NOT_PARSED;
+        }
+        int year = digits(s, start, 4);
+        int month = digits(s, start + 5, 2);
+        int day = digits(s, start + 8, 2);
+        int hour = digits(s, start + 11, 2);
+        int minute = digits(s, start + 14, 2);
+        int second = digits(s, start + 17, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            return NOT_PARSED;
+        }
+
+        int pos = start + 19;
+        int millis = 0;
+        if (s.charAt(pos) == '.' || s.charAt(pos) == ',') {
+            pos++;
+            int fractionStart = pos;
+            while (pos < end && isDigit(s.charAt(pos))) {
+                if (pos - fractionStart < 3) {
+                    millis = millis * 10 + (s.charAt(pos) - '0');
+                }
+                pos++;
+            }
+            int fractionLength = pos - fractionStart;
+            if (fractionLength == 0 || fractionLength > 9) {
+                return NOT_PARSED;
+            }
+            for (int i = fractionLength; i < 3; i++) {
+                millis *= 10;
+            }
+        }
+
+        int offsetMillis;
+        if (pos == end - 1 && s.charAt(pos) == 'Z') {
+            offsetMillis = 0;
+        } else if (pos == end - 6 && (s.charAt(pos) == '+' || s.charAt(pos) == '-') && s.charAt(pos + 3) == ':') {
+            int offsetHours = digits(s, pos + 1, 2);
+            int offsetMinutes = digits(s, pos + 4, 2);
+            if (offsetHours < 0 || offsetHours > 23 || offsetMinutes < 0 || offsetMinutes > 59) {
+                return NOT_PARSED;
+            }
+            offsetMillis = offsetHours * MILLIS_PER_HOUR + offsetMinutes * MILLIS_PER_MINUTE;
+            if (s.charAt(pos) == '-') {
+                offsetMillis = -offsetMillis;
+            }
+        } else {
+            // local times depend on the default zone, leave them to Joda
+            return NOT_PARSED;
+        }
+
+        return daysFromEpoch(year, month, day) * MILLIS_PER_DAY
+                + hour * MILLIS_PER_HOUR + minute * MILLIS_PER_MINUTE + second * MILLIS_PER_SECOND + millis
+                - offsetMillis;
+    }
+
+    // the value of count decimal digits, or -1 if any of them is not a digit
+    static private int digits(CharSequence s, int pos, int count) {
+        int value = 0;
+        for (int i = pos; i < pos + count; i++) {
+            char c = s.charAt(i);
+            if (!isDigit(c)) {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    static private boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    static private int daysInMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                boolean leap = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+                return leap ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    // days since 1970-01-01 in the proleptic Gregorian calendar, see
+    // http://howardhinnant.github.io/date_algorithms.html#days_from_civil
+    static private long daysFromEpoch(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = (y >= 0 ? y : y - 399) / 400;
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468;
+    }
+}
@@ -0,0 +1,179 @@
+package io.ticofab.androidgpxparser.parser;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.ticofab.androidgpxparser.parser.domain.Gpx;
+import io.ticofab.androidgpxparser.parser.domain.Metadata;
+import io.ticofab.androidgpxparser.parser.domain.Route;
+import io.ticofab.androidgpxparser.parser.domain.RoutePoint;
+import io.ticofab.androidgpxparser.parser.domain.Track;
+import io.ticofab.androidgpxparser.parser.domain.TrackPoint;
+import io.ticofab.androidgpxparser.parser.domain.TrackSegment;
+import io.ticofab.androidgpxparser.parser.domain.WayPoint;
+
+/**
+ * The {@link GpxHandler} behind {@link GPXParser#parse(java.io.InputStream)}: collects all the
+ * events into a complete {@link Gpx} tree.
+ * <p>
+ * With compact track segments, the track points are taken as values and appended to the segment
+ * without creating any {@link TrackPoint}.
+ */
+class GpxTreeBuilder implements PointValueHandler {
+
+    private Gpx mHeader;
+    private Metadata mMetadata;
+    private final List<WayPoint> mWayPoints = new ArrayList<>();
+    private final List<Route> mRoutes = new ArrayList<>();
+    private final List<Track> mTracks = new ArrayList<>();
+
+    private List<RoutePoint> mRoutePoints;
+    private List<TrackSegment> mTrackSegments;
+    private List<TrackPoint> mTrackPoints;
+    private TrackSegment.CompactBuilder mCompactSegment;
+
+    private final ParseOptions mOptions;
+
+    GpxTreeBuilder(ParseOptions options) {
+        mOptions = options;
+    }
+
+    ParseOptions getOptions() {
+        return mOptions;
+    }
+
+    @Override
+    public void onGpxStart(Gpx gpx) {
+        mHeader = gpx;
+    }
+
+    @Override
+    public void onMetadata(Metadata metadata) {
+        mMetadata = metadata;
+    }
+
+    @Override
+    public void onWayPoint(WayPoint wayPoint) {
+        mWayPoints.add(wayPoint);
+    }
+
+    @Override
+    public void onRouteStart() {
+        mRoutePoints = new ArrayList<>();
+    }
+
+    @Override
+    public void onRoutePoint(RoutePoint routePoint) {
+        mRoutePoints.add(routePoint);
+    }
+
+    @Override
+    public void onRouteEnd(Route route) {
+        mRoutes.add(new Route.Builder()
+                .setRouteName(route.getRouteName())
+                .setRouteDesc(route.getRouteDesc())
+                .setRouteCmt(route.getRouteCmt())
+                .setRouteSrc(route.getRouteSrc())
+                .setRouteNumber(route.getRouteNumber())
+                .setRouteLink(route.getRouteLink())
+                .setRouteType(route.getRouteType())
+                .setRoutePoints(mRoutePoints)
+                .build());
+        mRoutePoints = null;
+    }
+
+    @Override
+    public void onTrackStart() {
+        mTrackSegments = new ArrayList<>();
+    }
+
+    @Override
+    public void onSegmentStart() {
+        if (mOptions.isCompactTrackSegments()) {
+            mCompactSegment = new TrackSegment.CompactBuilder();
+        } else {
+            mTrackPoints = new ArrayList<>();
+        }
+    }
+
+    @Override
+    public void onTrackPoint(TrackPoint trackPoint) {
+        if (mCompactSegment != null) {
+            mCompactSegment.addTrackPoint(trackPoint);
+        } else {
+            mTrackPoints.add(trackPoint);
+        }
+    }
+
+    @Override
+    public boolean isTrackPointValues() {
+        return mOptions.isCompactTrackSegments();
+    }
+
+    @Override
+    public boolean isRoutePointValues() {
+        return false;
+    }
+
+    @Override
+    public void onPointValues(double latitude, double longitude, double elevation, long time) {
+        mCompactSegment.addTrackPoint(latitude, longitude, elevation, time);
+    }
+
+    @Override
+    public void onSegmentEnd(TrackSegment segment) {
+        if (mCompactSegment != null) {
+            mTrackSegments.add(mCompactSegment
+                    .setExtensions(segment.getExtensions())
+                    .build());
+            mCompactSegment = null;
+        } else {
+            mTrackSegments.add(new TrackSegment.Builder()
+                    .setTrackPoints(mTrackPoints)
+                    .setExtensions(segment.getExtensions())
+                    .build());
+            mTrackPoints = null;
+        }
+    }
+
+    @Override
+    public void onTrackEnd(Track track) {
+        addTrack(track, mTrackSegments);
+        mTrackSegments = null;
+    }
+
+    /**
+     * Adds a track made of the header fields of the given one and of the segments.
+     */
+    void addTrack(Track track, List<TrackSegment> trackSegments) {
+        mTracks.add(new Track.Builder()
+                .setTrackName(track.getTrackName())
+                .setTrackDesc(track.getTrackDesc())
+                .setTrackCmt(track.getTrackCmt())
+                .setTrackSrc(track.getTrackSrc())
+                .setTrackNumber(track.getTrackNumber())
+                .setTrackLink(track.getTrackLink())
+                .setTrackType(track.getTrackType())
+                .setTrackSegments(trackSegments)
+                .build());
+    }
+
+    /**
+     * @return the segments read since the last {@link #onTrackStart()}
+     */
+    List<TrackSegment> getTrackSegments() {
+        return mTrackSegments;
+    }
+
+    Gpx getGpx() {
+        return new Gpx.Builder()
+                .setVersion(mHeader.getVersion())
+                .setCreator(mHeader.getCreator())
+                .setAttributes(mHeader.getAttributes())
+                .setMetadata(mMetadata)
+                .setWayPoints(mWayPoints)
+                .setRoutes(mRoutes)
+                .setTracks(mTracks)
+                .build();
+    }
+}
@@ -0,0 +1,502 @@
+package io.ticofab.androidgpxparser.parser;
+
+import org.joda.time.DateTime;
+import org.joda.time.format.ISODateTimeFormat;
+import org.xmlpull.v1.XmlSerializer;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.ticofab.androidgpxparser.parser.domain.Author;
+import io.ticofab.androidgpxparser.parser.domain.Bounds;
+import io.ticofab.androidgpxparser.parser.domain.Copyright;
+import io.ticofab.androidgpxparser.parser.domain.Email;
+import io.ticofab.androidgpxparser.parser.domain.Extension;
+import io.ticofab.androidgpxparser.parser.domain.Gpx;
+import io.ticofab.androidgpxparser.parser.domain.Link;
+import io.ticofab.androidgpxparser.parser.domain.Metadata;
+import io.ticofab.androidgpxparser.parser.domain.Point;
+import io.ticofab.androidgpxparser.parser.domain.RawExtensions;
+import io.ticofab.androidgpxparser.parser.domain.Route;
+import io.ticofab.androidgpxparser.parser.domain.RoutePoint;
+import io.ticofab.androidgpxparser.parser.domain.Track;
+import io.ticofab.androidgpxparser.parser.domain.TrackPoint;
+import io.ticofab.androidgpxparser.parser.domain.TrackSegment;
+import io.ticofab.androidgpxparser.parser.domain.WayPoint;
+import io.ticofab.androidgpxparser.parser.domain.XMLAttribute;
+
+import static io.ticofab.androidgpxparser.parser.GPXParser.TAG_AUTHOR;
+import static io.ticofab.androidgpxparser.parser.GPXParser.TAG_BOUNDS;
+import static io.ticofab.androidgpxparser.parser.GPXParser.TAG_CMT;
+import static io.ticofab.androidgpxparser.parser.GPXParser.TAG_COPYRIGHT;
+import static io.ticofab.androidgpxparser.parser.GPXParser.TAG_CREATOR;
+import static io.ticofab.androidgpxparser.parser.GPXParser.TAG_DESC;
+import static io.ticofab.androidgpxparser.parser.GPXParser.TAG_DOMAIN;
+import static io.ticofab.androidgpxparser.parser.GPXParser.TAG_ELEVATION;
+import static io.ticofab.androidgpxparser.parser.GPXParser.TAG_EMAIL;
+import static io.ticofab.androidgpxparser.parser.GPXParser.TAG_EXTENSIONS;
+import static io.ticofab.androidgpxparser.parser.GPXParser.TAG_GPX;
+import static io.ticofab.androidgpxparser.parser.GPXParser.TAG_HREF;
+import static io.ticofab.androidgpxparser.parser.GPXParser.TAG_ID;
+import static io.ticofab.androidgpxparser.parser.GPXParser.TAG_KEYWORDS;
+import static io.ticofab.androidgpxparser.parser.GPXParser.TAG_LAT;
+import static io.ticofab.androidgpxparser.parser.GPXParser.TAG_LICENSE;
+import static io.ticofab.androidgpxparser.parser.GPXParser.TAG_LINK;
+import static io.ticofab.androidgpxparser.parser.GPXParser.TAG_LON;
+import static io.ticofab.androidgpxparser.parser.GPXParser.TAG_MAX_LAT;
+import static io.ticofab.androidgpxparser.parser.GPXParser.TAG_MAX_LON;
+import static io.ticofab.androidgpxparser.parser.GPXParser.TAG_METADATA;
+import static io.ticofab.androidgpxparser.parser.GPXParser.TAG_MIN_LAT;
+import static io.ticofab.androidgpxparser.parser.GPXParser.TAG_MIN_LON;
+import static io.ticofab.androidgpxparser.parser.GPXParser.TAG_NAME;
+import static io.ticofab.androidgpxparser.parser.GPXParser.TAG_NUMBER;
+import static io.ticofab.androidgpxparser.parser.GPXParser.TAG_ROUTE;
+import static io.ticofab.androidgpxparser.parser.GPXParser.TAG_ROUTE_POINT;
+import static io.ticofab.androidgpxparser.parser.GPXParser.TAG_SEGMENT;
+import static io.ticofab.androidgpxparser.parser.GPXParser.TAG_SRC;
+import static io.ticofab.androidgpxparser.parser.GPXParser.TAG_SYM;
+import static io.ticofab.androidgpxparser.parser.GPXParser.TAG_TEXT;
+import static io.ticofab.androidgpxparser.parser.GPXParser.TAG_TIME;
+import static io.ticofab.androidgpxparser.parser.GPXParser.TAG_TRACK;
+import static io.ticofab.androidgpxparser.parser.GPXParser.TAG_TRACK_POINT;
+import static io.ticofab.androidgpxparser.parser.GPXParser.TAG_TYPE;
+import static io.ticofab.androidgpxparser.parser.GPXParser.TAG_VERSION;
+import static io.ticofab.androidgpxparser.parser.GPXParser.TAG_WAY_POINT;
+import static io.ticofab.androidgpxparser.parser.GPXParser.TAG_YEAR;
+
+/**
+ * Writes a GPX document incrementally, so that points can be appended as they are produced without
+ * holding a {@link Gpx} in memory:
+ * <pre>
+ * writer.startGpx(header);
+ * writer.startTrack(track);
+ * writer.startSegment();
+ * writer.writeTrackPoint(point); // as many times as needed, flush() from time to time
+ * writer.endSegment();
+ * writer.endTrack();
+ * writer.endGpx();
+ * </pre>
+ * The calls must follow the GPX element order: metadata, way points, routes, tracks.
+ * {@link #writeGpx(Gpx)} writes a complete document in one go.
+ */
+public class GpxWriter implements Closeable {
+
+    private final XmlSerializer mSerializer;
+    private final OutputWriter mWriter;
+    private String mNamespace;
+
+    /**
+     * @param out receives the UTF-8 encoded document, closed by {@link #close()}
+     */
+    public GpxWriter(OutputStream out) throws IOException {
+        this(new AndroidXmlFactory(), out);
+    }
+
+    /**
+     * @param xmlFactory creates the serializer, e.g. {@link XmlPullFactory} outside of Android
+     * @param out        receives the UTF-8 encoded document, closed by {@link #close()}
+     */
+    public GpxWriter(XmlFactory xmlFactory, OutputStream out) throws IOException {
+        mWriter = new OutputWriter(out);
+        mSerializer = xmlFactory.newSerializer();
+        mSerializer.setOutput(mWriter);
+    }
+
+    /**
+     * Writes the whole document: metadata, way points, routes and tracks.
+     */
+    public void writeGpx(Gpx gpx) throws IOException, IllegalStateException, IllegalArgumentException {
+        startGpx(gpx);
+        writeMetadata(gpx.getMetadata());
+        writeWayPoints(gpx.getWayPoints());
+        for (Route route : gpx.getRoutes()) {
+            writeRoute(route);
+        }
+        for (Track track : gpx.getTracks()) {
+            writeTrack(track);
+        }
+        endGpx();
+    }
+
+    /**
+     * Starts the document with the gpx element. Only version, creator and attributes of the given
+     * {@link Gpx} are written.
+     */
+    public GpxWriter startGpx(Gpx gpx) throws IOException, IllegalStateException, IllegalArgumentException {
+        mNamespace = gpx.getNamespace();
+        mSerializer.startDocument("UTF-8", false);
+
+        // Need to set namespaces before start tag
+        mSerializer.setPrefix("", mNamespace);
+        writePrefixes(gpx.getAttributes());
+        mSerializer.startTag(mNamespace, TAG_GPX);
+
+        // Set attributes for GPX Tag
+        mSerializer.attribute(null, TAG_CREATOR, gpx.getCreator());
+        mSerializer.attribute(null, TAG_VERSION, gpx.getVersion());
+
+        List<String> mSkipKeys = new ArrayList<>();
+        mSkipKeys.add(TAG_CREATOR);
+        mSkipKeys.add(TAG_VERSION);
+        writeAttributes(gpx.getAttributes(), mSkipKeys);
+        return this;
+    }
+
+    public void endGpx() throws IOException, IllegalStateException, IllegalArgumentException {
+        mSerializer.endTag(mNamespace, TAG_GPX);
+        mSerializer.endDocument();
+        mWriter.flushToStream();
+    }
+
+    public GpxWriter writeMetadata(Metadata metadata) throws IOException, IllegalStateException, IllegalArgumentException {
+        if (metadata == null) {
+            return this;
+        }
+
+        mSerializer.startTag(mNamespace, TAG_METADATA);
+        writeTagWithText(TAG_NAME, metadata.getName());
+        writeTagWithText(TAG_DESC, metadata.getDesc());
+        writeAuthor(metadata.getAuthor());
+        writeCopyright(metadata.getCopyright());
+        writeLink(metadata.getLink());
+        writeTagWithText(TAG_KEYWORDS, metadata.getKeywords());
+        writeTime(metadata.getTime());
+        writeBounds(metadata.getBounds());
+        // Extensions in metadata not yet supported
+
+        mSerializer.endTag(mNamespace, TAG_METADATA);
+        return this;
+    }
+
+    public GpxWriter writeWayPoints(List<WayPoint> wayPoints) throws IOException, IllegalStateException, IllegalArgumentException {
+        if (wayPoints == null) {
+            return this;
+        }
+        for (int i = 0; i < wayPoints.size(); i++) {
+            writeWayPoint(wayPoints.get(i));
+        }
+        return this;
+    }
+
+    public GpxWriter writeWayPoint(WayPoint wayPoint) throws IOException, IllegalStateException, IllegalArgumentException {
+        writePoint(TAG_WAY_POINT, wayPoint);
+        return this;
+    }
+
+    /**
+     * Writes a complete route, including its points.
+     */
+    public GpxWriter writeRoute(Route route) throws IOException, IllegalStateException, IllegalArgumentException {
+        startRoute(route);
+        for (RoutePoint routePoint : route.getRoutePoints()) {
+            writeRoutePoint(routePoint);
+        }
+        return endRoute();
+    }
+
+    /**
+     * Starts a route element, writing the fields of the given route but not its points.
+     */
+    public GpxWriter startRoute(Route route) throws IOException, IllegalStateException, IllegalArgumentException {
+        mSerializer.startTag(mNamespace, TAG_ROUTE);
+        writeTagWithText(TAG_NAME, route.getRouteName());
+        writeTagWithText(TAG_CMT, route.getRouteCmt());
+        writeTagWithText(TAG_DESC, route.getRouteDesc());
+        writeTagWithText(TAG_SRC, route.getRouteSrc());
+        writeLink(route.getRouteLink());
+        writeTagWithText(TAG_NUMBER, route.getRouteNumber());
+        writeTagWithText(TAG_TYPE, route.getRouteType());
+        return this;
+    }
+
+    public GpxWriter writeRoutePoint(RoutePoint routePoint) throws IOException, IllegalStateException, IllegalArgumentException {
+        writePoint(TAG_ROUTE_POINT, routePoint);
+        return this;
+    }
+
+    public GpxWriter endRoute() throws IOException, IllegalStateException, IllegalArgumentException {
+        mSerializer.endTag(mNamespace, TAG_ROUTE);
+        return this;
+    }
+
+    /**
+     * Writes a complete track, including its segments.
+     */
+    public GpxWriter writeTrack(Track track) throws IOException, IllegalStateException, IllegalArgumentException {
+        startTrack(track);
+        for (TrackSegment segment : track.getTrackSegments()) {
+            startSegment();
+            List<TrackPoint> trackPoints = segment.getTrackPoints();
+            for (int i = 0; i < trackPoints.size(); i++) {
+                writeTrackPoint(trackPoints.get(i));
+            }
+            endSegment(segment.getExtensions());
+        }
+        return endTrack();
+    }
+
+    /**
+     * Starts a track element, writing the fields of the given track but not its segments.
+     */
+    public GpxWriter startTrack(Track track) throws IOException, IllegalStateException, IllegalArgumentException {
+        mSerializer.startTag(mNamespace, TAG_TRACK);
+        writeTagWithText(TAG_NAME, track.getTrackName());
+        writeTagWithText(TAG_CMT, track.getTrackCmt());
+        writeTagWithText(TAG_DESC, track.getTrackDesc());
+        writeTagWithText(TAG_SRC, track.getTrackSrc());
+        writeLink(track.getTrackLink());
+        writeTagWithText(TAG_NUMBER, track.getTrackNumber());
+        writeTagWithText(TAG_TYPE, track.getTrackType());
+        return this;
+    }
+
+    public GpxWriter startSegment() throws IOException, IllegalStateException, IllegalArgumentException {
+        mSerializer.startTag(mNamespace, TAG_SEGMENT);
+        return this;
+    }
+
+    public GpxWriter writeTrackPoint(TrackPoint trackPoint) throws IOException, IllegalStateException, IllegalArgumentException {
+        writePoint(TAG_TRACK_POINT, trackPoint);
+        return this;
+    }
+
+    public GpxWriter endSegment() throws IOException, IllegalStateException, IllegalArgumentException {
+        return endSegment(null);
+    }
+
+    /**
+     * @param extensions the segment extensions, written after the track points
+     */
+    public GpxWriter endSegment(List<Extension> extensions) throws IOException, IllegalStateException, IllegalArgumentException {
+        writeRootExtensions(extensions);
+        mSerializer.endTag(mNamespace, TAG_SEGMENT);
+        return this;
+    }
+
+    public GpxWriter endTrack() throws IOException, IllegalStateException, IllegalArgumentException {
+        mSerializer.endTag(mNamespace, TAG_TRACK);
+        return this;
+    }
+
+    /**
+     * Pushes everything written so far to the output stream.
+     */
+    public void flush() throws IOException {
+        mSerializer.flush();
+        mWriter.flushToStream();
+    }
+
+    @Override
+    public void close() throws IOException {
+        mWriter.close();
+    }
+
+    private void writePoint(String tag, Point point) throws IOException, IllegalStateException, IllegalArgumentException {
+        if (point == null) {
+            return;
+        }
+
+        // both are required, but points parsed with a projection may lack them
+        Double latitude = point.getLatitude();
+        Double longitude = point.getLongitude();
+        if (latitude == null || longitude == null || latitude.isNaN() || longitude.isNaN()) {
+            throw new IllegalArgumentException("Cannot write a " + tag + " without latitude and longitude");
+        }
+        mSerializer.startTag(mNamespace, tag);
+        mSerializer.attribute(null, TAG_LAT, latitude.toString());
+        mSerializer.attribute(null, TAG_LON, longitude.toString());
+
+        writeTagWithText(TAG_ELEVATION, point.getElevation());
+        writeTime(point.getTime());
+        writeTagWithText(TAG_NAME, point.getName());
+        writeTagWithText(TAG_DESC, point.getDesc());
+        writeTagWithText(TAG_TYPE, point.getType());
+        writeTagWithText(TAG_SYM, point.getSym());
+        writeTagWithText(TAG_CMT, point.getCmt());
+        if (point.getRawExtensions() != null) {
+            writeRawExtensions(point.getRawExtensions());
+        } else {
+            writeRootExtensions(point.getExtensions());
+        }
+
+        mSerializer.endTag(mNamespace, tag);
+    }
+
+    private void writePrefixes(List<XMLAttribute> attributes) throws IOException, IllegalStateException, IllegalArgumentException {
+        for (int i = 0; i < attributes.size(); i++) {
+            XMLAttribute attribute = attributes.get(i);
+            if (!attribute.getPrefix().isEmpty()) {
+                mSerializer.setPrefix(attribute.getPrefix(), attribute.getNamespace());
+            }
+        }
+    }
+
+    private void writeAttributes(List<XMLAttribute> attributes, List<String> skipKeys) throws IOException, IllegalStateException, IllegalArgumentException {
+        for (int i = 0; i < attributes.size(); i++) {
+            XMLAttribute attribute = attributes.get(i);
+            if (skipKeys != null && skipKeys.contains(attribute.getName())) {
+                continue;
+            }
+
+            mSerializer.attribute(attribute.getNamespace(), attribute.getName(), attribute.getValue());
+            mSerializer.setPrefix(attribute.getPrefix(), attribute.getNamespace());
+        }
+    }
+
+    private void writeTagWithText(String tag, Object value) throws IOException, IllegalStateException, IllegalArgumentException {
+        if (value == null) {
+            return;
+        }
+
+        mSerializer.startTag(mNamespace, tag);
+        mSerializer.text(value.toString());
+        mSerializer.endTag(mNamespace, tag);
+    }
+
+    private void writeAuthor(Author author) throws IOException, IllegalStateException, IllegalArgumentException {
+        if (author == null) {
+            return;
+        }
+
+        mSerializer.startTag(mNamespace, TAG_AUTHOR);
+        writeTagWithText(TAG_NAME, author.getName());
+        writeEmail(author.getEmail());
+        writeLink(author.getLink());
+        mSerializer.endTag(mNamespace, TAG_AUTHOR);
+
+    }
+
+    private void writeEmail(Email email) throws IOException, IllegalStateException, IllegalArgumentException {
+        if (email == null) {
+            return;
+        }
+
+        mSerializer.startTag(mNamespace, TAG_EMAIL);
+        mSerializer.attribute(null, TAG_ID, email.getId());
+        mSerializer.attribute(null, TAG_DOMAIN, email.getDomain());
+        mSerializer.endTag(mNamespace, TAG_EMAIL);
+    }
+
+    private void writeLink(Link link) throws IOException, IllegalStateException, IllegalArgumentException {
+        if (link == null) {
+            return;
+        }
+
+        mSerializer.startTag(mNamespace, TAG_LINK);
+        mSerializer.attribute(null, TAG_HREF, link.getHref());
+        writeTagWithText(TAG_TEXT, link.getText());
+        writeTagWithText(TAG_TYPE, link.getType());
+        mSerializer.endTag(mNamespace, TAG_LINK);
+    }
+
+    private void writeCopyright(Copyright copyright) throws IOException, IllegalStateException, IllegalArgumentException {
+        if (copyright == null) {
+            return;
+        }
+        mSerializer.startTag(mNamespace, TAG_COPYRIGHT);
+        mSerializer.attribute(null, TAG_AUTHOR, copyright.getAuthor());
+        writeTagWithText(TAG_YEAR, copyright.getYear());
+        writeTagWithText(TAG_LICENSE, copyright.getLicense());
+        mSerializer.endTag(mNamespace, TAG_COPYRIGHT);
+    }
+
+    private void writeTime(DateTime dateTime) throws IOException, IllegalStateException, IllegalArgumentException {
+        if (dateTime == null) {
+            return;
+        }
+
+        writeTagWithText(TAG_TIME, ISODateTimeFormat.dateTime().print(dateTime));
+    }
+
+    private void writeBounds(Bounds bounds) throws IOException, IllegalStateException, IllegalArgumentException {
+        if (bounds == null) {
+            return;
+        }
+        mSerializer.startTag(mNamespace, TAG_BOUNDS);
+        mSerializer.attribute(null, TAG_MIN_LAT, bounds.getMinLat().toString());
+        mSerializer.attribute(null, TAG_MIN_LON, bounds.getMinLon().toString());
+        mSerializer.attribute(null, TAG_MAX_LAT, bounds.getMaxLat().toString());
+        mSerializer.attribute(null, TAG_MAX_LON, bounds.getMaxLon().toString());
+        mSerializer.endTag(mNamespace, TAG_BOUNDS);
+    }
+
+    private void writeRootExtensions(List<Extension> extensions) throws IOException, IllegalStateException, IllegalArgumentException {
+        if (extensions == null || extensions.size() == 0) {
+            return;
+        }
+
+        mSerializer.startTag(mNamespace, TAG_EXTENSIONS);
+        writeExtensions(extensions);
+        mSerializer.endTag(mNamespace, TAG_EXTENSIONS);
+    }
+
+    // The markup is copied as it is, with the namespace declarations it may rely on.
+    private void writeRawExtensions(RawExtensions extensions) throws IOException, IllegalStateException, IllegalArgumentException {
+        String content = extensions.getContent();
+        if (content.isEmpty()) {
+            return;
+        }
+
+        for (int i = 0; i < extensions.getNamespaceCount(); i++) {
+            mSerializer.setPrefix(extensions.getNamespacePrefix(i), extensions.getNamespaceUri(i));
+        }
+        mSerializer.startTag(mNamespace, TAG_EXTENSIONS);
+        // closes the start tag, then hands everything over to the writer which the markup goes to
+        mSerializer.text("");
+        mSerializer.flush();
+        mWriter.write(content);
+        mSerializer.endTag(mNamespace, TAG_EXTENSIONS);
+    }
+
+    private void writeExtensions(List<Extension> extensions) throws IOException, IllegalStateException, IllegalArgumentException {
+        if (extensions == null || extensions.size() == 0) {
+            return;
+        }
+
+        for (int i = 0; i < extensions.size(); i++) {
+            writeExtension(extensions.get(i));
+        }
+    }
+
+
+    private void writeExtension(Extension extension) throws IOException, IllegalStateException, IllegalArgumentException {
+        if (extension == null) {
+            return;
+        }
+
+        writePrefixes(extension.getAttributes());
+        mSerializer.setPrefix(extension.getPrefix(), extension.getNamespace());
+        mSerializer.startTag(extension.getNamespace(), extension.getName());
+        writeAttributes(extension.getAttributes(), null);
+        if (extension.getValue() != null) {
+            mSerializer.text(extension.getValue());
+        }
+        writeExtensions(extension.getChildren());
+        mSerializer.endTag(extension.getNamespace(), extension.getName());
+    }
+
+    /**
+     * Buffers the output of the serializer. Flushes of the serializer stop here, so that raw markup
+     * can be written in between without pushing every point to the stream.
+     */
+    static private class OutputWriter extends BufferedWriter {
+
+        OutputWriter(OutputStream out) {
+            super(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        void flushToStream() throws IOException {
+            super.flush();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package io.ticofab.androidgpxparser.parser;
+
+import org.joda.time.DateTime;
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import io.ticofab.androidgpxparser.parser.domain.Extension;
+import io.ticofab.androidgpxparser.parser.domain.Point;
+
+/**
+ * The {@link GPXParser} that parses when {@link ParseMetrics} are set: it reads through a
+ * {@link MeteredPullParser} and a counting stream, times the phases around the read methods and reports
+ * to the metrics. Keeping this apart leaves the default parser without any work per element.
+ */
+final class MeteredGpxParser extends GPXParser {
+
+    private final ParseMetrics mParseMetrics;
+
+    MeteredGpxParser(XmlFactory xmlFactory, ParseOptions options) {
+        super(xmlFactory, options, false);
+        mParseMetrics = options.getParseMetrics();
+    }
+
+    void parseMetered(XmlPullParser parser, InputStream in, GpxHandler handler)
+            throws XmlPullParserException, IOException {
+        MeteredPullParser meteredParser = new MeteredPullParser(parser);
+        CountingInputStream countingIn = new CountingInputStream(in);
+        Throwable failure = null;
+        long start = System.nanoTime();
+        try {
+            startDocument(meteredParser, countingIn);
+            readGpx(meteredParser, handler);
+        } catch (XmlPullParserException | IOException | RuntimeException | Error e) {
+            failure = e;
+            throw e;
+        } finally {
+            long nanos = System.nanoTime() - start;
+            in.close();
+            mParseMetrics.onParse(meteredParser.report(countingIn.mCount, nanos, failure));
+        }
+    }
+
+    @Override
+    DateTime readTime(XmlPullParser parser) throws IOException, XmlPullParserException {
+        MeteredPullParser metered = (MeteredPullParser) parser;
+        long start = metered.startPhase();
+        DateTime time = super.readTime(parser);
+        metered.endPhase(ParseReport.Phase.TIME, start);
+        return time;
+    }
+
+    @Override
+    long readTimeMillis(XmlPullParser parser) throws IOException, XmlPullParserException {
+        MeteredPullParser metered = (MeteredPullParser) parser;
+        long start = metered.startPhase();
+        long time = super.readTimeMillis(parser);
+        metered.endPhase(ParseReport.Phase.TIME, start);
+        return time;
+    }
+
+    @Override
+    List<Extension> readExtensions(XmlPullParser parser) throws IOException, XmlPullParserException {
+        MeteredPullParser metered = (MeteredPullParser) parser;
+        long start = metered.startPhase();
+        List<Extension> extensions = super.readExtensions(parser);
+        metered.endPhase(ParseReport.Phase.EXTENSIONS, start);
+        return extensions;
+    }
+
+    @Override
+    void readPointExtensions(XmlPullParser parser, Point.Builder builder) throws IOException, XmlPullParserException {
+        MeteredPullParser metered = (MeteredPullParser) parser;
+        long start = metered.startPhase();
+        super.readPointExtensions(parser, builder);
+        metered.endPhase(ParseReport.Phase.EXTENSIONS, start);
+    }
+
+    @Override
+    void skip(XmlPullParser parser) throws XmlPullParserException, IOException {
+        MeteredPullParser metered = (MeteredPullParser) parser;
+        long start = metered.startPhase();
+        super.skip(parser);
+        metered.endPhase(ParseReport.Phase.SKIP, start);
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+        private long mCount;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                mCount++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                mCount += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            mCount += skipped;
+            return skipped;
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package io.ticofab.androidgpxparser.parser;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The parser handed to the read methods of {@link MeteredGpxParser}: it delegates everything and counts
+ * the start tags by local name on the way, and it holds the phase timings of the parse, see
+ * {@link #startPhase()}.
+ */
+final class MeteredPullParser implements XmlPullParser {
+
+    private final XmlPullParser mParser;
+    private final Map<String, long[]> mElementCounts = new HashMap<>();
+    private final long[] mPhaseNanos = new long[ParseReport.Phase.values().length];
+    private final long[] mPhaseCounts = new long[ParseReport.Phase.values().length];
+    private int mPhaseDepth;
+
+    MeteredPullParser(XmlPullParser parser) {
+        mParser = parser;
+    }
+
+    /**
+     * @return the start of a phase, to be passed to {@link #endPhase(ParseReport.Phase, long)}
+     */
+    long startPhase() {
+        mPhaseDepth++;
+        return System.nanoTime();
+    }
+
+    /**
+     * Adds the time since the start to the phase. Phases nested in another one, e.g. a decoder skipping
+     * an element of its extension, only count for the outer one.
+     */
+    void endPhase(ParseReport.Phase phase, long start) {
+        if (--mPhaseDepth == 0) {
+            mPhaseNanos[phase.ordinal()] += System.nanoTime() - start;
+        }
+        mPhaseCounts[phase.ordinal()]++;
+    }
+
+    ParseReport report(long bytes, long nanos, Throwable failure) {
+        Map<String, Long> elementCounts = new HashMap<>(mElementCounts.size() * 2);
+        for (Map.Entry<String, long[]> entry : mElementCounts.entrySet()) {
+            elementCounts.put(entry.getKey(), entry.getValue()[0]);
+        }
+        return new ParseReport(bytes, nanos, elementCounts, mPhaseNanos.clone(), mPhaseCounts.clone(), failure);
+    }
+
+    private int count(int eventType) {
+        if (eventType == START_TAG) {
+            String name = mParser.getName();
+            long[] count = mElementCounts.get(name);
+            if (count == null) {
+                mElementCounts.put(name, new long[]{1});
+            } else {
+                count[0]++;
+            }
+        }
+        return eventType;
+    }
+
+    // counted
+
+    @Override
+    public int next() throws XmlPullParserException, IOException {
+        return count(mParser.next());
+    }
+
+    @Override
+    public int nextToken() throws XmlPullParserException, IOException {
+        return count(mParser.nextToken());
+    }
+
+    @Override
+    public int nextTag() throws XmlPullParserException, IOException {
+        return count(mParser.nextTag());
+    }
+
+    @Override
+    public String nextText() throws XmlPullParserException, IOException {
+        // only moves from a start tag to its end tag
+        return mParser.nextText();
+    }
+
+    // delegated
+
+    @Override
+    public void setFeature(String name, boolean state) throws XmlPullParserException {
+        mParser.setFeature(name, state);
+    }
+
+    @Override
+    public boolean getFeature(String name) {
+        return mParser.getFeature(name);
+    }
+
+    @Override
+    public void setProperty(String name, Object value) throws XmlPullParserException {
+        mParser.setProperty(name, value);
+    }
+
+    @Override
+    public Object getProperty(String name) {
+        return mParser.getProperty(name);
+    }
+
+    @Override
+    public void setInput(Reader in) throws XmlPullParserException {
+        mParser.setInput(in);
+    }
+
+    @Override
+    public void setInput(InputStream inputStream, String inputEncoding) throws XmlPullParserException {
+        mParser.setInput(inputStream, inputEncoding);
+    }
+
+    @Override
+    public String getInputEncoding() {
+        return mParser.getInputEncoding();
+    }
+
+    @Override
+    public void defineEntityReplacementText(String entityName, String replacementText) throws XmlPullParserException {
+        mParser.defineEntityReplacementText(entityName, replacementText);
+    }
+
+    @Override
+    public int getNamespaceCount(int depth) throws XmlPullParserException {
+        return mParser.getNamespaceCount(depth);
+    }
+
+    @Override
+    public String getNamespacePrefix(int pos) throws XmlPullParserException {
+        return mParser.getNamespacePrefix(pos);
+    }
+
+    @Override
+    public String getNamespaceUri(int pos) throws XmlPullParserException {
+        return mParser.getNamespaceUri(pos);
+    }
+
+    @Override
+    public String getNamespace(String prefix) {
+        return mParser.getNamespace(prefix);
+    }
+
+    @Override
+    public int getDepth() {
+        return mParser.getDepth();
+    }
+
+    @Override
+    public String getPositionDescription() {
+        return mParser.getPositionDescription();
+    }
+
+    @Override
+    public int getLineNumber() {
+        return mParser.getLineNumber();
+    }
+
+    @Override
+    public int getColumnNumber() {
+        return mParser.getColumnNumber();
+    }
+
+    @Override
+    public boolean isWhitespace() throws XmlPullParserException {
+        return mParser.isWhitespace();
+    }
+
+    @Override
+    public String getText() {
+        return mParser.getText();
+    }
+
+    @Override
+    public char[] getTextCharacters(int[] holderForStartAndLength) {
+        return mParser.getTextCharacters(holderForStartAndLength);
+    }
+
+    @Override
+    public String getNamespace() {
+        return mParser.getNamespace();
+    }
+
+    @Override
+    public String getName() {
+        return mParser.getName();
+    }
+
+    @Override
+    public String getPrefix() {
+        return mParser.getPrefix();
+    }
+
+    @Override
+    public boolean isEmptyElementTag() throws XmlPullParserException {
+        return mParser.isEmptyElementTag();
+    }
+
+    @Override
+    public int getAttributeCount() {
+        return mParser.getAttributeCount();
+    }
+
+    @Override
+    public String getAttributeNamespace(int index) {
+        return mParser.getAttributeNamespace(index);
+    }
+
+    @Override
+    public String getAttributeName(int index) {
+        return mParser.getAttributeName(index);
+    }
+
+    @Override
+    public String getAttributePrefix(int index) {
+        return mParser.getAttributePrefix(index);
+    }
+
+    @Override
+    public String getAttributeType(int index) {
+        return mParser.getAttributeType(index);
+    }
+
+    @Override
+    public boolean isAttributeDefault(int index) {
+        return mParser.isAttributeDefault(index);
+    }
+
+    @Override
+    public String getAttributeValue(int index) {
+        return mParser.getAttributeValue(index);
+    }
+
+    @Override
+    public String getAttributeValue(String namespace, String name) {
+        return mParser.getAttributeValue(namespace, name);
+    }
+
+    @Override
+    public int getEventType() throws XmlPullParserException {
+        return mParser.getEventType();
+    }
+
+    @Override
+    public void require(int type, String namespace, String name) throws XmlPullParserException, IOException {
+        mParser.require(type, namespace, name);
+    }
+}
@@ -0,0 +1,116 @@
+package io.ticofab.androidgpxparser.parser;
+
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import io.ticofab.androidgpxparser.parser.domain.Gpx;
+import io.ticofab.androidgpxparser.parser.domain.Track;
+import io.ticofab.androidgpxparser.parser.domain.TrackSegment;
+
+/**
+ * The {@link GpxTreeBuilder} behind {@link ByteGpxParser#parseParallel(java.nio.ByteBuffer, ForkJoinPool)}:
+ * the track segments split off by the {@link GpxByteReader} are parsed as tasks on the pool while the
+ * rest of the document is read, and put back in document order by {@link #joinGpx()}.
+ */
+class ParallelGpxBuilder extends GpxTreeBuilder implements GpxByteReader.SegmentSplitter {
+
+    private final ForkJoinPool mPool;
+
+    private final List<Track> mTrackHeaders = new ArrayList<>();
+    private final List<List<SegmentTask>> mTrackSegmentTasks = new ArrayList<>();
+    private List<SegmentTask> mSegmentTasks;
+
+    ParallelGpxBuilder(ParseOptions options, ForkJoinPool pool) {
+        super(options);
+        mPool = pool;
+    }
+
+    @Override
+    public void onTrackStart() {
+        mSegmentTasks = new ArrayList<>();
+    }
+
+    @Override
+    public void onSegment(GpxByteReader segmentReader) {
+        SegmentTask task = new SegmentTask(segmentReader, getOptions());
+        mPool.execute(task);
+        mSegmentTasks.add(task);
+    }
+
+    @Override
+    public void onTrackEnd(Track track) {
+        mTrackHeaders.add(track);
+        mTrackSegmentTasks.add(mSegmentTasks);
+        mSegmentTasks = null;
+    }
+
+    /**
+     * Waits for all the segments and builds the complete tree.
+     */
+    Gpx joinGpx() throws XmlPullParserException {
+        for (int i = 0; i < mTrackHeaders.size(); i++) {
+            List<SegmentTask> tasks = mTrackSegmentTasks.get(i);
+            List<TrackSegment> trackSegments = new ArrayList<>(tasks.size());
+            for (SegmentTask task : tasks) {
+                trackSegments.add(task.getSegment());
+            }
+            addTrack(mTrackHeaders.get(i), trackSegments);
+        }
+        return getGpx();
+    }
+
+    /**
+     * Cancels the segments not started yet, when the document turns out to be invalid.
+     */
+    void cancel() {
+        for (List<SegmentTask> tasks : mTrackSegmentTasks) {
+            for (SegmentTask task : tasks) {
+                task.cancel(false);
+            }
+        }
+        if (mSegmentTasks != null) {
+            for (SegmentTask task : mSegmentTasks) {
+                task.cancel(false);
+            }
+        }
+    }
+
+    private static class SegmentTask extends RecursiveTask<TrackSegment> {
+
+        static private final long serialVersionUID = 1L;
+
+        private final GpxByteReader mReader;
+        private final ParseOptions mOptions;
+        private XmlPullParserException mError;
+
+        SegmentTask(GpxByteReader reader, ParseOptions options) {
+            mReader = reader;
+            mOptions = options;
+        }
+
+        @Override
+        protected TrackSegment compute() {
+            GpxTreeBuilder builder = new GpxTreeBuilder(mOptions);
+            builder.onTrackStart();
+            try {
+                mReader.readSplitSegment(builder);
+            } catch (XmlPullParserException e) {
+                mError = e;
+                return null;
+            }
+            return builder.getTrackSegments().get(0);
+        }
+
+        TrackSegment getSegment() throws XmlPullParserException {
+            TrackSegment segment = join();
+            if (mError != null) {
+                throw mError;
+            }
+            return segment;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package io.ticofab.androidgpxparser.parser;
+
+/**
+ * Receives a {@link ParseReport} after every document parsed by {@link GPXParser}, e.g. to find out
+ * whether slow parses are spent reading the input, parsing times or decoding extensions. Set with
+ * {@link ParseOptions.Builder#setParseMetrics(ParseMetrics)}; {@link RegistryParseMetrics} exports the
+ * reports to a metrics registry.
+ * <p>
+ * Parses are only metered when a listener is set, they cost next to nothing otherwise. Called on the
+ * parsing thread, possibly concurrently when the parser is shared.
+ */
+public interface ParseMetrics {
+
+    /**
+     * @param report the counters and timings of the parse, also when it failed
+     */
+    void onParse(ParseReport report);
+}
@@ -0,0 +1,198 @@
+package io.ticofab.androidgpxparser.parser;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tunes how {@link GPXParser} builds the parsed {@link io.ticofab.androidgpxparser.parser.domain.Gpx}.
+ * <p>
+ * Besides the representation of track segments, the options can project the document onto what the
+ * caller needs: elements left out are skipped by the parser without creating any String or object.
+ */
+public class ParseOptions {
+
+    /**
+     * The options used by {@link GPXParser#GPXParser()}.
+     */
+    public static final ParseOptions DEFAULT = new Builder().build();
+
+    /**
+     * The values of way points, route points and track points that can be projected.
+     */
+    public enum PointField {
+        LATITUDE, LONGITUDE, ELEVATION, TIME, NAME, DESC, CMT, SYM, TYPE
+    }
+
+    private final boolean mCompactTrackSegments;
+    private final Set<PointField> mPointFields;
+    private final boolean mSkipExtensions;
+    private final boolean mLazyExtensions;
+    private final boolean mSkipWayPoints;
+    private final boolean mSkipRoutes;
+    private final Map<String, ExtensionDecoder> mExtensionDecoders;
+    private final ParseMetrics mParseMetrics;
+
+    private ParseOptions(Builder builder) {
+        mCompactTrackSegments = builder.mCompactTrackSegments;
+        mPointFields = builder.mPointFields;
+        mSkipExtensions = builder.mSkipExtensions;
+        mLazyExtensions = builder.mLazyExtensions;
+        mSkipWayPoints = builder.mSkipWayPoints;
+        mSkipRoutes = builder.mSkipRoutes;
+        mExtensionDecoders = builder.mExtensionDecoders.isEmpty()
+                ? Collections.emptyMap()
+                : new HashMap<>(builder.mExtensionDecoders);
+        mParseMetrics = builder.mParseMetrics;
+    }
+
+    /**
+     * @return true if track segments are stored as primitive arrays, see
+     * {@link io.ticofab.androidgpxparser.parser.domain.TrackSegment.CompactBuilder}
+     */
+    public boolean isCompactTrackSegments() {
+        return mCompactTrackSegments;
+    }
+
+    /**
+     * @return true if the value is read from the points, false if it is left null
+     */
+    public boolean includesPointField(PointField field) {
+        return mPointFields.contains(field);
+    }
+
+    /**
+     * @return true if the extensions of points and segments are skipped
+     */
+    public boolean isSkipExtensions() {
+        return mSkipExtensions;
+    }
+
+    /**
+     * @return true if the extensions of points are captured as raw XML, see {@link Builder#setLazyExtensions(boolean)}
+     */
+    public boolean isLazyExtensions() {
+        return mLazyExtensions;
+    }
+
+    public boolean isSkipWayPoints() {
+        return mSkipWayPoints;
+    }
+
+    public boolean isSkipRoutes() {
+        return mSkipRoutes;
+    }
+
+    public boolean hasExtensionDecoders() {
+        return !mExtensionDecoders.isEmpty();
+    }
+
+    /**
+     * @return the decoder registered for the namespace, null if none
+     */
+    public ExtensionDecoder getExtensionDecoder(String namespace) {
+        return namespace != null ? mExtensionDecoders.get(namespace) : null;
+    }
+
+    /**
+     * @return the listener of the parse reports, null if parses are not metered
+     */
+    public ParseMetrics getParseMetrics() {
+        return mParseMetrics;
+    }
+
+    // The options that make a difference to the parsed Gpx, see CachingGpxParser.
+    String getCacheKey() {
+        return "compact=" + mCompactTrackSegments
+                + ";fields=" + mPointFields
+                + ";skipExtensions=" + mSkipExtensions
+                + ";skipWayPoints=" + mSkipWayPoints
+                + ";skipRoutes=" + mSkipRoutes;
+    }
+
+    public static class Builder {
+        private boolean mCompactTrackSegments;
+        private Set<PointField> mPointFields = EnumSet.allOf(PointField.class);
+        private boolean mSkipExtensions;
+        private boolean mLazyExtensions;
+        private boolean mSkipWayPoints;
+        private boolean mSkipRoutes;
+        private final Map<String, ExtensionDecoder> mExtensionDecoders = new HashMap<>();
+        private ParseMetrics mParseMetrics;
+
+        /**
+         * Stores track points as primitive arrays, which takes a fraction of the memory of full
+         * {@link io.ticofab.androidgpxparser.parser.domain.TrackPoint} objects. Only latitude,
+         * longitude, elevation and time are kept.
+         */
+        public Builder setCompactTrackSegments(boolean compactTrackSegments) {
+            mCompactTrackSegments = compactTrackSegments;
+            return this;
+        }
+
+        /**
+         * Only reads these values of the points, e.g. {@code setPointFields(LATITUDE, LONGITUDE, TIME)}.
+         * All of them are read by default.
+         */
+        public Builder setPointFields(PointField... pointFields) {
+            mPointFields = pointFields.length == 0
+                    ? EnumSet.noneOf(PointField.class)
+                    : EnumSet.copyOf(Arrays.asList(pointFields));
+            return this;
+        }
+
+        /**
+         * Skips the extensions of points and segments, which are otherwise read as generic trees.
+         */
+        public Builder setSkipExtensions(boolean skipExtensions) {
+            mSkipExtensions = skipExtensions;
+            return this;
+        }
+
+        /**
+         * Keeps the extensions of points as a copy of their raw XML, only decoded when
+         * {@link io.ticofab.androidgpxparser.parser.domain.Point#getExtensions()} is called and written
+         * back as they are, which makes them almost free for documents that are parsed and written
+         * without looking at them. Supported by {@link ByteGpxParser}, {@link GPXParser} decodes
+         * extensions while parsing. Ignored when decoders are registered.
+         */
+        public Builder setLazyExtensions(boolean lazyExtensions) {
+            mLazyExtensions = lazyExtensions;
+            return this;
+        }
+
+        public Builder setSkipWayPoints(boolean skipWayPoints) {
+            mSkipWayPoints = skipWayPoints;
+            return this;
+        }
+
+        public Builder setSkipRoutes(boolean skipRoutes) {
+            mSkipRoutes = skipRoutes;
+            return this;
+        }
+
+        /**
+         * Decodes the point extensions of the namespace with the decoder, e.g. a
+         * {@link TrackPointExtensionDecoder}, instead of reading them as generic trees.
+         */
+        public Builder addExtensionDecoder(String namespace, ExtensionDecoder decoder) {
+            mExtensionDecoders.put(namespace, decoder);
+            return this;
+        }
+
+        /**
+         * Meters the parses of {@link GPXParser} and reports them to the listener, see {@link ParseMetrics}.
+         */
+        public Builder setParseMetrics(ParseMetrics parseMetrics) {
+            mParseMetrics = parseMetrics;
+            return this;
+        }
+
+        public ParseOptions build() {
+            return new ParseOptions(this);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package io.ticofab.androidgpxparser.parser;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * The counters and timings of one parse, see {@link ParseMetrics}.
+ */
+public class ParseReport {
+
+    /**
+     * The parts of a parse that are timed on their own.
+     */
+    public enum Phase {
+        /** reading and parsing the time elements */
+        TIME,
+        /** reading the extensions of points and segments, decoders included */
+        EXTENSIONS,
+        /** skipping unknown elements and elements left out by the options */
+        SKIP
+    }
+
+    private final long mBytes;
+    private final long mNanos;
+    private final Map<String, Long> mElementCounts;
+    private final long[] mPhaseNanos;
+    private final long[] mPhaseCounts;
+    private final Throwable mFailure;
+
+    ParseReport(long bytes, long nanos, Map<String, Long> elementCounts, long[] phaseNanos, long[] phaseCounts,
+                Throwable failure) {
+        mBytes = bytes;
+        mNanos = nanos;
+        mElementCounts = Collections.unmodifiableMap(elementCounts);
+        mPhaseNanos = phaseNanos;
+        mPhaseCounts = phaseCounts;
+        mFailure = failure;
+    }
+
+    /**
+     * @return the number of bytes read from the input stream
+     */
+    public long getBytes() {
+        return mBytes;
+    }
+
+    /**
+     * @return the duration of the whole parse, handler calls included
+     */
+    public long getNanos() {
+        return mNanos;
+    }
+
+    /**
+     * @return the number of elements read or skipped, by local name, extension elements included
+     */
+    public Map<String, Long> getElementCounts() {
+        return mElementCounts;
+    }
+
+    public long getElementCount(String localName) {
+        Long count = mElementCounts.get(localName);
+        return count != null ? count : 0;
+    }
+
+    /**
+     * @return the number of way point, route point and track point elements
+     */
+    public long getPointCount() {
+        return getElementCount(GPXParser.TAG_WAY_POINT) + getElementCount(GPXParser.TAG_ROUTE_POINT)
+                + getElementCount(GPXParser.TAG_TRACK_POINT);
+    }
+
+    public double getPointsPerSecond() {
+        return mNanos > 0 ? getPointCount() * 1e9 / mNanos : 0;
+    }
+
+    /**
+     * @return the time spent in the phase. A phase within another one, e.g. a decoder skipping part of
+     * its extension, only counts for the outer one.
+     */
+    public long getPhaseNanos(Phase phase) {
+        return mPhaseNanos[phase.ordinal()];
+    }
+
+    /**
+     * @return how many times the phase ran, e.g. the number of times parsed
+     */
+    public long getPhaseCount(Phase phase) {
+        return mPhaseCounts[phase.ordinal()];
+    }
+
+    /**
+     * @return the number of elements skipped, with their children
+     */
+    public long getSkippedElementCount() {
+        return getPhaseCount(Phase.SKIP);
+    }
+
+    /**
+     * @return the exception that ended the parse, null if it succeeded
+     */
+    public Throwable getFailure() {
+        return mFailure;
+    }
+}
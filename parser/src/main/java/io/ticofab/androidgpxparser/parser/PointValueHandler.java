@@ -0,0 +1,44 @@
+package io.ticofab.androidgpxparser.parser;
+
+import io.ticofab.androidgpxparser.parser.domain.TrackSegment;
+
+/**
+ * A handler that takes the values of track and route points as primitives: the parsers then decode
+ * them without creating any point, see {@link GpxSummarizer}. Only latitude, longitude, elevation and
+ * time are read, the rest of the points is skipped. {@link GpxByteReader} creates no String or
+ * DateTime either, {@link GPXParser} still gets the Strings of the XmlPull parser.
+ */
+interface PointValueHandler extends GpxHandler {
+
+    /**
+     * @return the handler if it takes the values of the route points, or of the track points if not
+     * route, null otherwise
+     */
+    static PointValueHandler valueHandler(GpxHandler handler, boolean route) {
+        if (!(handler instanceof PointValueHandler)) {
+            return null;
+        }
+        PointValueHandler valueHandler = (PointValueHandler) handler;
+        boolean values = route ? valueHandler.isRoutePointValues() : valueHandler.isTrackPointValues();
+        return values ? valueHandler : null;
+    }
+
+    /**
+     * @return true to receive the track points through {@link #onPointValues}, instead of
+     * {@link #onTrackPoint}
+     */
+    boolean isTrackPointValues();
+
+    /**
+     * @return true to receive the route points through {@link #onPointValues}, instead of
+     * {@link #onRoutePoint}
+     */
+    boolean isRoutePointValues();
+
+    /**
+     * @param latitude  NaN if left out by the options, as the other values
+     * @param elevation NaN if unknown
+     * @param time      in milliseconds, {@link TrackSegment#NO_TIME} if unknown
+     */
+    void onPointValues(double latitude, double longitude, double elevation, long time);
+}
@@ -0,0 +1,69 @@
+package io.ticofab.androidgpxparser.parser;
+
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Exports the {@link ParseReport}s to a metrics registry, through the two calls of a {@link Registry}.
+ * With Micrometer for instance:
+ * <pre>
+ * new RegistryParseMetrics(new RegistryParseMetrics.Registry() {
+ *     public void count(String name, long amount, String... tags) {
+ *         meterRegistry.counter(name, tags).increment(amount);
+ *     }
+ *
+ *     public void record(String name, long nanos, String... tags) {
+ *         meterRegistry.timer(name, tags).record(nanos, TimeUnit.NANOSECONDS);
+ *     }
+ * });
+ * </pre>
+ * Every parse records {@code gpx.parse} (tagged with its outcome), {@code gpx.parse.phase} (by phase),
+ * and counts {@code gpx.parse.bytes}, {@code gpx.parse.points} and {@code gpx.parse.skipped}. Element
+ * counts by name, {@code gpx.parse.elements}, are only exported when enabled, as extensions can bring
+ * any number of names.
+ */
+public class RegistryParseMetrics implements ParseMetrics {
+
+    /**
+     * A metrics registry, which creates or finds the meter of a name and tags and updates it. Tags are
+     * given as key / value pairs.
+     */
+    public interface Registry {
+        void count(String name, long amount, String... tags);
+
+        void record(String name, long nanos, String... tags);
+    }
+
+    static private final String PREFIX = "gpx.parse";
+
+    private final Registry mRegistry;
+    private final boolean mElementCounts;
+
+    public RegistryParseMetrics(Registry registry) {
+        this(registry, false);
+    }
+
+    /**
+     * @param elementCounts true to also count the elements by name
+     */
+    public RegistryParseMetrics(Registry registry, boolean elementCounts) {
+        mRegistry = registry;
+        mElementCounts = elementCounts;
+    }
+
+    @Override
+    public void onParse(ParseReport report) {
+        mRegistry.record(PREFIX, report.getNanos(), "outcome", report.getFailure() == null ? "success" : "failure");
+        for (ParseReport.Phase phase : ParseReport.Phase.values()) {
+            mRegistry.record(PREFIX + ".phase", report.getPhaseNanos(phase), "phase", phase.name().toLowerCase(Locale.ROOT));
+        }
+        mRegistry.count(PREFIX + ".bytes", report.getBytes());
+        mRegistry.count(PREFIX + ".points", report.getPointCount());
+        mRegistry.count(PREFIX + ".skipped", report.getSkippedElementCount());
+        if (mElementCounts) {
+            for (Map.Entry<String, Long> count : report.getElementCounts().entrySet()) {
+                mRegistry.count(PREFIX + ".elements", count.getValue(), "element", count.getKey());
+            }
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package io.ticofab.androidgpxparser.parser;
+
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+
+import io.ticofab.androidgpxparser.parser.domain.TrackPointExtension;
+
+/**
+ * Decodes the Garmin {@code TrackPointExtension} into a {@link TrackPointExtension}, without creating
+ * any generic extension node. Register it for both versions of the schema:
+ * <pre>
+ * new ParseOptions.Builder()
+ *         .addExtensionDecoder(TrackPointExtensionDecoder.NAMESPACE_V1, new TrackPointExtensionDecoder())
+ *         .addExtensionDecoder(TrackPointExtensionDecoder.NAMESPACE_V2, new TrackPointExtensionDecoder())
+ * </pre>
+ * Other elements of the namespaces are dropped.
+ */
+public class TrackPointExtensionDecoder implements ExtensionDecoder {
+
+    public static final String NAMESPACE_V1 = "http://www.garmin.com/xmlschemas/TrackPointExtension/v1";
+    public static final String NAMESPACE_V2 = "http://www.garmin.com/xmlschemas/TrackPointExtension/v2";
+
+    static private final String TAG_TRACK_POINT_EXTENSION = "TrackPointExtension";
+    static private final String TAG_AIR_TEMPERATURE = "atemp";
+    static private final String TAG_WATER_TEMPERATURE = "wtemp";
+    static private final String TAG_DEPTH = "depth";
+    static private final String TAG_HEART_RATE = "hr";
+    static private final String TAG_CADENCE = "cad";
+    static private final String TAG_SPEED = "speed";
+    static private final String TAG_COURSE = "course";
+    static private final String TAG_BEARING = "bearing";
+
+    @Override
+    public TrackPointExtension decode(ExtensionReader reader) throws XmlPullParserException, IOException {
+        if (!reader.getName().equals(TAG_TRACK_POINT_EXTENSION)) {
+            reader.skip();
+            return null;
+        }
+        TrackPointExtension.Builder builder = new TrackPointExtension.Builder();
+        while (reader.nextChild()) {
+            switch (reader.getName()) {
+                case TAG_AIR_TEMPERATURE:
+                    builder.setAirTemperature(reader.readDouble());
+                    break;
+                case TAG_WATER_TEMPERATURE:
+                    builder.setWaterTemperature(reader.readDouble());
+                    break;
+                case TAG_DEPTH:
+                    builder.setDepth(reader.readDouble());
+                    break;
+                case TAG_HEART_RATE:
+                    builder.setHeartRate(reader.readInt());
+                    break;
+                case TAG_CADENCE:
+                    builder.setCadence(reader.readInt());
+                    break;
+                case TAG_SPEED:
+                    builder.setSpeed(reader.readDouble());
+                    break;
+                case TAG_COURSE:
+                    builder.setCourse(reader.readDouble());
+                    break;
+                case TAG_BEARING:
+                    builder.setBearing(reader.readDouble());
+                    break;
+                default:
+                    reader.skip();
+                    break;
+            }
+        }
+        return builder.build();
+    }
+}
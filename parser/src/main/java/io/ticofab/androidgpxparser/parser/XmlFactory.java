@@ -0,0 +1,20 @@
+package io.ticofab.androidgpxparser.parser;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+import org.xmlpull.v1.XmlSerializer;
+
+import java.io.IOException;
+
+/**
+ * Creates the XML parsers and serializers used by {@link GPXParser} and {@link GpxWriter}.
+ * <p>
+ * {@link AndroidXmlFactory} is the default. On a plain JVM, use {@link XmlPullFactory} with an
+ * XmlPull implementation such as kxml2 on the classpath.
+ */
+public interface XmlFactory {
+
+    XmlPullParser newPullParser() throws XmlPullParserException;
+
+    XmlSerializer newSerializer() throws IOException;
+}
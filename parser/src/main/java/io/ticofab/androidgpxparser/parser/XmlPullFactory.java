@@ -0,0 +1,44 @@
+package io.ticofab.androidgpxparser.parser;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+import org.xmlpull.v1.XmlPullParserFactory;
+import org.xmlpull.v1.XmlSerializer;
+
+import java.io.IOException;
+
+/**
+ * Parsers and serializers from a standard {@link XmlPullParserFactory}, which does not depend on the
+ * Android framework. On a plain JVM, add an XmlPull implementation to the classpath, e.g.
+ * {@code net.sf.kxml:kxml2} or {@code xpp3:xpp3}, and parse with
+ * {@code new GPXParser(new XmlPullFactory())}.
+ */
+public class XmlPullFactory implements XmlFactory {
+
+    private final XmlPullParserFactory mFactory;
+
+    /**
+     * Uses the implementation discovered by {@link XmlPullParserFactory#newInstance()}.
+     */
+    public XmlPullFactory() throws XmlPullParserException {
+        this(XmlPullParserFactory.newInstance());
+    }
+
+    public XmlPullFactory(XmlPullParserFactory factory) {
+        mFactory = factory;
+    }
+
+    @Override
+    public XmlPullParser newPullParser() throws XmlPullParserException {
+        return mFactory.newPullParser();
+    }
+
+    @Override
+    public XmlSerializer newSerializer() throws IOException {
+        try {
+            return mFactory.newSerializer();
+        } catch (XmlPullParserException e) {
+            throw new IOException(e);
+        }
+    }
+}
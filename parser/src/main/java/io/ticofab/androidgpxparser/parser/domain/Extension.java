@@ -25,8 +25,13 @@ public class Extension {
         this.mValue = builder.mValue;
         this.mPrefix = builder.mPrefix;
         this.mNamespace = builder.mNamespace;
-        this.mChildren = Collections.unmodifiableList(new ArrayList<>(builder.mChildren));
-        this.mAttributes = Collections.unmodifiableList(new ArrayList<>(builder.mAttributes));
+        // leaf elements without attributes, by far the most common, all share the empty list
+        this.mChildren = builder.mChildren.isEmpty()
+                ? Collections.emptyList()
+                : Collections.unmodifiableList(new ArrayList<>(builder.mChildren));
+        this.mAttributes = builder.mAttributes.isEmpty()
+                ? Collections.emptyList()
+                : Collections.unmodifiableList(new ArrayList<>(builder.mAttributes));
     }
 
     public String getName() {
@@ -60,8 +65,8 @@ public class Extension {
         private String mPrefix;
         private String mNamespace;
 
-        private List<Extension> mChildren = new ArrayList<>();
-        private List<XMLAttribute> mAttributes = new ArrayList<>();
+        private List<Extension> mChildren = Collections.emptyList();
+        private List<XMLAttribute> mAttributes = Collections.emptyList();
 
         public Extension.Builder setName(String name) {
             mName = name;
@@ -19,7 +19,10 @@ public abstract class Point {
     private final String mType;
     private final String mSym;
     private final String mCmt;
-    private final List<Extension> mExtensions;
+    private final RawExtensions mRawExtensions;
+    // decoded from mRawExtensions on first access when captured
+    private volatile List<Extension> mExtensions;
+    private final List<Object> mDecodedExtensions;
 
     Point(Builder builder) {
         mLatitude = builder.mLatitude;
@@ -31,7 +34,15 @@ public abstract class Point {
         mType = builder.mType;
         mSym = builder.mSym;
         mCmt = builder.mCmt;
-        mExtensions = Collections.unmodifiableList(new ArrayList<>(builder.mExtensions));
+        mRawExtensions = builder.mRawExtensions;
+        if (mRawExtensions == null) {
+            mExtensions = builder.mExtensions.isEmpty()
+                    ? Collections.emptyList()
+                    : Collections.unmodifiableList(new ArrayList<>(builder.mExtensions));
+        }
+        mDecodedExtensions = builder.mDecodedExtensions.isEmpty()
+                ? Collections.emptyList()
+                : Collections.unmodifiableList(new ArrayList<>(builder.mDecodedExtensions));
     }
 
     /**
@@ -95,10 +106,45 @@ public abstract class Point {
     }
 
     /**
-     * @return the extensions
+     * @return the extensions, decoded on the first call when they were captured as raw XML
      */
     public List<Extension> getExtensions() {
-        return mExtensions;
+        List<Extension> extensions = mExtensions;
+        if (extensions == null) {
+            // concurrent first calls may both decode, to equal results
+            extensions = Collections.unmodifiableList(new ArrayList<>(mRawExtensions.decode()));
+            mExtensions = extensions;
+        }
+        return extensions;
+    }
+
+    /**
+     * @return the extensions as found in the document, null unless they were captured as raw XML
+     */
+    public RawExtensions getRawExtensions() {
+        return mRawExtensions;
+    }
+
+    /**
+     * @return the extensions decoded into typed objects by the
+     * {@link io.ticofab.androidgpxparser.parser.ExtensionDecoder}s of the parse options. They are not
+     * part of {@link #getExtensions()}.
+     */
+    public List<Object> getDecodedExtensions() {
+        return mDecodedExtensions;
+    }
+
+    /**
+     * @return the first decoded extension of the given type, e.g. {@link TrackPointExtension}, null if none
+     */
+    public <T> T getDecodedExtension(Class<T> type) {
+        for (int i = 0; i < mDecodedExtensions.size(); i++) {
+            Object extension = mDecodedExtensions.get(i);
+            if (type.isInstance(extension)) {
+                return type.cast(extension);
+            }
+        }
+        return null;
     }
 
     public static abstract class Builder {
@@ -111,7 +157,9 @@ public abstract class Point {
         private String mType;
         private String mSym;
         private String mCmt;
-        private List<Extension> mExtensions = new ArrayList<>();
+        private List<Extension> mExtensions = Collections.emptyList();
+        private List<Object> mDecodedExtensions = Collections.emptyList();
+        private RawExtensions mRawExtensions;
 
         public Builder setLatitude(Double latitude) {
             mLatitude = latitude;
@@ -163,6 +211,19 @@ public abstract class Point {
             return this;
         }
 
+        /**
+         * Replaces the extensions with raw XML, decoded only if they are accessed.
+         */
+        public Builder setRawExtensions(RawExtensions rawExtensions) {
+            mRawExtensions = rawExtensions;
+            return this;
+        }
+
+        public Builder setDecodedExtensions(List<Object> decodedExtensions) {
+            mDecodedExtensions = decodedExtensions;
+            return this;
+        }
+
         public abstract Point build();
     }
 }
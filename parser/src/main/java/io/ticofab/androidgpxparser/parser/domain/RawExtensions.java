@@ -0,0 +1,39 @@
+package io.ticofab.androidgpxparser.parser.domain;
+
+import java.util.List;
+
+/**
+ * The extensions of a point kept as the raw XML of the document, see
+ * {@link io.ticofab.androidgpxparser.parser.ParseOptions.Builder#setLazyExtensions(boolean)}. They are
+ * decoded into {@link Extension} trees on the first call to {@link Point#getExtensions()}, and written
+ * back as they are otherwise.
+ */
+public interface RawExtensions {
+
+    /**
+     * @return the markup inside the extensions element, exactly as found in the document
+     */
+    String getContent();
+
+    /**
+     * @return the number of namespace declarations in scope of the extensions element
+     */
+    int getNamespaceCount();
+
+    /**
+     * @return the prefix of a namespace declaration in scope, the empty string for the default namespace
+     */
+    String getNamespacePrefix(int pos);
+
+    /**
+     * @return the uri of a namespace declaration in scope
+     */
+    String getNamespaceUri(int pos);
+
+    /**
+     * Parses the markup.
+     *
+     * @throws IllegalStateException if the markup is not well formed
+     */
+    List<Extension> decode();
+}
@@ -0,0 +1,144 @@
+package io.ticofab.androidgpxparser.parser.domain;
+
+/**
+ * The Garmin TrackPointExtension (v1 and v2) of a point, decoded into primitive fields by
+ * {@link io.ticofab.androidgpxparser.parser.TrackPointExtensionDecoder}. Values missing from the
+ * document are {@link #NO_VALUE} for integers and NaN for decimals.
+ */
+public class TrackPointExtension {
+    /**
+     * Returned by the integer getters for missing values.
+     */
+    public static final int NO_VALUE = Integer.MIN_VALUE;
+
+    private final double mAirTemperature;
+    private final double mWaterTemperature;
+    private final double mDepth;
+    private final int mHeartRate;
+    private final int mCadence;
+    private final double mSpeed;
+    private final double mCourse;
+    private final double mBearing;
+
+    private TrackPointExtension(Builder builder) {
+        mAirTemperature = builder.mAirTemperature;
+        mWaterTemperature = builder.mWaterTemperature;
+        mDepth = builder.mDepth;
+        mHeartRate = builder.mHeartRate;
+        mCadence = builder.mCadence;
+        mSpeed = builder.mSpeed;
+        mCourse = builder.mCourse;
+        mBearing = builder.mBearing;
+    }
+
+    /**
+     * @return the air temperature in degrees Celsius (atemp)
+     */
+    public double getAirTemperature() {
+        return mAirTemperature;
+    }
+
+    /**
+     * @return the water temperature in degrees Celsius (wtemp)
+     */
+    public double getWaterTemperature() {
+        return mWaterTemperature;
+    }
+
+    /**
+     * @return the depth in meters
+     */
+    public double getDepth() {
+        return mDepth;
+    }
+
+    /**
+     * @return the heart rate in beats per minute (hr)
+     */
+    public int getHeartRate() {
+        return mHeartRate;
+    }
+
+    /**
+     * @return the cadence in revolutions per minute (cad)
+     */
+    public int getCadence() {
+        return mCadence;
+    }
+
+    /**
+     * @return the speed in meters per second, v2 only
+     */
+    public double getSpeed() {
+        return mSpeed;
+    }
+
+    /**
+     * @return the course in degrees, v2 only
+     */
+    public double getCourse() {
+        return mCourse;
+    }
+
+    /**
+     * @return the bearing in degrees, v2 only
+     */
+    public double getBearing() {
+        return mBearing;
+    }
+
+    public static class Builder {
+        private double mAirTemperature = Double.NaN;
+        private double mWaterTemperature = Double.NaN;
+        private double mDepth = Double.NaN;
+        private int mHeartRate = NO_VALUE;
+        private int mCadence = NO_VALUE;
+        private double mSpeed = Double.NaN;
+        private double mCourse = Double.NaN;
+        private double mBearing = Double.NaN;
+
+        public Builder setAirTemperature(double airTemperature) {
+            mAirTemperature = airTemperature;
+            return this;
+        }
+
+        public Builder setWaterTemperature(double waterTemperature) {
+            mWaterTemperature = waterTemperature;
+            return this;
+        }
+
+        public Builder setDepth(double depth) {
+            mDepth = depth;
+            return this;
+        }
+
+        public Builder setHeartRate(int heartRate) {
+            mHeartRate = heartRate;
+            return this;
+        }
+
+        public Builder setCadence(int cadence) {
+            mCadence = cadence;
+            return this;
+        }
+
+        public Builder setSpeed(double speed) {
+            mSpeed = speed;
+            return this;
+        }
+
+        public Builder setCourse(double course) {
+            mCourse = course;
+            return this;
+        }
+
+        public Builder setBearing(double bearing) {
+            mBearing = bearing;
+            return this;
+        }
+
+        public TrackPointExtension build() {
+            return new TrackPointExtension(this);
+        }
+    }
+}
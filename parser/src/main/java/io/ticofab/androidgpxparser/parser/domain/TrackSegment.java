@@ -1,19 +1,58 @@
 package io.ticofab.androidgpxparser.parser.domain;
 
+import org.joda.time.DateTime;
+
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
+/**
+ * A track segment (trkseg) element.
+ * <p>
+ * Segments built with a {@link CompactBuilder} store their points as primitive arrays (latitude,
+ * longitude, elevation and time only) and create {@link TrackPoint} objects on access. The indexed
+ * getters such as {@link #getLatitude(int)} read the values without creating any object, whatever
+ * the representation.
+ */
 public class TrackSegment {
+    /**
+     * Returned by {@link #getTimeMillis(int)} for points without time.
+     */
+    public static final long NO_TIME = Long.MIN_VALUE;
+
     private final List<TrackPoint> mTrackPoints;
     private final List<Extension> mExtensions;
 
+    // compact representation, null otherwise
+    private final double[] mLatitudes;
+    private final double[] mLongitudes;
+    private final float[] mElevations;
+    private final long[] mTimes;
+
     private TrackSegment(Builder builder) {
         mTrackPoints = Collections.unmodifiableList(new ArrayList<>(builder.mTrackPoints));
         mExtensions = Collections.unmodifiableList(new ArrayList<>(builder.mExtensions));
+        mLatitudes = null;
+        mLongitudes = null;
+        mElevations = null;
+        mTimes = null;
+    }
+
+    private TrackSegment(CompactBuilder builder) {
+        mLatitudes = Arrays.copyOf(builder.mLatitudes, builder.mSize);
+        mLongitudes = Arrays.copyOf(builder.mLongitudes, builder.mSize);
+        mElevations = Arrays.copyOf(builder.mElevations, builder.mSize);
+        mTimes = Arrays.copyOf(builder.mTimes, builder.mSize);
+        mTrackPoints = new CompactTrackPoints();
+        mExtensions = Collections.unmodifiableList(new ArrayList<>(builder.mExtensions));
     }
 
+    /**
+     * @return the track points. For compact segments, each access creates a new {@link TrackPoint}.
+     */
     public List<TrackPoint> getTrackPoints() {
         return mTrackPoints;
     }
@@ -22,6 +61,82 @@ public class TrackSegment {
         return mExtensions;
     }
 
+    /**
+     * @return true if the points are stored as primitive arrays
+     */
+    public boolean isCompact() {
+        return mLatitudes != null;
+    }
+
+    public int getTrackPointCount() {
+        return mTrackPoints.size();
+    }
+
+    /**
+     * @return the latitude in degrees of the point at the given index, NaN if unknown
+     */
+    public double getLatitude(int index) {
+        if (isCompact()) {
+            return mLatitudes[index];
+        }
+        Double latitude = mTrackPoints.get(index).getLatitude();
+        return latitude != null ? latitude : Double.NaN;
+    }
+
+    /**
+     * @return the longitude in degrees of the point at the given index, NaN if unknown
+     */
+    public double getLongitude(int index) {
+        if (isCompact()) {
+            return mLongitudes[index];
+        }
+        Double longitude = mTrackPoints.get(index).getLongitude();
+        return longitude != null ? longitude : Double.NaN;
+    }
+
+    /**
+     * @return the elevation in meters of the point at the given index, NaN if unknown
+     */
+    public double getElevation(int index) {
+        if (isCompact()) {
+            return mElevations[index];
+        }
+        Double elevation = mTrackPoints.get(index).getElevation();
+        return elevation != null ? elevation : Double.NaN;
+    }
+
+    /**
+     * @return the time in epoch millis of the point at the given index, {@link #NO_TIME} if unknown
+     */
+    public long getTimeMillis(int index) {
+        if (isCompact()) {
+            return mTimes[index];
+        }
+        DateTime time = mTrackPoints.get(index).getTime();
+        return time != null ? time.getMillis() : NO_TIME;
+    }
+
+    private class CompactTrackPoints extends AbstractList<TrackPoint> {
+        @Override
+        public TrackPoint get(int index) {
+            double latitude = mLatitudes[index];
+            double longitude = mLongitudes[index];
+            float elevation = mElevations[index];
+            long time = mTimes[index];
+            return (TrackPoint) new TrackPoint.Builder()
+                    .setLatitude(Double.isNaN(latitude) ? null : latitude)
+                    .setLongitude(Double.isNaN(longitude) ? null : longitude)
+                    .setElevation(Float.isNaN(elevation) ? null : (double) elevation)
+                    .setTime(time == NO_TIME ? null : new DateTime(time))
+                    .build();
+        }
+
+        @Override
+        public int size() {
+            return mLatitudes.length;
+        }
+    }
+
     public static class Builder {
         private List<TrackPoint> mTrackPoints;
         private List<Extension> mExtensions;
@@ -40,4 +155,57 @@ public class TrackSegment {
             return new TrackSegment(this);
         }
     }
+
+    /**
+     * Builds a compact segment. Only latitude, longitude, elevation (as a float) and time are kept,
+     * all the other point fields are dropped.
+     */
+    public static class CompactBuilder {
+        private double[] mLatitudes = new double[16];
+        private double[] mLongitudes = new double[16];
+        private float[] mElevations = new float[16];
+        private long[] mTimes = new long[16];
+        private int mSize;
+        private List<Extension> mExtensions = new ArrayList<>();
+
+        /**
+         * @param elevation  in meters, NaN if unknown
+         * @param timeMillis epoch millis, {@link #NO_TIME} if unknown
+         */
+        public CompactBuilder addTrackPoint(double latitude, double longitude, double elevation, long timeMillis) {
+            if (mSize == mLatitudes.length) {
+                int capacity = mSize * 2;
+                mLatitudes = Arrays.copyOf(mLatitudes, capacity);
+                mLongitudes = Arrays.copyOf(mLongitudes, capacity);
+                mElevations = Arrays.copyOf(mElevations, capacity);
+                mTimes = Arrays.copyOf(mTimes, capacity);
+            }
+            mLatitudes[mSize] = latitude;
+            mLongitudes[mSize] = longitude;
+            mElevations[mSize] = (float) elevation;
+            mTimes[mSize] = timeMillis;
+            mSize++;
+            return this;
+        }
+
+        public CompactBuilder addTrackPoint(TrackPoint trackPoint) {
+            Double latitude = trackPoint.getLatitude();
+            Double longitude = trackPoint.getLongitude();
+            Double elevation = trackPoint.getElevation();
+            DateTime time = trackPoint.getTime();
+            return addTrackPoint(latitude != null ? latitude : Double.NaN,
+                    longitude != null ? longitude : Double.NaN,
+                    elevation != null ? elevation : Double.NaN,
+                    time != null ? time.getMillis() : NO_TIME);
+        }
+
+        public CompactBuilder setExtensions(List<Extension> extensions) {
+            mExtensions = extensions;
+            return this;
+        }
+
+        public TrackSegment build() {
+            return new TrackSegment(this);
+        }
+    }
 }